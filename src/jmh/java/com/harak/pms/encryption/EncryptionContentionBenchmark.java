@@ -0,0 +1,71 @@
+package com.harak.pms.encryption;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent writers. {@code sharedSecureRandomIv} reproduces the former IV source —
+ * one {@code SecureRandom} for all threads — next to the per-thread DRBG of {@link PhiRandom};
+ * the gap between them grows with the thread count. Run with {@code -t} to vary the default of
+ * 8 threads (e.g. {@code -Djmh.args="EncryptionContention -t 32"}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class EncryptionContentionBenchmark {
+
+    private final SecureRandom sharedSecureRandom = new SecureRandom();
+    private StringEncryptor encryptor;
+    private String ssn;
+    private byte[] ciphertext;
+
+    @State(Scope.Thread)
+    public static class IvBuffer {
+        final byte[] iv = new byte[PhiEnvelope.IV_LENGTH];
+    }
+
+    @Setup
+    public void setUp() {
+        encryptor = PhiBenchmarkFixtures.stringEncryptor();
+        ssn = PhiBenchmarkFixtures.clinicalText(11);
+        ciphertext = encryptor.encryptToBytes(ssn);
+    }
+
+    @Benchmark
+    public byte[] sharedSecureRandomIv(IvBuffer buffer) {
+        sharedSecureRandom.nextBytes(buffer.iv);
+        return buffer.iv;
+    }
+
+    @Benchmark
+    public byte[] perThreadDrbgIv(IvBuffer buffer) {
+        PhiRandom.nextBytes(buffer.iv);
+        return buffer.iv;
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return encryptor.encryptToBytes(ssn);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return encryptor.decrypt(ciphertext);
+    }
+}
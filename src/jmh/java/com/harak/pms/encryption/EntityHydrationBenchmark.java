@@ -0,0 +1,115 @@
+package com.harak.pms.encryption;
+
+import com.harak.pms.clinicalrecord.ClinicalRecord;
+import com.harak.pms.clinicalrecord.ClinicalRecordResponse;
+import com.harak.pms.patient.Patient;
+import com.harak.pms.patient.PatientResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one stored row into an API response: the PHI columns go through
+ * {@link SealedPhiConverter} and {@link PhiRowEnvelopeListener} as Hibernate would call them on
+ * load, and the entity is mapped to its response DTO, which reveals every PHI field. Rows are
+ * stored either with per-field ciphertext — read with or without {@link PhiValueCache} — or as
+ * a row envelope; caches are warm, as for a hot row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityHydrationBenchmark {
+
+    @Param({"per-field", "per-field-cached", "row-envelope"})
+    private String storage;
+
+    private SealedPhiConverter converter;
+    private PhiRowEnvelopeListener listener;
+    private byte[][] patientColumns;
+    private byte[] patientEnvelope;
+    private byte[][] recordColumns;
+    private byte[] recordEnvelope;
+
+    @Setup
+    public void setUp() {
+        StringEncryptor stringEncryptor = PhiBenchmarkFixtures.stringEncryptor();
+        PhiRowEncryptor rowEncryptor = PhiBenchmarkFixtures.rowEncryptor(stringEncryptor);
+        converter = new SealedPhiConverter(stringEncryptor,
+                PhiBenchmarkFixtures.valueCache(stringEncryptor, storage.equals("per-field-cached")));
+        listener = new PhiRowEnvelopeListener(rowEncryptor, PhiBenchmarkFixtures.metrics());
+
+        Patient patient = Patient.builder()
+                .firstName("Jane")
+                .lastName("Doe")
+                .ssn("123-45-6789")
+                .email("jane.doe@example.org")
+                .dateOfBirth("1984-03-17")
+                .medicalRecordNumber("MRN-000123")
+                .build();
+        ClinicalRecord record = ClinicalRecord.builder()
+                .patientId(UUID.randomUUID())
+                .recordType("CONSULTATION")
+                .diagnosis("Stable angina pectoris")
+                .treatmentPlan(PhiBenchmarkFixtures.clinicalText(400))
+                .notes(PhiBenchmarkFixtures.clinicalText(2000))
+                .medications("Aspirin 81 mg daily; atorvastatin 40 mg at bedtime")
+                .attendingPhysician("Dr. Smith")
+                .visitDate("2026-01-15")
+                .build();
+
+        if (storage.equals("row-envelope")) {
+            listener.pack(patient);
+            listener.pack(record);
+            patientEnvelope = patient.getPhiEnvelope();
+            recordEnvelope = record.getPhiEnvelope();
+        }
+        patientColumns = store(patient.getPhiFields());
+        recordColumns = store(record.getPhiFields());
+    }
+
+    @Benchmark
+    public PatientResponse patient() {
+        Patient patient = new Patient();
+        load(patient, patientColumns, patientEnvelope);
+        return PatientResponse.from(patient);
+    }
+
+    @Benchmark
+    public ClinicalRecordResponse clinicalRecord() {
+        ClinicalRecord record = new ClinicalRecord();
+        load(record, recordColumns, recordEnvelope);
+        return ClinicalRecordResponse.from(record);
+    }
+
+    private void load(PhiRowEntity entity, byte[][] columns, byte[] envelope) {
+        SealedPhi[] fields = new SealedPhi[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            fields[i] = converter.convertToEntityAttribute(columns[i]);
+        }
+        entity.setPhiFields(fields);
+        entity.setPhiEnvelope(envelope);
+        listener.bind(entity);
+    }
+
+    private byte[][] store(SealedPhi[] fields) {
+        byte[][] columns = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            columns[i] = converter.convertToDatabaseColumn(fields[i]);
+        }
+        return columns;
+    }
+}
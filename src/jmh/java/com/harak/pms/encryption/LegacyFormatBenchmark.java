@@ -0,0 +1,91 @@
+package com.harak.pms.encryption;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read cost of each stored format of the same 64-byte value: the current v2 envelope as the
+ * baseline, the older v1 binary and v0 Base64 ciphertext, and the legacy-plaintext fallback
+ * (short and Base64-lookalike values that are rejected by a character scan, and Base64-shaped
+ * values that are only rejected by a failed v0 authentication).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LegacyFormatBenchmark {
+
+    private StringEncryptor encryptor;
+    private byte[] v2;
+    private byte[] v1;
+    private byte[] v0;
+    private byte[] plaintext;
+    private byte[] plaintextLookalike;
+    private byte[] plaintextBase64Shaped;
+
+    @Setup
+    public void setUp() {
+        encryptor = PhiBenchmarkFixtures.stringEncryptor();
+        String value = PhiBenchmarkFixtures.clinicalText(64);
+        v2 = encryptor.encryptToBytes(value);
+
+        // Older formats carry the same IV + ciphertext + tag under the legacy (here: primary) key
+        byte[] body = Arrays.copyOfRange(v2, PhiEnvelope.V2_HEADER_LENGTH, v2.length);
+        v1 = new byte[PhiEnvelope.V1_HEADER_LENGTH + body.length];
+        v1[0] = PhiEnvelope.MAGIC;
+        v1[1] = PhiEnvelope.VERSION_1;
+        System.arraycopy(body, 0, v1, PhiEnvelope.V1_HEADER_LENGTH, body.length);
+        v0 = Base64.getEncoder().encode(body);
+
+        plaintext = "Jane".getBytes(StandardCharsets.UTF_8);
+        // Base64 alphabet up to the last character, so it is only rejected after a full scan
+        plaintextLookalike = (value.replaceAll("[^A-Za-z]", "x").substring(0, 63) + ".").getBytes(StandardCharsets.UTF_8);
+        // Valid Base64 of v0 length, so it takes a trial decryption to classify
+        plaintextBase64Shaped = value.replaceAll("[^A-Za-z]", "x").substring(0, 64).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String currentV2() {
+        return encryptor.decrypt(v2);
+    }
+
+    @Benchmark
+    public String legacyV1() {
+        return encryptor.decrypt(v1);
+    }
+
+    @Benchmark
+    public String legacyV0Base64() {
+        return encryptor.decrypt(v0);
+    }
+
+    @Benchmark
+    public String legacyPlaintext() {
+        return encryptor.decrypt(plaintext);
+    }
+
+    @Benchmark
+    public String legacyPlaintextLookalike() {
+        return encryptor.decrypt(plaintextLookalike);
+    }
+
+    @Benchmark
+    public String legacyPlaintextBase64Shaped() {
+        return encryptor.decrypt(plaintextBase64Shaped);
+    }
+}
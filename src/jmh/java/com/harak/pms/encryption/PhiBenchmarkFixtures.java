@@ -0,0 +1,71 @@
+package com.harak.pms.encryption;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Encryption components wired by hand for the JMH benchmarks, with the same defaults as
+ * {@code application.yml} and a fixed, benchmark-only key.
+ */
+final class PhiBenchmarkFixtures {
+
+    private static final String BENCHMARK_KEY = Base64.getEncoder()
+            .encodeToString("benchmark-only-key-not-for-phi!!".getBytes());
+
+    private static final String CLINICAL_PROSE = "Patient presents with intermittent chest pain radiating to the left arm. "
+            + "Vitals stable, BP 128/82, HR 76. ECG shows normal sinus rhythm without acute ST changes. "
+            + "Continue aspirin 81 mg daily and atorvastatin 40 mg at bedtime; follow up in two weeks. ";
+
+    private PhiBenchmarkFixtures() {
+        // Utility class — prevent instantiation
+    }
+
+    static StringEncryptor stringEncryptor() {
+        StringEncryptor encryptor = new StringEncryptor(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(encryptor, "encodedKey", BENCHMARK_KEY);
+        ReflectionTestUtils.setField(encryptor, "encryptionKeyId", 1);
+        ReflectionTestUtils.setField(encryptor, "decryptionKeys", "");
+        ReflectionTestUtils.setField(encryptor, "configuredLegacyKeyId", -1);
+        ReflectionTestUtils.setField(encryptor, "compressionEnabled", true);
+        ReflectionTestUtils.setField(encryptor, "compressionMinSize", 512);
+        encryptor.init();
+        return encryptor;
+    }
+
+    static PhiRowEncryptor rowEncryptor(StringEncryptor stringEncryptor) {
+        PhiRowEncryptor encryptor = new PhiRowEncryptor(stringEncryptor, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(encryptor, "enabled", true);
+        ReflectionTestUtils.setField(encryptor, "dataKeyCacheSize", 10_000L);
+        ReflectionTestUtils.setField(encryptor, "dataKeyCacheExpiry", Duration.ofMinutes(5));
+        encryptor.init();
+        return encryptor;
+    }
+
+    // Enabled, as by default, so that hydration cost includes the instrumentation
+    static PhiMetrics metrics() {
+        PhiMetrics metrics = new PhiMetrics(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(metrics, "enabled", true);
+        return metrics;
+    }
+
+    static PhiValueCache valueCache(StringEncryptor stringEncryptor, boolean enabled) {
+        PhiValueCache cache = new PhiValueCache(stringEncryptor, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", enabled);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(cache, "maxResidentSize", DataSize.ofMegabytes(4));
+        ReflectionTestUtils.setField(cache, "maxValueSize", DataSize.ofKilobytes(1));
+        cache.init();
+        return cache;
+    }
+
+    /**
+     * Returns ASCII clinical prose of exactly {@code length} characters.
+     */
+    static String clinicalText(int length) {
+        return CLINICAL_PROSE.repeat(length / CLINICAL_PROSE.length() + 1).substring(0, length);
+    }
+}
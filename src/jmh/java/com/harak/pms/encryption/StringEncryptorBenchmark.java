@@ -0,0 +1,68 @@
+package com.harak.pms.encryption;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded encrypt/decrypt cost of one PHI value, from an SSN (11 bytes) to a 4 KB
+ * clinical note, through the binary API used by {@link SealedPhiConverter} and the Base64 text
+ * API used by {@link PhiEncryptionConverter}. Binary payloads of 512 bytes and more are
+ * compressed before encryption (see {@link PhiCompression}); the text API never compresses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StringEncryptorBenchmark {
+
+    @Param({"11", "64", "512", "4096"})
+    private int payloadSize;
+
+    private StringEncryptor encryptor;
+    private PhiEncryptionConverter converter;
+    private String plaintext;
+    private byte[] ciphertext;
+    private String ciphertextText;
+
+    @Setup
+    public void setUp() {
+        encryptor = PhiBenchmarkFixtures.stringEncryptor();
+        converter = new PhiEncryptionConverter(encryptor);
+        plaintext = PhiBenchmarkFixtures.clinicalText(payloadSize);
+        ciphertext = encryptor.encryptToBytes(plaintext);
+        ciphertextText = converter.convertToDatabaseColumn(plaintext);
+    }
+
+    @Benchmark
+    public byte[] encryptBinary() {
+        return encryptor.encryptToBytes(plaintext);
+    }
+
+    @Benchmark
+    public String decryptBinary() {
+        return encryptor.decrypt(ciphertext);
+    }
+
+    @Benchmark
+    public String encryptText() {
+        return converter.convertToDatabaseColumn(plaintext);
+    }
+
+    @Benchmark
+    public String decryptText() {
+        return converter.convertToEntityAttribute(ciphertextText);
+    }
+}
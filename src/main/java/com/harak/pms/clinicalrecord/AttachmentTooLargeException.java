@@ -0,0 +1,19 @@
+package com.harak.pms.clinicalrecord;
+
+/**
+ * Exception thrown when an uploaded attachment exceeds {@code attachments.max-size}.
+ *
+ * <p>Mapped to HTTP {@code 413 Content Too Large} by the
+ * {@link com.harak.pms.common.GlobalExceptionHandler}.
+ */
+public class AttachmentTooLargeException extends RuntimeException {
+
+    /**
+     * Constructs a new {@code AttachmentTooLargeException} with the specified detail message.
+     *
+     * @param message a human-readable description of the error.
+     */
+    public AttachmentTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package com.harak.pms.clinicalrecord;
+
+import com.harak.pms.patient.PatientResponse;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response DTO for a patient chart: the patient header, the most recent clinical records and the
+ * number of active records per type.
+ *
+ * @param patient       the patient, with masked SSN.
+ * @param recentRecords the most recent active clinical records, newest first.
+ * @param recordCounts  the number of active clinical records per record type.
+ * @param totalRecords  the number of active clinical records of all types.
+ */
+public record ChartSummaryResponse(
+        PatientResponse patient,
+        List<ClinicalRecordResponse> recentRecords,
+        Map<String, Long> recordCounts,
+        long totalRecords
+) {
+}
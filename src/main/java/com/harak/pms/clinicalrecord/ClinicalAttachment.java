@@ -0,0 +1,113 @@
+package com.harak.pms.clinicalrecord;
+
+import com.harak.pms.encryption.PhiRowEntity;
+import com.harak.pms.encryption.PhiRowEnvelopeListener;
+import com.harak.pms.encryption.SealedPhi;
+import com.harak.pms.encryption.SealedPhiConverter;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * JPA entity describing a file attached to a clinical record (scanned document, ECG, imaging report).
+ *
+ * <p>The file content is not stored in the database: it lives in the {@link ClinicalAttachmentStore},
+ * encrypted in authenticated chunks, under {@code storageKey}. The original file name may identify
+ * the patient and is encrypted at rest via {@link SealedPhiConverter} like every other PHI field.
+ *
+ * <p>Attachments are immutable once uploaded and use soft deletes ({@code deleted} flag) per
+ * HIPAA §164.530(j); the encrypted file of a deleted attachment is retained.
+ */
+@Entity
+@Table(name = "clinical_attachments")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EntityListeners(PhiRowEnvelopeListener.class)
+public class ClinicalAttachment implements PhiRowEntity {
+
+    private static final String[] PHI_FIELD_NAMES = {"fileName"};
+
+    @Id
+    @Column(columnDefinition = "UUID")
+    private UUID id;
+
+    @Column(name = "clinical_record_id", nullable = false)
+    private UUID clinicalRecordId;
+
+    @Column(name = "patient_id", nullable = false)
+    private UUID patientId;
+
+    @Convert(converter = SealedPhiConverter.class)
+    @Column(name = "file_name", nullable = false)
+    private SealedPhi fileName;
+
+    @Column(name = "content_type", nullable = false)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "storage_key", nullable = false, unique = true, updatable = false)
+    private String storageKey;
+
+    // The file name sealed under a per-row data key, when row envelope mode is enabled (see PhiRowEncryptor)
+    @Column(name = "phi_envelope")
+    private byte[] phiEnvelope;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private boolean deleted = false;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = Instant.now();
+    }
+
+    public String getFileName() {
+        return SealedPhi.reveal(fileName);
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = SealedPhi.of(fileName);
+    }
+
+    @Override
+    public SealedPhi[] getPhiFields() {
+        return new SealedPhi[]{fileName};
+    }
+
+    @Override
+    public String[] getPhiFieldNames() {
+        return PHI_FIELD_NAMES.clone();
+    }
+
+    @Override
+    public void setPhiFields(SealedPhi[] fields) {
+        this.fileName = fields[0];
+    }
+
+    public static class ClinicalAttachmentBuilder {
+        public ClinicalAttachmentBuilder fileName(String fileName) {
+            this.fileName = SealedPhi.of(fileName);
+            return this;
+        }
+    }
+}
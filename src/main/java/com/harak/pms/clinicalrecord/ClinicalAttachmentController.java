@@ -0,0 +1,145 @@
+package com.harak.pms.clinicalrecord;
+
+import com.harak.pms.audit.Auditable;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * REST controller for files attached to clinical records (scanned documents, ECGs, imaging reports).
+ *
+ * <p>Files are uploaded as the raw request body — not as a multipart form, which would be
+ * buffered to a temporary plaintext file — and are encrypted as they stream in. Downloads
+ * support HTTP range requests ({@code Range: bytes=...}) and are decrypted chunk by chunk
+ * while they are written to the response. Every upload, download and deletion is audit-logged
+ * via {@link Auditable} per HIPAA §164.312(b).
+ */
+@RestController
+@RequestMapping("/api/clinical-records/{recordId}/attachments")
+@RequiredArgsConstructor
+public class ClinicalAttachmentController {
+
+    private final ClinicalAttachmentService clinicalAttachmentService;
+    private final ClinicalAttachmentStore clinicalAttachmentStore;
+
+    /**
+     * Uploads a file and attaches it to a clinical record.
+     *
+     * @param recordId    the UUID of the clinical record.
+     * @param filename    the original file name.
+     * @param contentType the media type of the file, taken from the {@code Content-Type} header.
+     * @param request     the HTTP request, whose body is the file content.
+     * @return the attachment metadata, wrapped in a {@code 201 Created} response.
+     * @throws ClinicalRecordNotFoundException if no active clinical record exists with the given ID.
+     * @throws AttachmentTooLargeException     if the file exceeds {@code attachments.max-size}.
+     */
+    @PostMapping
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Auditable(action = "CLINICAL_ATTACHMENT_UPLOADED", entityType = "CLINICAL_ATTACHMENT",
+            detailExpression = "'Uploaded attachment to clinical record ID: ' + #recordId"
+                    + " + ' — ' + #result.body.sizeBytes() + ' bytes'")
+    public ResponseEntity<ClinicalAttachmentResponse> uploadAttachment(
+            @PathVariable UUID recordId,
+            @RequestParam String filename,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            HttpServletRequest request) throws IOException {
+
+        if (request.getContentLengthLong() > clinicalAttachmentStore.maxSize()) {
+            throw new AttachmentTooLargeException(
+                    "Attachment exceeds the maximum size of " + clinicalAttachmentStore.maxSize() + " bytes");
+        }
+        ClinicalAttachment attachment = clinicalAttachmentService.createAttachment(
+                recordId, filename, contentType, request.getInputStream());
+        return ResponseEntity.status(HttpStatus.CREATED).body(ClinicalAttachmentResponse.from(attachment));
+    }
+
+    /**
+     * Lists the attachments of a clinical record, oldest first.
+     *
+     * @param recordId the UUID of the clinical record.
+     * @return the attachment metadata, wrapped in a {@code 200 OK} response.
+     * @throws ClinicalRecordNotFoundException if no active clinical record exists with the given ID.
+     */
+    @GetMapping
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Auditable(action = "CLINICAL_ATTACHMENT_LIST_VIEWED", entityType = "CLINICAL_ATTACHMENT",
+            detailExpression = "'Listed attachments of clinical record ID: ' + #recordId")
+    public ResponseEntity<List<ClinicalAttachmentResponse>> getAttachments(@PathVariable UUID recordId) {
+
+        List<ClinicalAttachmentResponse> attachments = clinicalAttachmentService.getAttachments(recordId).stream()
+                .map(ClinicalAttachmentResponse::from)
+                .toList();
+        return ResponseEntity.ok(attachments);
+    }
+
+    /**
+     * Downloads the content of an attachment.
+     *
+     * <p>A {@code Range} header returns {@code 206 Partial Content} with only the requested bytes
+     * (or {@code 416} if the range cannot be satisfied); only the encrypted chunks that overlap
+     * the range are read and decrypted. The file is always served as a download
+     * ({@code Content-Disposition: attachment}), never rendered inline.
+     *
+     * @param recordId the UUID of the clinical record.
+     * @param id       the UUID of the attachment.
+     * @param range    the optional {@code Range} header, recorded in the audit trail.
+     * @return the decrypted file content.
+     * @throws ClinicalAttachmentNotFoundException if the record has no active attachment with the given ID.
+     */
+    @GetMapping("/{id}")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Auditable(action = "CLINICAL_ATTACHMENT_DOWNLOADED", entityType = "CLINICAL_ATTACHMENT",
+            detailExpression = "'Downloaded attachment of clinical record ID: ' + #recordId"
+                    + " + (#range != null ? ' — range: ' + #range : '')")
+    public ResponseEntity<Resource> downloadAttachment(
+            @PathVariable UUID recordId,
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
+
+        ClinicalAttachment attachment = clinicalAttachmentService.getAttachment(recordId, id);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(attachment.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(attachment.getFileName(), StandardCharsets.UTF_8)
+                        .build()
+                        .toString())
+                .body(clinicalAttachmentService.openContent(attachment));
+    }
+
+    /**
+     * Soft-deletes an attachment. Restricted to ADMIN role only.
+     *
+     * @param recordId the UUID of the clinical record.
+     * @param id       the UUID of the attachment.
+     * @return a {@code 204 No Content} response.
+     * @throws ClinicalAttachmentNotFoundException if the record has no active attachment with the given ID.
+     */
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    @Auditable(action = "CLINICAL_ATTACHMENT_DELETED", entityType = "CLINICAL_ATTACHMENT",
+            detail = "Soft-deleted clinical record attachment")
+    public ResponseEntity<Void> deleteAttachment(@PathVariable UUID recordId, @PathVariable UUID id) {
+
+        clinicalAttachmentService.deleteAttachment(recordId, id);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.harak.pms.clinicalrecord;
+
+/**
+ * Exception thrown when a clinical record attachment cannot be found by its identifier.
+ *
+ * <p>Mapped to HTTP {@code 404 Not Found} by the
+ * {@link com.harak.pms.common.GlobalExceptionHandler}.
+ */
+public class ClinicalAttachmentNotFoundException extends RuntimeException {
+
+    /**
+     * Constructs a new {@code ClinicalAttachmentNotFoundException} with the specified detail message.
+     *
+     * @param message a human-readable description of the error.
+     */
+    public ClinicalAttachmentNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.harak.pms.clinicalrecord;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Spring Data JPA repository for {@link ClinicalAttachment} entities.
+ *
+ * <p>All queries filter by {@code deleted = false} to enforce the soft-delete
+ * pattern required by HIPAA §164.530(j).
+ */
+@Repository
+public interface ClinicalAttachmentRepository extends JpaRepository<ClinicalAttachment, UUID> {
+
+    Optional<ClinicalAttachment> findByIdAndClinicalRecordIdAndDeletedFalse(UUID id, UUID clinicalRecordId);
+
+    List<ClinicalAttachment> findAllByClinicalRecordIdAndDeletedFalseOrderByCreatedAtAsc(UUID clinicalRecordId);
+}
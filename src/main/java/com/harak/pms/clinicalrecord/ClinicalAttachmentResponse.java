@@ -0,0 +1,45 @@
+package com.harak.pms.clinicalrecord;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Response DTO describing a clinical record attachment. The file content itself is
+ * downloaded separately from {@code GET /api/clinical-records/{recordId}/attachments/{id}}.
+ *
+ * @param id               the unique identifier of the attachment.
+ * @param clinicalRecordId the UUID of the clinical record the file is attached to.
+ * @param patientId        the UUID of the patient the clinical record belongs to.
+ * @param fileName         the original file name (PHI, decrypted).
+ * @param contentType      the media type given at upload.
+ * @param sizeBytes        the size of the file in bytes.
+ * @param createdAt        the timestamp when the file was uploaded.
+ */
+public record ClinicalAttachmentResponse(
+        UUID id,
+        UUID clinicalRecordId,
+        UUID patientId,
+        String fileName,
+        String contentType,
+        long sizeBytes,
+        Instant createdAt
+) {
+
+    /**
+     * Creates a {@link ClinicalAttachmentResponse} from a {@link ClinicalAttachment} entity.
+     *
+     * @param attachment the attachment entity.
+     * @return a response DTO suitable for the API response body.
+     */
+    public static ClinicalAttachmentResponse from(ClinicalAttachment attachment) {
+        return new ClinicalAttachmentResponse(
+                attachment.getId(),
+                attachment.getClinicalRecordId(),
+                attachment.getPatientId(),
+                attachment.getFileName(),
+                attachment.getContentType(),
+                attachment.getSizeBytes(),
+                attachment.getCreatedAt()
+        );
+    }
+}
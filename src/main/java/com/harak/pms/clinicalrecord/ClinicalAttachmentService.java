@@ -0,0 +1,146 @@
+package com.harak.pms.clinicalrecord;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Service layer for files attached to clinical records.
+ *
+ * <p>Uploading streams the request body through {@link ClinicalAttachmentStore}, which encrypts
+ * it chunk by chunk; the upload runs outside any transaction so that no database connection is
+ * held while a large file is received. The metadata row is saved once the file is safely stored,
+ * and the file is discarded again if that fails.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ClinicalAttachmentService {
+
+    private static final int MAX_FILE_NAME_LENGTH = 255;
+
+    private final ClinicalAttachmentRepository clinicalAttachmentRepository;
+    private final ClinicalRecordRepository clinicalRecordRepository;
+    private final ClinicalAttachmentStore clinicalAttachmentStore;
+
+    /**
+     * Encrypts and stores a file and attaches it to an existing clinical record.
+     *
+     * @param clinicalRecordId the UUID of the clinical record to attach the file to.
+     * @param fileName         the original file name; any directory part is dropped.
+     * @param contentType      the media type of the file ({@code application/octet-stream} if {@code null}).
+     * @param content          the plaintext file content.
+     * @return the persisted {@link ClinicalAttachment}.
+     * @throws ClinicalRecordNotFoundException if no active clinical record exists with the given ID.
+     * @throws AttachmentTooLargeException     if the file exceeds {@code attachments.max-size}.
+     * @throws IllegalArgumentException        if the file name or media type is invalid.
+     * @throws IOException                     if reading the upload or writing the file fails.
+     */
+    public ClinicalAttachment createAttachment(UUID clinicalRecordId, String fileName, String contentType,
+                                               InputStream content) throws IOException {
+        ClinicalRecord record = clinicalRecordRepository.findByIdAndDeletedFalse(clinicalRecordId)
+                .orElseThrow(() -> new ClinicalRecordNotFoundException(
+                        "Clinical record not found with ID: " + clinicalRecordId));
+        String name = sanitizeFileName(fileName);
+        MediaType mediaType = contentType == null || contentType.isBlank()
+                ? MediaType.APPLICATION_OCTET_STREAM
+                : MediaType.parseMediaType(contentType);
+        if (mediaType.isCompatibleWith(MediaType.MULTIPART_FORM_DATA)
+                || mediaType.isCompatibleWith(MediaType.APPLICATION_FORM_URLENCODED)) {
+            throw new IllegalArgumentException("Attachments must be uploaded as the raw request body, not as a form");
+        }
+
+        ClinicalAttachmentStore.StoredFile stored = clinicalAttachmentStore.store(content);
+        ClinicalAttachment attachment = ClinicalAttachment.builder()
+                .id(UUID.randomUUID())
+                .clinicalRecordId(record.getId())
+                .patientId(record.getPatientId())
+                .fileName(name)
+                .contentType(mediaType.toString())
+                .sizeBytes(stored.size())
+                .storageKey(stored.storageKey())
+                .build();
+        try {
+            ClinicalAttachment saved = clinicalAttachmentRepository.save(attachment);
+            log.info("Attachment created with ID: {} for clinical record ID: {} ({} bytes)",
+                    saved.getId(), clinicalRecordId, stored.size());
+            return saved;
+        } catch (RuntimeException e) {
+            clinicalAttachmentStore.discard(stored.storageKey());
+            throw e;
+        }
+    }
+
+    /**
+     * Lists the attachments of a clinical record, oldest first.
+     *
+     * @param clinicalRecordId the UUID of the clinical record.
+     * @return the active attachments of the record.
+     * @throws ClinicalRecordNotFoundException if no active clinical record exists with the given ID.
+     */
+    @Transactional(readOnly = true)
+    public List<ClinicalAttachment> getAttachments(UUID clinicalRecordId) {
+        requireClinicalRecord(clinicalRecordId);
+        return clinicalAttachmentRepository.findAllByClinicalRecordIdAndDeletedFalseOrderByCreatedAtAsc(clinicalRecordId);
+    }
+
+    /**
+     * Retrieves the metadata of one attachment of a clinical record.
+     *
+     * @throws ClinicalRecordNotFoundException     if no active clinical record exists with the given ID.
+     * @throws ClinicalAttachmentNotFoundException if the record has no active attachment with the given ID.
+     */
+    @Transactional(readOnly = true)
+    public ClinicalAttachment getAttachment(UUID clinicalRecordId, UUID id) {
+        requireClinicalRecord(clinicalRecordId);
+        return clinicalAttachmentRepository.findByIdAndClinicalRecordIdAndDeletedFalse(id, clinicalRecordId)
+                .orElseThrow(() -> new ClinicalAttachmentNotFoundException("Attachment not found with ID: " + id));
+    }
+
+    /**
+     * Returns the decrypted content of an attachment, as a resource that supports range reads.
+     */
+    public Resource openContent(ClinicalAttachment attachment) {
+        return clinicalAttachmentStore.open(attachment.getStorageKey(), attachment.getSizeBytes());
+    }
+
+    /**
+     * Soft-deletes an attachment. The encrypted file is retained per HIPAA §164.530(j).
+     *
+     * @throws ClinicalAttachmentNotFoundException if the record has no active attachment with the given ID.
+     */
+    @Transactional
+    public void deleteAttachment(UUID clinicalRecordId, UUID id) {
+        ClinicalAttachment attachment = getAttachment(clinicalRecordId, id);
+        attachment.setDeleted(true);
+        clinicalAttachmentRepository.save(attachment);
+        log.info("Attachment soft-deleted with ID: {}", id);
+    }
+
+    private void requireClinicalRecord(UUID clinicalRecordId) {
+        if (clinicalRecordRepository.findByIdAndDeletedFalse(clinicalRecordId).isEmpty()) {
+            throw new ClinicalRecordNotFoundException("Clinical record not found with ID: " + clinicalRecordId);
+        }
+    }
+
+    // Browsers may send a full client path; only the last segment is kept
+    private static String sanitizeFileName(String fileName) {
+        if (fileName == null) {
+            throw new IllegalArgumentException("File name is required");
+        }
+        String name = fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1).strip();
+        if (name.isEmpty() || name.length() > MAX_FILE_NAME_LENGTH || name.chars().anyMatch(Character::isISOControl)) {
+            throw new IllegalArgumentException("File name must be 1-" + MAX_FILE_NAME_LENGTH
+                    + " characters without control characters");
+        }
+        return name;
+    }
+}
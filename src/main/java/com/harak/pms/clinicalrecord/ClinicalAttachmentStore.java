@@ -0,0 +1,196 @@
+package com.harak.pms.clinicalrecord;
+
+import com.harak.pms.encryption.PhiStreamEncryptor;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Local file store for clinical record attachments.
+ *
+ * <p>Uploads are encrypted by {@link PhiStreamEncryptor} while they are read from the request,
+ * so plaintext never reaches the disk and memory use does not depend on the file size. Each file
+ * is written to a temporary file next to its final location, flushed, and atomically moved into
+ * place; a failed or oversized upload leaves nothing behind. Files are named by a random storage
+ * key and spread over 256 subdirectories of {@code attachments.storage-directory}.
+ *
+ * <p>Downloads are served as a {@link Resource} over a decrypting stream, which Spring MVC uses
+ * for both full responses and HTTP range requests; skipping to the start of a range does not
+ * read the skipped chunks.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClinicalAttachmentStore {
+
+    private final PhiStreamEncryptor phiStreamEncryptor;
+
+    @Value("${attachments.storage-directory:data/attachments}")
+    private String storageDirectory;
+
+    @Value("${attachments.max-size:100MB}")
+    private DataSize maxSize;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Files.createDirectories(Path.of(storageDirectory).toAbsolutePath());
+        log.info("Clinical attachment store at {} (files up to {})", root, maxSize);
+    }
+
+    /**
+     * Returns the maximum accepted attachment size in bytes ({@code attachments.max-size}).
+     */
+    public long maxSize() {
+        return maxSize.toBytes();
+    }
+
+    /**
+     * Encrypts and stores an uploaded file.
+     *
+     * @param content the plaintext file content; not closed.
+     * @return the storage key and plaintext size of the stored file.
+     * @throws AttachmentTooLargeException if the content exceeds {@code attachments.max-size}.
+     * @throws IOException                 if reading the upload or writing the file fails.
+     */
+    public StoredFile store(InputStream content) throws IOException {
+        String storageKey = UUID.randomUUID().toString();
+        Path target = resolve(storageKey);
+        Files.createDirectories(target.getParent());
+        Path temporary = target.resolveSibling(storageKey + ".part");
+        try {
+            long size;
+            try (FileChannel channel = FileChannel.open(temporary,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                size = phiStreamEncryptor.encrypt(new LimitedInputStream(content, maxSize.toBytes()), channel);
+                channel.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+            return new StoredFile(storageKey, size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the decrypted content of a stored file.
+     *
+     * @param storageKey the key returned by {@link #store(InputStream)}.
+     * @param size       the plaintext size returned by {@link #store(InputStream)}.
+     */
+    public Resource open(String storageKey, long size) {
+        return new EncryptedFileResource(resolve(storageKey), size);
+    }
+
+    /**
+     * Deletes a stored file whose metadata could not be saved. Attachments that were saved are
+     * only ever soft-deleted, and their files are retained.
+     */
+    public void discard(String storageKey) {
+        try {
+            Files.deleteIfExists(resolve(storageKey));
+        } catch (IOException e) {
+            log.warn("Failed to delete orphaned attachment file {}", storageKey, e);
+        }
+    }
+
+    /**
+     * Returns the path of a stored file, whether or not it exists.
+     *
+     * @param storageKey the key returned by {@link #store(InputStream)}.
+     */
+    public Path resolve(String storageKey) {
+        return root.resolve(storageKey.substring(0, 2)).resolve(storageKey);
+    }
+
+    /**
+     * A stored file: its storage key and plaintext size.
+     */
+    public record StoredFile(String storageKey, long size) {
+    }
+
+    // Stops reading as soon as the upload exceeds the limit, before the excess is encrypted
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        private void count(int read) {
+            count += read;
+            if (count > limit) {
+                throw new AttachmentTooLargeException("Attachment exceeds the maximum size of " + limit + " bytes");
+            }
+        }
+    }
+
+    private final class EncryptedFileResource extends AbstractResource {
+
+        private final Path file;
+        private final long size;
+
+        EncryptedFileResource(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return phiStreamEncryptor.open(file);
+        }
+
+        @Override
+        public boolean exists() {
+            return Files.exists(file);
+        }
+
+        @Override
+        public long contentLength() {
+            return size;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Encrypted attachment [" + file.getFileName() + "]";
+        }
+    }
+}
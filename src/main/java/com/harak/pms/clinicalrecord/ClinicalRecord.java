@@ -1,13 +1,18 @@
 package com.harak.pms.clinicalrecord;
 
-import com.harak.pms.encryption.PhiEncryptionConverter;
+import com.harak.pms.encryption.PhiRowEntity;
+import com.harak.pms.encryption.PhiRowEnvelopeListener;
+import com.harak.pms.encryption.SealedPhi;
+import com.harak.pms.encryption.SealedPhiConverter;
 import jakarta.persistence.Column;
 import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -21,8 +26,9 @@ import java.util.UUID;
  * JPA entity representing a clinical record linked to a patient.
  *
  * <p>All PHI fields (diagnosis, treatmentPlan, notes, medications, visitDate)
- * are encrypted at rest using AES-256-GCM via {@link PhiEncryptionConverter}
- * to comply with HIPAA §164.312(a)(2)(iv).
+ * are encrypted at rest using AES-256-GCM via {@link SealedPhiConverter}
+ * to comply with HIPAA §164.312(a)(2)(iv). They are held as {@link SealedPhi} and
+ * decrypted lazily by their getters, so loading a record costs no AES work.
  *
  * <p>The {@code patientId} is stored as a bare UUID reference — no JPA relationship
  * or database foreign key — to preserve Spring Modulith module boundaries.
@@ -38,7 +44,11 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class ClinicalRecord {
+@EntityListeners(PhiRowEnvelopeListener.class)
+public class ClinicalRecord implements PhiRowEntity {
+
+    private static final String[] PHI_FIELD_NAMES =
+            {"diagnosis", "treatmentPlan", "notes", "medications", "visitDate"};
 
     @Id
     @Column(columnDefinition = "UUID")
@@ -50,31 +60,40 @@ public class ClinicalRecord {
     @Column(name = "record_type", nullable = false)
     private String recordType;
 
-    @Convert(converter = PhiEncryptionConverter.class)
+    @Convert(converter = SealedPhiConverter.class)
     @Column(nullable = false)
-    private String diagnosis;
+    private SealedPhi diagnosis;
 
-    @Convert(converter = PhiEncryptionConverter.class)
+    @Convert(converter = SealedPhiConverter.class)
     @Column(name = "treatment_plan")
-    private String treatmentPlan;
+    private SealedPhi treatmentPlan;
 
-    @Convert(converter = PhiEncryptionConverter.class)
-    private String notes;
+    @Convert(converter = SealedPhiConverter.class)
+    private SealedPhi notes;
 
-    @Convert(converter = PhiEncryptionConverter.class)
-    private String medications;
+    @Convert(converter = SealedPhiConverter.class)
+    private SealedPhi medications;
 
     @Column(name = "attending_physician", nullable = false)
     private String attendingPhysician;
 
-    @Convert(converter = PhiEncryptionConverter.class)
+    @Convert(converter = SealedPhiConverter.class)
     @Column(name = "visit_date", nullable = false)
-    private String visitDate;
+    private SealedPhi visitDate;
+
+    // All PHI fields sealed under one per-row data key, when row envelope mode is enabled (see PhiRowEncryptor)
+    @Column(name = "phi_envelope")
+    private byte[] phiEnvelope;
 
     @Builder.Default
     @Column(nullable = false)
     private boolean deleted = false;
 
+    // Incremented by Hibernate on every update; guards against lost updates and serves as the ETag
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
@@ -90,5 +109,92 @@ public class ClinicalRecord {
     protected void onUpdate() {
         updatedAt = Instant.now();
     }
-}
 
+    // PHI accessors — decryption happens here, on first read, not when the entity is loaded
+
+    public String getDiagnosis() {
+        return SealedPhi.reveal(diagnosis);
+    }
+
+    public void setDiagnosis(String diagnosis) {
+        this.diagnosis = SealedPhi.of(diagnosis);
+    }
+
+    public String getTreatmentPlan() {
+        return SealedPhi.reveal(treatmentPlan);
+    }
+
+    public void setTreatmentPlan(String treatmentPlan) {
+        this.treatmentPlan = SealedPhi.of(treatmentPlan);
+    }
+
+    public String getNotes() {
+        return SealedPhi.reveal(notes);
+    }
+
+    public void setNotes(String notes) {
+        this.notes = SealedPhi.of(notes);
+    }
+
+    public String getMedications() {
+        return SealedPhi.reveal(medications);
+    }
+
+    public void setMedications(String medications) {
+        this.medications = SealedPhi.of(medications);
+    }
+
+    public String getVisitDate() {
+        return SealedPhi.reveal(visitDate);
+    }
+
+    public void setVisitDate(String visitDate) {
+        this.visitDate = SealedPhi.of(visitDate);
+    }
+
+    @Override
+    public SealedPhi[] getPhiFields() {
+        return new SealedPhi[]{diagnosis, treatmentPlan, notes, medications, visitDate};
+    }
+
+    @Override
+    public String[] getPhiFieldNames() {
+        return PHI_FIELD_NAMES.clone();
+    }
+
+    @Override
+    public void setPhiFields(SealedPhi[] fields) {
+        this.diagnosis = fields[0];
+        this.treatmentPlan = fields[1];
+        this.notes = fields[2];
+        this.medications = fields[3];
+        this.visitDate = fields[4];
+    }
+
+    public static class ClinicalRecordBuilder {
+        public ClinicalRecordBuilder diagnosis(String diagnosis) {
+            this.diagnosis = SealedPhi.of(diagnosis);
+            return this;
+        }
+
+        public ClinicalRecordBuilder treatmentPlan(String treatmentPlan) {
+            this.treatmentPlan = SealedPhi.of(treatmentPlan);
+            return this;
+        }
+
+        public ClinicalRecordBuilder notes(String notes) {
+            this.notes = SealedPhi.of(notes);
+            return this;
+        }
+
+        public ClinicalRecordBuilder medications(String medications) {
+            this.medications = SealedPhi.of(medications);
+            return this;
+        }
+
+        public ClinicalRecordBuilder visitDate(String visitDate) {
+            this.visitDate = SealedPhi.of(visitDate);
+            return this;
+        }
+    }
+}
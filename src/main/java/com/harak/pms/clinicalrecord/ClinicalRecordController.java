@@ -1,12 +1,19 @@
 package com.harak.pms.clinicalrecord;
 
 import com.harak.pms.audit.Auditable;
+import com.harak.pms.common.EntityTags;
+import com.harak.pms.common.SliceResponse;
+import com.harak.pms.common.TotalMode;
+import com.harak.pms.encryption.PhiBatchDecryptor;
+import com.harak.pms.idempotency.Idempotent;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -16,6 +23,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -35,6 +43,7 @@ import java.util.UUID;
 public class ClinicalRecordController {
 
     private final ClinicalRecordService clinicalRecordService;
+    private final PhiBatchDecryptor phiBatchDecryptor;
 
     /**
      * Creates a new clinical record for an existing patient.
@@ -42,19 +51,25 @@ public class ClinicalRecordController {
      * <p>Patient existence is validated at the service layer. The creation event
      * is recorded in the audit trail automatically via {@link Auditable}.
      *
+     * <p>A retry with the same {@code Idempotency-Key} header is answered with the stored
+     * response instead of creating a duplicate (see {@link Idempotent}).
+     *
      * @param request the validated clinical record creation request.
      * @return the created clinical record, wrapped in a {@code 201 Created} response.
      * @throws com.harak.pms.patient.PatientNotFoundException if no active patient exists with the given ID.
      */
     @PostMapping
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Idempotent(replayAction = "CLINICAL_RECORD_CREATE_REPLAYED", entityType = "CLINICAL_RECORD")
     @Auditable(action = "CLINICAL_RECORD_CREATED", entityType = "CLINICAL_RECORD",
             detailExpression = "'Created clinical record for patient ID: ' + #request.patientId()")
     public ResponseEntity<ClinicalRecordResponse> createClinicalRecord(
             @Valid @RequestBody CreateClinicalRecordRequest request) {
 
         ClinicalRecord record = clinicalRecordService.createClinicalRecord(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(ClinicalRecordResponse.from(record));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .eTag(EntityTags.of(record.getVersion()))
+                .body(ClinicalRecordResponse.from(record));
     }
 
     /**
@@ -63,25 +78,41 @@ public class ClinicalRecordController {
      * <p>Access is restricted to ADMIN, DOCTOR, and NURSE roles.
      * The access event is recorded in the audit trail automatically via {@link Auditable}.
      *
-     * @param id the UUID of the clinical record to retrieve.
-     * @return the clinical record data, wrapped in a {@code 200 OK} response.
+     * <p>The response carries the record version as a strong {@code ETag}. A poll with a current
+     * {@code If-None-Match} is answered with {@code 304 Not Modified} after a version-only query,
+     * without loading or decrypting the PHI columns.
+     *
+     * @param id          the UUID of the clinical record to retrieve.
+     * @param ifNoneMatch the {@code ETag}s of the copies the client already holds, if any.
+     * @return the clinical record data, wrapped in a {@code 200 OK} response, or
+     *         {@code 304 Not Modified} without a body.
      * @throws ClinicalRecordNotFoundException if no active clinical record exists with the given ID.
      */
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
     @Auditable(action = "CLINICAL_RECORD_VIEWED", entityType = "CLINICAL_RECORD",
-            detail = "Viewed clinical record")
-    public ResponseEntity<ClinicalRecordResponse> getClinicalRecordById(@PathVariable UUID id) {
-
+            detailExpression = "#result.statusCode.value() == 304 ? 'Clinical record not modified' : 'Viewed clinical record'")
+    public ResponseEntity<ClinicalRecordResponse> getClinicalRecordById(
+            @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        if (ifNoneMatch != null) {
+            long version = clinicalRecordService.getClinicalRecordVersion(id);
+            if (EntityTags.matches(ifNoneMatch, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(EntityTags.of(version)).build();
+            }
+        }
         ClinicalRecord record = clinicalRecordService.getClinicalRecordById(id);
-        return ResponseEntity.ok(ClinicalRecordResponse.from(record));
+        return ResponseEntity.ok().eTag(EntityTags.of(record.getVersion())).body(ClinicalRecordResponse.from(record));
     }
 
     /**
      * Retrieves a paginated list of clinical records for a given patient.
      *
      * <p>Supports optional filtering by {@code recordType} and configurable
-     * pagination/sorting. Page size is clamped to a maximum of 100.
+     * pagination/sorting. Page size is clamped to a maximum of 100. The PHI of the
+     * page is decrypted in one batch, in parallel for full pages. Every page pays for an exact
+     * total count; use {@code total=none|approximate} (below) to skip it.
      *
      * @param patientId  the UUID of the patient whose records to retrieve.
      * @param recordType optional filter by record type (e.g., CONSULTATION, LAB_RESULT).
@@ -114,21 +145,78 @@ public class ClinicalRecordController {
 
         Page<ClinicalRecord> records = clinicalRecordService.getClinicalRecordsByPatientId(
                 patientId, recordType, pageable);
+        phiBatchDecryptor.revealAll(records.getContent());
         Page<ClinicalRecordResponse> responsePage = records.map(ClinicalRecordResponse::from);
 
         return ResponseEntity.ok(responsePage);
     }
 
+    /**
+     * Retrieves a page of clinical records for a given patient without an exact total, for
+     * clients that do not show one.
+     *
+     * <p>Selected with {@code total=none} or {@code total=approximate}; filtering, paging and
+     * sorting are the same as in {@link #getClinicalRecordsByPatientId}. No {@code COUNT} query
+     * is run: one extra row is read to set {@code hasNext}. With {@code total=approximate},
+     * {@code approximateTotal} is served from an incrementally maintained per-patient counter.
+     *
+     * @param patientId  the UUID of the patient whose records to retrieve.
+     * @param total      {@code none} or {@code approximate}.
+     * @param recordType optional filter by record type (e.g., CONSULTATION, LAB_RESULT).
+     * @param page       the zero-based page index (default 0).
+     * @param size       the page size (default 20, max 100).
+     * @param sortBy     the field to sort by (default {@code createdAt}).
+     * @param direction  the sort direction: {@code asc} or {@code desc} (default {@code desc}).
+     * @return a slice of clinical records, wrapped in a {@code 200 OK} response.
+     * @throws com.harak.pms.patient.PatientNotFoundException if no active patient exists with the given ID.
+     * @throws IllegalArgumentException if {@code total} is invalid.
+     */
+    @GetMapping(value = "/patient/{patientId}", params = {"total", "total!=exact"})
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Auditable(action = "CLINICAL_RECORD_LIST_VIEWED", entityType = "CLINICAL_RECORD",
+            detailExpression = "'Listed clinical records for patient ID: ' + #patientId"
+                    + " + ' — page: ' + #page + ', size: ' + T(Math).min(#size, 100)"
+                    + " + (#recordType != null ? ', recordType: ' + #recordType : '')")
+    public ResponseEntity<SliceResponse<ClinicalRecordResponse>> getClinicalRecordSliceByPatientId(
+            @PathVariable UUID patientId,
+            @RequestParam String total,
+            @RequestParam(required = false) String recordType,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String direction) {
+
+        boolean approximate = TotalMode.parse(total) == TotalMode.APPROXIMATE;
+        int clampedSize = Math.min(size, 100);
+        Sort sort = direction.equalsIgnoreCase("asc")
+                ? Sort.by(sortBy).ascending()
+                : Sort.by(sortBy).descending();
+        Pageable pageable = PageRequest.of(page, clampedSize, sort);
+
+        Slice<ClinicalRecord> records = clinicalRecordService.getClinicalRecordSliceByPatientId(
+                patientId, recordType, pageable);
+        phiBatchDecryptor.revealAll(records.getContent());
+
+        return ResponseEntity.ok(SliceResponse.from(records, ClinicalRecordResponse::from,
+                approximate ? clinicalRecordService.getApproximateClinicalRecordCount(patientId, recordType) : null));
+    }
+
     /**
      * Updates an existing clinical record with the provided non-null fields.
      *
      * <p>Only fields present in the request body are applied. The list of updated
      * field names (not values) is recorded in the audit trail.
      *
+     * <p>Send the {@code ETag} of the copy being edited as {@code If-Match} to make the update
+     * conditional: it is refused with {@code 412 Precondition Failed} if the record has changed
+     * since. An update that loses a race with a concurrent one is refused with {@code 409 Conflict}.
+     *
      * @param id      the UUID of the clinical record to update.
+     * @param ifMatch the {@code ETag}s of the versions the update may apply to, if any.
      * @param request the validated update request containing fields to change.
-     * @return the updated clinical record, wrapped in a {@code 200 OK} response.
+     * @return the updated clinical record and its new {@code ETag}, wrapped in a {@code 200 OK} response.
      * @throws ClinicalRecordNotFoundException if no active clinical record exists with the given ID.
+     * @throws com.harak.pms.common.VersionMismatchException if the record does not match {@code If-Match}.
      */
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
@@ -136,10 +224,12 @@ public class ClinicalRecordController {
             detailExpression = "'Updated fields: ' + @clinicalRecordService.getUpdatedFieldNames(#request)")
     public ResponseEntity<ClinicalRecordResponse> updateClinicalRecord(
             @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody UpdateClinicalRecordRequest request) {
 
-        ClinicalRecord record = clinicalRecordService.updateClinicalRecord(id, request);
-        return ResponseEntity.ok(ClinicalRecordResponse.from(record));
+        ClinicalRecord record = clinicalRecordService.updateClinicalRecord(id, request,
+                EntityTags.acceptedVersions(ifMatch));
+        return ResponseEntity.ok().eTag(EntityTags.of(record.getVersion())).body(ClinicalRecordResponse.from(record));
     }
 
     /**
@@ -0,0 +1,50 @@
+package com.harak.pms.clinicalrecord;
+
+import com.harak.pms.encryption.PhiFileStore;
+import com.harak.pms.encryption.PhiTable;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Registers the encrypted PHI columns of the {@code clinical_records} and {@code clinical_attachments}
+ * tables, and the encrypted attachment files, with the encryption module.
+ */
+@Configuration
+public class ClinicalRecordEncryptionConfig {
+
+    /**
+     * Declares the PHI columns of {@code clinical_records} for bulk encryption maintenance jobs.
+     *
+     * @return the {@link PhiTable} descriptor for clinical records.
+     */
+    @Bean
+    public PhiTable clinicalRecordPhiTable() {
+        return new PhiTable("clinical_records", List.of(
+                "diagnosis", "treatment_plan", "notes", "medications", "visit_date", "phi_envelope"), true);
+    }
+
+    /**
+     * Declares the PHI columns of {@code clinical_attachments} for bulk encryption maintenance jobs.
+     * The attachment files themselves are encrypted by {@link com.harak.pms.encryption.PhiStreamEncryptor}.
+     *
+     * @return the {@link PhiTable} descriptor for clinical record attachments.
+     */
+    @Bean
+    public PhiTable clinicalAttachmentPhiTable() {
+        return new PhiTable("clinical_attachments", List.of("file_name", "phi_envelope"), false);
+    }
+
+    /**
+     * Declares the encrypted attachment files, whose data keys are wrapped by the master key in
+     * each file header, so that key rotation re-wraps them too.
+     *
+     * @param clinicalAttachmentStore the store that resolves storage keys to files.
+     * @return the {@link PhiFileStore} descriptor for clinical record attachment files.
+     */
+    @Bean
+    public PhiFileStore clinicalAttachmentPhiFileStore(ClinicalAttachmentStore clinicalAttachmentStore) {
+        return new PhiFileStore("clinical_attachments", "storage_key", clinicalAttachmentStore::resolve);
+    }
+}
@@ -1,10 +1,15 @@
 package com.harak.pms.clinicalrecord;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -23,5 +28,33 @@ public interface ClinicalRecordRepository extends JpaRepository<ClinicalRecord,
 
     Page<ClinicalRecord> findAllByPatientIdAndRecordTypeAndDeletedFalse(UUID patientId, String recordType,
                                                                         Pageable pageable);
+
+    // Slice queries read one row more than the page size instead of running a COUNT query
+
+    Slice<ClinicalRecord> findSliceByPatientIdAndDeletedFalse(UUID patientId, Pageable pageable);
+
+    Slice<ClinicalRecord> findSliceByPatientIdAndRecordTypeAndDeletedFalse(UUID patientId, String recordType,
+                                                                          Pageable pageable);
+
+    long countByPatientIdAndDeletedFalse(UUID patientId);
+
+    long countByPatientIdAndRecordTypeAndDeletedFalse(UUID patientId, String recordType);
+
+    List<ClinicalRecord> findByPatientIdAndDeletedFalse(UUID patientId, Sort sort, Limit limit);
+
+    // Reads only the version column, to answer If-None-Match without loading the PHI columns
+    @Query("SELECT r.version FROM ClinicalRecord r WHERE r.id = :id AND r.deleted = false")
+    Optional<Long> findActiveVersion(UUID id);
+
+    /**
+     * Counts the active records of a patient per record type, in one grouped query.
+     */
+    @Query("SELECT new com.harak.pms.clinicalrecord.ClinicalRecordRepository$RecordTypeCount(r.recordType, count(r))"
+            + " FROM ClinicalRecord r WHERE r.patientId = :patientId AND r.deleted = false"
+            + " GROUP BY r.recordType ORDER BY r.recordType")
+    List<RecordTypeCount> countActiveByRecordType(UUID patientId);
+
+    record RecordTypeCount(String recordType, long count) {
+    }
 }
 
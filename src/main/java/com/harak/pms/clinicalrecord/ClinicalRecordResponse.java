@@ -20,6 +20,7 @@ import java.util.UUID;
  * @param visitDate           the date of the clinical visit.
  * @param createdAt           the timestamp when the record was created.
  * @param updatedAt           the timestamp when the record was last updated (may be {@code null}).
+ * @param version             the version of the record, also returned as its {@code ETag}.
  */
 public record ClinicalRecordResponse(
         UUID id,
@@ -32,7 +33,8 @@ public record ClinicalRecordResponse(
         String attendingPhysician,
         String visitDate,
         Instant createdAt,
-        Instant updatedAt
+        Instant updatedAt,
+        long version
 ) {
 
     /**
@@ -53,7 +55,8 @@ public record ClinicalRecordResponse(
                 record.getAttendingPhysician(),
                 record.getVisitDate(),
                 record.getCreatedAt(),
-                record.getUpdatedAt()
+                record.getUpdatedAt(),
+                record.getVersion()
         );
     }
 }
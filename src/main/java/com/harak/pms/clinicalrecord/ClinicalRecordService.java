@@ -1,15 +1,27 @@
 package com.harak.pms.clinicalrecord;
 
+import com.harak.pms.common.ApproximateCounter;
+import com.harak.pms.common.ApproximateCounts;
+import com.harak.pms.common.VersionMismatchException;
+import com.harak.pms.encryption.PhiBatchDecryptor;
+import com.harak.pms.patient.PatientResponse;
 import com.harak.pms.patient.PatientService;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -20,8 +32,9 @@ import java.util.UUID;
  * foreign key constraint to preserve Spring Modulith module boundaries.
  *
  * <p>All PHI fields are transparently encrypted/decrypted by the JPA
- * {@link com.harak.pms.encryption.PhiEncryptionConverter} — business logic
- * in this service operates on plaintext values.
+ * {@link com.harak.pms.encryption.SealedPhiConverter} — business logic
+ * in this service operates on plaintext values. The patient existence checks below load and
+ * decrypt nothing: they hit the patient cache or run a primary-key existence query.
  */
 @Slf4j
 @Service
@@ -30,12 +43,22 @@ public class ClinicalRecordService {
 
     private final ClinicalRecordRepository clinicalRecordRepository;
     private final PatientService patientService;
+    private final ApproximateCounts approximateCounts;
+    private final PhiBatchDecryptor phiBatchDecryptor;
+
+    // Active records per patient, per record type (recordType null = all types)
+    private ApproximateCounter<RecordCountKey> recordCount;
+
+    @PostConstruct
+    public void init() {
+        recordCount = approximateCounts.create("clinical.records");
+    }
 
     /**
      * Creates a new clinical record for an existing patient.
      *
      * <p>Patient existence is validated at the application layer by delegating to
-     * {@link PatientService#getPatientById(UUID)}, which throws
+     * {@link PatientService#requireActivePatient(UUID)}, which throws
      * {@link com.harak.pms.patient.PatientNotFoundException} if the patient
      * does not exist or is soft-deleted.
      *
@@ -46,7 +69,7 @@ public class ClinicalRecordService {
     @Transactional
     public ClinicalRecord createClinicalRecord(CreateClinicalRecordRequest request) {
         // Application-layer referential integrity — validates patient exists and is not soft-deleted
-        patientService.getPatientById(request.patientId());
+        patientService.requireActivePatient(request.patientId());
 
         ClinicalRecord record = ClinicalRecord.builder()
                 .id(UUID.randomUUID())
@@ -61,6 +84,7 @@ public class ClinicalRecordService {
                 .build();
 
         ClinicalRecord saved = clinicalRecordRepository.save(record);
+        countRecord(saved.getPatientId(), saved.getRecordType(), 1);
         log.info("Clinical record created with ID: {} for patient ID: {}", saved.getId(), saved.getPatientId());
         return saved;
     }
@@ -78,6 +102,18 @@ public class ClinicalRecordService {
                 .orElseThrow(() -> new ClinicalRecordNotFoundException("Clinical record not found with ID: " + id));
     }
 
+    /**
+     * Returns the version of an active clinical record, for answering {@code If-None-Match},
+     * with a query that reads the version column only and decrypts nothing.
+     *
+     * @throws ClinicalRecordNotFoundException if no active clinical record exists with the given ID.
+     */
+    @Transactional(readOnly = true)
+    public long getClinicalRecordVersion(UUID id) {
+        return clinicalRecordRepository.findActiveVersion(id)
+                .orElseThrow(() -> new ClinicalRecordNotFoundException("Clinical record not found with ID: " + id));
+    }
+
     /**
      * Retrieves a paginated list of clinical records for a given patient.
      *
@@ -93,7 +129,7 @@ public class ClinicalRecordService {
     @Transactional(readOnly = true)
     public Page<ClinicalRecord> getClinicalRecordsByPatientId(UUID patientId, String recordType, Pageable pageable) {
         // Validate patient exists before querying records
-        patientService.getPatientById(patientId);
+        patientService.requireActivePatient(patientId);
 
         if (recordType != null && !recordType.isBlank()) {
             return clinicalRecordRepository.findAllByPatientIdAndRecordTypeAndDeletedFalse(
@@ -102,24 +138,106 @@ public class ClinicalRecordService {
         return clinicalRecordRepository.findAllByPatientIdAndDeletedFalse(patientId, pageable);
     }
 
+    /**
+     * Retrieves one page of clinical records for a given patient without counting them
+     * (see {@link Slice}). Filtering and validation are the same as
+     * {@link #getClinicalRecordsByPatientId(UUID, String, Pageable)}.
+     *
+     * @throws com.harak.pms.patient.PatientNotFoundException if no active patient exists with the given ID.
+     */
+    @Transactional(readOnly = true)
+    public Slice<ClinicalRecord> getClinicalRecordSliceByPatientId(UUID patientId, String recordType,
+                                                                   Pageable pageable) {
+        patientService.requireActivePatient(patientId);
+
+        if (recordType != null && !recordType.isBlank()) {
+            return clinicalRecordRepository.findSliceByPatientIdAndRecordTypeAndDeletedFalse(
+                    patientId, recordType, pageable);
+        }
+        return clinicalRecordRepository.findSliceByPatientIdAndDeletedFalse(patientId, pageable);
+    }
+
+    /**
+     * Assembles the chart of a patient in one read-only transaction: the patient header, the
+     * {@code recentRecords} most recent active clinical records and the number of active records
+     * per record type.
+     *
+     * <p>At most three queries are run, however many records the patient has: the patient is
+     * loaded once (or served from the patient cache), which also validates that it exists; the
+     * recent records are read newest first off the {@code (patient_id, created_at, id)} index;
+     * and the counts come from a single grouped query. The PHI of the recent records is
+     * decrypted in one batch.
+     *
+     * @param patientId     the UUID of the patient.
+     * @param recentRecords the number of most recent records to include.
+     * @return the chart summary, with masked SSN and decrypted clinical records.
+     * @throws com.harak.pms.patient.PatientNotFoundException if no active patient exists with the given ID.
+     */
+    @Transactional(readOnly = true)
+    public ChartSummaryResponse getChartSummary(UUID patientId, int recentRecords) {
+        PatientResponse patient = patientService.getPatientResponse(patientId);
+
+        List<ClinicalRecord> records = clinicalRecordRepository.findByPatientIdAndDeletedFalse(patientId,
+                Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")), Limit.of(recentRecords));
+        phiBatchDecryptor.revealAll(records);
+
+        Map<String, Long> recordCounts = new LinkedHashMap<>();
+        long totalRecords = 0;
+        for (ClinicalRecordRepository.RecordTypeCount count : clinicalRecordRepository.countActiveByRecordType(patientId)) {
+            recordCounts.put(count.recordType(), count.count());
+            totalRecords += count.count();
+        }
+
+        return new ChartSummaryResponse(patient, records.stream().map(ClinicalRecordResponse::from).toList(),
+                recordCounts, totalRecords);
+    }
+
+    /**
+     * Returns the approximate number of active clinical records of a patient, optionally of one
+     * record type, maintained incrementally and re-counted periodically (see {@link ApproximateCounter}).
+     */
+    @Transactional(readOnly = true)
+    public long getApproximateClinicalRecordCount(UUID patientId, String recordType) {
+        RecordCountKey key = new RecordCountKey(patientId,
+                recordType != null && !recordType.isBlank() ? recordType : null);
+        return recordCount.get(key, k -> k.recordType() == null
+                ? clinicalRecordRepository.countByPatientIdAndDeletedFalse(k.patientId())
+                : clinicalRecordRepository.countByPatientIdAndRecordTypeAndDeletedFalse(k.patientId(), k.recordType()));
+    }
+
     /**
      * Updates an existing clinical record with the provided non-null fields.
      *
      * <p>Only fields present (non-null) in the request are applied. Unchanged fields
      * retain their current values. The list of updated field names is logged for auditing.
      *
-     * @param id      the UUID of the clinical record to update.
-     * @param request the validated update request containing fields to change.
+     * <p>With {@code expectedVersions} (from {@code If-Match}), the update is refused unless the
+     * record is still at one of those versions. Either way, the {@code @Version} column makes
+     * Hibernate refuse the update if another transaction changed the record after it was loaded.
+     *
+     * @param id               the UUID of the clinical record to update.
+     * @param request          the validated update request containing fields to change.
+     * @param expectedVersions the versions the client accepts, or {@code null} for an unconditional update.
      * @return the updated {@link ClinicalRecord} entity.
      * @throws ClinicalRecordNotFoundException if no active clinical record exists with the given ID.
+     * @throws VersionMismatchException if the record is not at one of the expected versions.
      */
     @Transactional
-    public ClinicalRecord updateClinicalRecord(UUID id, UpdateClinicalRecordRequest request) {
+    public ClinicalRecord updateClinicalRecord(UUID id, UpdateClinicalRecordRequest request,
+                                               Set<Long> expectedVersions) {
         ClinicalRecord record = getClinicalRecordById(id);
+        if (expectedVersions != null && !expectedVersions.contains(record.getVersion())) {
+            throw new VersionMismatchException("Clinical record " + id + " has been modified (current version "
+                    + record.getVersion() + ")");
+        }
 
         List<String> updatedFields = new ArrayList<>();
 
         if (request.recordType() != null) {
+            if (!request.recordType().equals(record.getRecordType())) {
+                recordCount.add(new RecordCountKey(record.getPatientId(), record.getRecordType()), -1);
+                recordCount.add(new RecordCountKey(record.getPatientId(), request.recordType()), 1);
+            }
             record.setRecordType(request.recordType());
             updatedFields.add("recordType");
         }
@@ -187,7 +305,15 @@ public class ClinicalRecordService {
         ClinicalRecord record = getClinicalRecordById(id);
         record.setDeleted(true);
         clinicalRecordRepository.save(record);
+        countRecord(record.getPatientId(), record.getRecordType(), -1);
         log.info("Clinical record soft-deleted with ID: {}", id);
     }
-}
 
+    private void countRecord(UUID patientId, String recordType, long delta) {
+        recordCount.add(new RecordCountKey(patientId, null), delta);
+        recordCount.add(new RecordCountKey(patientId, recordType), delta);
+    }
+
+    private record RecordCountKey(UUID patientId, String recordType) {
+    }
+}
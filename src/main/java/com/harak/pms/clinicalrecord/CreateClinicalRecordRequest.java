@@ -16,9 +16,9 @@ import java.util.UUID;
  * @param patientId           the UUID of the patient this record belongs to.
  * @param recordType          the type of clinical record (e.g., CONSULTATION, LAB_RESULT).
  * @param diagnosis           the clinical diagnosis (1–500 characters).
- * @param treatmentPlan       the treatment plan (optional, up to 1000 characters).
- * @param notes               additional clinical notes (optional, up to 2000 characters).
- * @param medications         prescribed medications (optional, up to 1000 characters).
+ * @param treatmentPlan       the treatment plan (optional, up to 20000 characters).
+ * @param notes               additional clinical notes (optional, up to 50000 characters).
+ * @param medications         prescribed medications (optional, up to 10000 characters).
  * @param attendingPhysician  the name of the attending physician (1–200 characters).
  * @param visitDate           the date of the clinical visit in {@code YYYY-MM-DD} format.
  */
@@ -37,13 +37,13 @@ public record CreateClinicalRecordRequest(
         @Size(min = 1, max = 500, message = "Diagnosis must be between 1 and 500 characters")
         String diagnosis,
 
-        @Size(max = 1000, message = "Treatment plan must not exceed 1000 characters")
+        @Size(max = 20000, message = "Treatment plan must not exceed 20000 characters")
         String treatmentPlan,
 
-        @Size(max = 2000, message = "Notes must not exceed 2000 characters")
+        @Size(max = 50000, message = "Notes must not exceed 50000 characters")
         String notes,
 
-        @Size(max = 1000, message = "Medications must not exceed 1000 characters")
+        @Size(max = 10000, message = "Medications must not exceed 10000 characters")
         String medications,
 
         @NotBlank(message = "Attending physician is required")
@@ -0,0 +1,52 @@
+package com.harak.pms.clinicalrecord;
+
+import com.harak.pms.audit.Auditable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.UUID;
+
+/**
+ * REST controller for the patient chart, which combines a patient with its clinical records.
+ *
+ * <p>Lives in the clinical record module because it reads both patients and clinical records,
+ * and the patient module must not depend on clinical records. The read is audit-logged
+ * automatically via the {@link Auditable} AOP aspect per HIPAA §164.312(b).
+ */
+@RestController
+@RequestMapping("/api/patients")
+@RequiredArgsConstructor
+public class PatientChartController {
+
+    private final ClinicalRecordService clinicalRecordService;
+
+    /**
+     * Retrieves the chart summary of a patient: the patient, its most recent clinical records and
+     * the number of clinical records per record type, in one request instead of three.
+     *
+     * <p>Access is restricted to ADMIN, DOCTOR, and NURSE roles.
+     *
+     * @param id      the UUID of the patient.
+     * @param records the number of most recent clinical records to include (default 10, between 1 and 50).
+     * @return the chart summary, wrapped in a {@code 200 OK} response.
+     * @throws com.harak.pms.patient.PatientNotFoundException if no active patient exists with the given ID.
+     */
+    @GetMapping("/{id}/chart-summary")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Auditable(action = "PATIENT_CHART_VIEWED", entityType = "PATIENT",
+            detailExpression = "'Viewed chart summary with ' + #result.body.recentRecords().size()"
+                    + " + ' of ' + #result.body.totalRecords() + ' clinical records'")
+    public ResponseEntity<ChartSummaryResponse> getChartSummary(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "10") int records) {
+
+        int clampedRecords = Math.clamp(records, 1, 50);
+        return ResponseEntity.ok(clinicalRecordService.getChartSummary(id, clampedRecords));
+    }
+}
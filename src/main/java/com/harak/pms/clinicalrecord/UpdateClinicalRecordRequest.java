@@ -10,9 +10,9 @@ import jakarta.validation.constraints.Size;
  *
  * @param recordType          the updated record type (optional, must match allowed values if provided).
  * @param diagnosis           the updated diagnosis (optional, up to 500 characters).
- * @param treatmentPlan       the updated treatment plan (optional, up to 1000 characters).
- * @param notes               the updated clinical notes (optional, up to 2000 characters).
- * @param medications         the updated medications (optional, up to 1000 characters).
+ * @param treatmentPlan       the updated treatment plan (optional, up to 20000 characters).
+ * @param notes               the updated clinical notes (optional, up to 50000 characters).
+ * @param medications         the updated medications (optional, up to 10000 characters).
  * @param attendingPhysician  the updated attending physician (optional, up to 200 characters).
  * @param visitDate           the updated visit date in {@code YYYY-MM-DD} format (optional).
  */
@@ -26,13 +26,13 @@ public record UpdateClinicalRecordRequest(
         @Size(min = 1, max = 500, message = "Diagnosis must be between 1 and 500 characters")
         String diagnosis,
 
-        @Size(max = 1000, message = "Treatment plan must not exceed 1000 characters")
+        @Size(max = 20000, message = "Treatment plan must not exceed 20000 characters")
         String treatmentPlan,
 
-        @Size(max = 2000, message = "Notes must not exceed 2000 characters")
+        @Size(max = 50000, message = "Notes must not exceed 50000 characters")
         String notes,
 
-        @Size(max = 1000, message = "Medications must not exceed 1000 characters")
+        @Size(max = 10000, message = "Medications must not exceed 10000 characters")
         String medications,
 
         @Size(min = 1, max = 200, message = "Attending physician must be between 1 and 200 characters")
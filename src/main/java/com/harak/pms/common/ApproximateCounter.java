@@ -0,0 +1,59 @@
+package com.harak.pms.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Incrementally maintained, approximate row counts for list endpoints that report a total
+ * without running a {@code COUNT} query on every request. Created by {@link ApproximateCounts}.
+ *
+ * <p>The first read of a key seeds it with an exact count; writers then adjust the count with
+ * {@link #add(Object, long)} after their transaction commits. Each count is discarded and
+ * re-seeded after the configured refresh interval, which bounds the drift from writes made by
+ * other instances, by rolled-back races, or directly in the database.
+ *
+ * @param <K> the key type, e.g. a filter combination.
+ */
+public final class ApproximateCounter<K> {
+
+    private final Cache<K, AtomicLong> counts;
+
+    ApproximateCounter(Cache<K, AtomicLong> counts) {
+        this.counts = counts;
+    }
+
+    /**
+     * Returns the approximate count for a key, seeding it with {@code exactCount} if it is not held.
+     */
+    public long get(K key, ToLongFunction<? super K> exactCount) {
+        return counts.get(key, k -> new AtomicLong(exactCount.applyAsLong(k))).get();
+    }
+
+    /**
+     * Adjusts the count of a key, once the current transaction (if any) has committed. Keys that
+     * are not held are left alone; they are seeded with an exact count on their next read.
+     */
+    public void add(K key, long delta) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(key, delta);
+                }
+            });
+        } else {
+            apply(key, delta);
+        }
+    }
+
+    private void apply(K key, long delta) {
+        AtomicLong count = counts.getIfPresent(key);
+        if (count != null) {
+            count.addAndGet(delta);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.harak.pms.common;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates {@link ApproximateCounter}s with the shared settings
+ * {@code pagination.approximate-count.refresh-interval} and {@code maximum-keys}. Each counter
+ * is monitored as cache {@code approximate.count.<name>}; its miss count is the number of exact
+ * {@code COUNT} queries run.
+ */
+@Component
+@RequiredArgsConstructor
+public class ApproximateCounts {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${pagination.approximate-count.refresh-interval:PT5M}")
+    private Duration refreshInterval;
+
+    @Value("${pagination.approximate-count.maximum-keys:10000}")
+    private long maximumKeys;
+
+    public <K> ApproximateCounter<K> create(String name) {
+        Cache<K, AtomicLong> counts = Caffeine.newBuilder()
+                .expireAfterWrite(refreshInterval)
+                .maximumSize(maximumKeys)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, counts, "approximate.count." + name);
+        return new ApproximateCounter<>(counts);
+    }
+}
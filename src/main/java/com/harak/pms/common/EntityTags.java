@@ -0,0 +1,66 @@
+package com.harak.pms.common;
+
+import org.springframework.http.ETag;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Strong entity tags for conditional requests (RFC 9110 §13.1), derived from the {@code @Version}
+ * of an entity rather than from a hash of the response body.
+ *
+ * <p>A version changes on every committed update, so comparing versions answers
+ * {@code If-None-Match} and {@code If-Match} without loading, decrypting or serializing PHI.
+ */
+public final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    /**
+     * Returns the entity tag of an entity version, e.g. {@code "3"}.
+     */
+    public static String of(long version) {
+        return ETag.quoteETagIfNecessary(Long.toString(version));
+    }
+
+    /**
+     * Returns {@code true} if an {@code If-None-Match} header lists the given version, i.e. the
+     * client's copy is current and {@code 304 Not Modified} may be returned. Uses the weak
+     * comparison the RFC prescribes for {@code If-None-Match}; {@code *} matches any version.
+     */
+    public static boolean matches(String ifNoneMatch, long version) {
+        ETag current = ETag.create(of(version));
+        for (ETag tag : ETag.parse(ifNoneMatch)) {
+            if (tag.isWildcard() || tag.compare(current, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the versions an {@code If-Match} header allows an update to apply to, or
+     * {@code null} if it allows any version (no header, or {@code *}). Uses strong comparison:
+     * weak tags and tags that are not versions match nothing, so the update is always refused.
+     */
+    public static Set<Long> acceptedVersions(String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (ETag tag : ETag.parse(ifMatch)) {
+            if (tag.isWildcard()) {
+                return null;
+            }
+            if (!tag.weak()) {
+                try {
+                    versions.add(Long.parseLong(tag.tag()));
+                } catch (NumberFormatException e) {
+                    // Not one of our tags — matches no version
+                }
+            }
+        }
+        return versions;
+    }
+}
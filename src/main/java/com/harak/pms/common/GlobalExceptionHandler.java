@@ -1,8 +1,13 @@
 package com.harak.pms.common;
 
+import com.harak.pms.clinicalrecord.AttachmentTooLargeException;
+import com.harak.pms.clinicalrecord.ClinicalAttachmentNotFoundException;
 import com.harak.pms.clinicalrecord.ClinicalRecordNotFoundException;
+import com.harak.pms.idempotency.IdempotencyKeyReusedException;
+import com.harak.pms.idempotency.IdempotentRequestInProgressException;
 import com.harak.pms.patient.PatientNotFoundException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -70,6 +75,61 @@ public class GlobalExceptionHandler {
         ));
     }
 
+    @ExceptionHandler(ClinicalAttachmentNotFoundException.class)
+    public ResponseEntity<Map<String, Object>> handleClinicalAttachmentNotFound(ClinicalAttachmentNotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                "timestamp", Instant.now().toString(),
+                "status", HttpStatus.NOT_FOUND.value(),
+                "error", ex.getMessage()
+        ));
+    }
+
+    @ExceptionHandler(AttachmentTooLargeException.class)
+    public ResponseEntity<Map<String, Object>> handleAttachmentTooLarge(AttachmentTooLargeException ex) {
+        return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).body(Map.of(
+                "timestamp", Instant.now().toString(),
+                "status", HttpStatus.CONTENT_TOO_LARGE.value(),
+                "error", ex.getMessage()
+        ));
+    }
+
+    @ExceptionHandler(VersionMismatchException.class)
+    public ResponseEntity<Map<String, Object>> handleVersionMismatch(VersionMismatchException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(Map.of(
+                "timestamp", Instant.now().toString(),
+                "status", HttpStatus.PRECONDITION_FAILED.value(),
+                "error", ex.getMessage()
+        ));
+    }
+
+    // Lost a race with a concurrent update of the same row (@Version check at flush time)
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "timestamp", Instant.now().toString(),
+                "status", HttpStatus.CONFLICT.value(),
+                "error", "The record was modified concurrently. Reload it and retry."
+        ));
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotencyKeyReused(IdempotencyKeyReusedException ex) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).body(Map.of(
+                "timestamp", Instant.now().toString(),
+                "status", HttpStatus.UNPROCESSABLE_CONTENT.value(),
+                "error", ex.getMessage()
+        ));
+    }
+
+    @ExceptionHandler(IdempotentRequestInProgressException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotentRequestInProgress(IdempotentRequestInProgressException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "timestamp", Instant.now().toString(),
+                "status", HttpStatus.CONFLICT.value(),
+                "error", ex.getMessage()
+        ));
+    }
+
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<Map<String, Object>> handleIllegalArgument(IllegalArgumentException ex) {
         return ResponseEntity.badRequest().body(Map.of(
@@ -0,0 +1,45 @@
+package com.harak.pms.common;
+
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of a list endpoint without an exact total ({@code total=none} or {@code total=approximate}).
+ *
+ * <p>The page is fetched as a {@link Slice}: one row more than requested is read to tell whether
+ * another page follows, and no {@code COUNT} query is run. Suited to infinite-scroll clients.
+ *
+ * @param content          the items of this page.
+ * @param page             the zero-based page index.
+ * @param size             the page size.
+ * @param hasNext          whether another page follows.
+ * @param approximateTotal the approximate number of items in the whole list, only with
+ *                         {@code total=approximate} (see {@link ApproximateCounter}).
+ * @param <T> the item type.
+ */
+public record SliceResponse<T>(
+        List<T> content,
+        int page,
+        int size,
+        boolean hasNext,
+        Long approximateTotal
+) {
+
+    /**
+     * Maps a slice of entities to a response.
+     *
+     * @param slice            the slice of entities.
+     * @param mapper           the entity-to-DTO mapping.
+     * @param approximateTotal the approximate total, or {@code null} if not requested.
+     */
+    public static <E, T> SliceResponse<T> from(Slice<E> slice, Function<? super E, T> mapper, Long approximateTotal) {
+        return new SliceResponse<>(
+                slice.getContent().stream().<T>map(mapper).toList(),
+                slice.getNumber(),
+                slice.getSize(),
+                slice.hasNext(),
+                approximateTotal);
+    }
+}
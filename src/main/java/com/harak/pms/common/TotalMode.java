@@ -0,0 +1,32 @@
+package com.harak.pms.common;
+
+import java.util.Locale;
+
+/**
+ * How a list endpoint reports the total number of items ({@code total} request parameter).
+ */
+public enum TotalMode {
+
+    /** A {@link org.springframework.data.domain.Page} with an exact total: one {@code COUNT} query per request. */
+    EXACT,
+
+    /** A {@link SliceResponse} with a {@code hasNext} flag and no total. */
+    NONE,
+
+    /** A {@link SliceResponse} with a total from an {@link ApproximateCounter}. */
+    APPROXIMATE;
+
+    /**
+     * Parses the {@code total} request parameter: {@code exact}, {@code none} or {@code approximate}.
+     *
+     * @throws IllegalArgumentException if the value is not a known mode.
+     */
+    public static TotalMode parse(String value) {
+        for (TotalMode mode : values()) {
+            if (mode.name().toLowerCase(Locale.ROOT).equals(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("total must be one of: exact, none, approximate");
+    }
+}
@@ -0,0 +1,17 @@
+package com.harak.pms.common;
+
+/**
+ * Thrown when a conditional update ({@code If-Match}) names a version that is no longer current,
+ * i.e. the resource was modified since the client read it. Mapped to {@code 412 Precondition Failed}.
+ */
+public class VersionMismatchException extends RuntimeException {
+
+    /**
+     * Constructs a new exception with the given detail message.
+     *
+     * @param message the detail message, naming the resource and its current version.
+     */
+    public VersionMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,86 @@
+package com.harak.pms.encryption;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Keyed HMAC-SHA256 blind index for encrypted PHI fields that must support equality lookups.
+ *
+ * <p>AES-GCM ciphertext is non-deterministic, so an encrypted column cannot be queried or
+ * constrained by value. A blind index is a deterministic, keyed digest of the plaintext stored
+ * in a separate indexed column: equal plaintexts produce equal indexes, but the index reveals
+ * nothing about the plaintext without the HMAC key.
+ *
+ * <p>The HMAC key is loaded from {@code phi.blind-index-key} and is deliberately independent
+ * of {@code phi.encryption-key}, so the encryption key can be rotated without recomputing
+ * every index.
+ *
+ * <p>Each thread keeps its own initialized {@link Mac}, since {@code Mac.getInstance} and
+ * {@code init} cost more than the digest of a short value and a {@code Mac} is not thread-safe.
+ */
+@Slf4j
+@Component
+public class BlindIndexer {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int MIN_KEY_LENGTH = 32;
+
+    @Value("${phi.blind-index-key:}")
+    private String encodedKey;
+
+    private SecretKey secretKey;
+    private ThreadLocal<Mac> mac;
+
+    @PostConstruct
+    public void init() {
+        if (encodedKey == null || encodedKey.isBlank()) {
+            throw new IllegalStateException(
+                    "PHI_BLIND_INDEX_KEY is not set. Blind indexes are required for MRN lookups. "
+                            + "Generate a key with: openssl rand -base64 32");
+        }
+        byte[] keyBytes = Base64.getDecoder().decode(encodedKey);
+        if (keyBytes.length < MIN_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                    "PHI_BLIND_INDEX_KEY must be at least 32 bytes (256 bits). Current: "
+                            + keyBytes.length + " bytes. Generate with: openssl rand -base64 32");
+        }
+        this.secretKey = new SecretKeySpec(keyBytes, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(this::newMac);
+        log.info("PHI blind index initialized successfully");
+    }
+
+    /**
+     * Computes the blind index of the given plaintext value.
+     *
+     * @param plaintext the plaintext PHI value to index.
+     * @return the lowercase hex-encoded HMAC-SHA256 digest (64 characters), or {@code null} if
+     *         {@code plaintext} is {@code null}.
+     */
+    public String index(String plaintext) {
+        if (plaintext == null) {
+            return null;
+        }
+        // doFinal resets the Mac for the next value on this thread
+        return HexFormat.of().formatHex(mac.get().doFinal(plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(secretKey);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialize PHI blind index", e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.harak.pms.encryption;
+
+import com.harak.pms.audit.AuditService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Operational endpoints for the PHI encryption background jobs. Reports progress only — no PHI
+ * is read or returned.
+ */
+@RestController
+@RequestMapping("/api/admin/phi")
+@RequiredArgsConstructor
+public class PhiAdminController {
+
+    private final PhiKeyRotationTask phiKeyRotationTask;
+    private final PhiPlaintextMigrationTask phiPlaintextMigrationTask;
+    private final AuditService auditService;
+
+    /**
+     * Reports the progress of the key rotation job towards the current primary key.
+     *
+     * <p>Progress is read from {@code phi_rewrite_checkpoints}, so it survives restarts. Tables
+     * and file stores that have not been visited yet since the primary key changed are reported
+     * as not started. The retired key can be removed once every entry is {@code completed} with
+     * no failed rows. Restricted to ADMIN.
+     *
+     * @return {@code 200 OK} with the primary key ID, the throttle and the progress per table and
+     *         file store, including up to 100 failed row IDs each.
+     */
+    @GetMapping("/key-rotation")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<PhiKeyRotationStatus> getKeyRotationStatus() {
+        return ResponseEntity.ok(phiKeyRotationTask.getStatus());
+    }
+
+    /**
+     * Starts encrypting the PHI values that are still stored without an envelope (legacy
+     * plaintext, or v0 ciphertext not yet converted) in the background.
+     *
+     * <p>The run is safe under live traffic and is audited as {@code PHI_PLAINTEXT_MIGRATION_STARTED}.
+     * Only one run can be in progress at a time. Restricted to ADMIN.
+     *
+     * @return {@code 202 Accepted} with the status of the new run, or {@code 409 Conflict} with
+     *         the status of the run already in progress.
+     */
+    @PostMapping("/plaintext-migration")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<PhiPlaintextMigrationStatus> startPlaintextMigration() {
+        if (!phiPlaintextMigrationTask.start()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(phiPlaintextMigrationTask.getStatus());
+        }
+        String adminUsername = SecurityContextHolder.getContext().getAuthentication().getName();
+        auditService.logEvent("PHI_PLAINTEXT_MIGRATION_STARTED", "PHI", null, adminUsername,
+                null, "Started encryption of legacy plaintext PHI");
+        return ResponseEntity.accepted().body(phiPlaintextMigrationTask.getStatus());
+    }
+
+    /**
+     * Reports the progress of the current or last plaintext migration run.
+     *
+     * <p>The status is held in memory and is empty after a restart until a run is started. The
+     * migration is complete once a finished run reports no remaining and no failed rows.
+     * Restricted to ADMIN.
+     *
+     * @return {@code 200 OK} with the row counts, throughput and failures of the run.
+     */
+    @GetMapping("/plaintext-migration")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public ResponseEntity<PhiPlaintextMigrationStatus> getPlaintextMigrationStatus() {
+        return ResponseEntity.ok(phiPlaintextMigrationTask.getStatus());
+    }
+}
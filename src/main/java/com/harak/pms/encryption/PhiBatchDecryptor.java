@@ -0,0 +1,171 @@
+package com.harak.pms.encryption;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+/**
+ * Decrypts the PHI of a whole result set (an API page, an export batch) ahead of DTO mapping,
+ * fanning the work out across a bounded fork-join pool.
+ *
+ * <p>Entity getters decrypt lazily on the calling thread (see {@link SealedPhi}), so mapping a
+ * full page would otherwise run every AES-GCM operation serially on the request thread. Callers
+ * pass the loaded entities to {@link #revealAll} first; afterwards the getters return cached
+ * plaintext. A row envelope counts as one decryption — revealing one of its fields opens the
+ * whole row.
+ *
+ * <p>Small result sets — fewer pending decryptions than {@code phi.batch-decryption.threshold} —
+ * are decrypted inline, where the hand-off to the pool would cost more than it saves. The pool
+ * has {@code phi.batch-decryption.parallelism} workers (default: available processors) and is
+ * shared by all requests, so concurrent large pages queue rather than oversubscribe the CPUs.
+ * Both paths are timed as {@code phi.batch.decryption{mode=serial|parallel}}, batch sizes are
+ * recorded as {@code phi.batch.decryption.values}, and the pool is monitored as
+ * {@code executor.*{name=phi.batch.decryption}}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PhiBatchDecryptor {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${phi.batch-decryption.threshold:64}")
+    private int threshold;
+
+    @Value("${phi.batch-decryption.parallelism:0}")
+    private int parallelism;
+
+    private ForkJoinPool pool;
+    private Timer serialTimer;
+    private Timer parallelTimer;
+    private DistributionSummary batchValues;
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        pool = new ForkJoinPool(parallelism, PhiBatchDecryptor::newWorker, null, false);
+        new ExecutorServiceMetrics(pool, "phi.batch.decryption", Tags.empty()).bindTo(meterRegistry);
+        serialTimer = Timer.builder("phi.batch.decryption")
+                .description("Time to decrypt the PHI of a result set")
+                .tag("mode", "serial")
+                .register(meterRegistry);
+        parallelTimer = Timer.builder("phi.batch.decryption")
+                .description("Time to decrypt the PHI of a result set")
+                .tag("mode", "parallel")
+                .register(meterRegistry);
+        batchValues = DistributionSummary.builder("phi.batch.decryption.values")
+                .description("Pending PHI decryptions per result set")
+                .register(meterRegistry);
+        log.info("PHI batch decryption: {} workers, parallel from {} values", parallelism, threshold);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Decrypts every not yet revealed PHI field of the given entities.
+     *
+     * @param entities the loaded entities, e.g. the content of a page.
+     * @throws IllegalStateException if a value cannot be decrypted (as the getter would).
+     */
+    public void revealAll(Collection<? extends PhiRowEntity> entities) {
+        List<SealedPhi[]> rows = new ArrayList<>(entities.size());
+        int pending = 0;
+        for (PhiRowEntity entity : entities) {
+            SealedPhi[] fields = entity.getPhiFields();
+            int decryptions = pendingDecryptions(fields);
+            if (decryptions > 0) {
+                rows.add(fields);
+                pending += decryptions;
+            }
+        }
+        if (pending == 0) {
+            return;
+        }
+        batchValues.record(pending);
+
+        if (pending < threshold || parallelism < 2 || rows.size() < 2) {
+            serialTimer.record(() -> rows.forEach(PhiBatchDecryptor::reveal));
+        } else {
+            parallelTimer.record(() -> revealInParallel(rows));
+        }
+    }
+
+    // Splits the rows into one contiguous slice per worker and waits for all of them
+    private void revealInParallel(List<SealedPhi[]> rows) {
+        int slices = Math.min(parallelism, rows.size());
+        List<Callable<Void>> tasks = new ArrayList<>(slices);
+        for (int i = 0; i < slices; i++) {
+            List<SealedPhi[]> slice = rows.subList(i * rows.size() / slices, (i + 1) * rows.size() / slices);
+            tasks.add(() -> {
+                slice.forEach(PhiBatchDecryptor::reveal);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("PHI batch decryption interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("PHI batch decryption failed", e.getCause());
+        }
+    }
+
+    private static void reveal(SealedPhi[] fields) {
+        for (SealedPhi field : fields) {
+            if (field != null) {
+                field.reveal();
+            }
+        }
+    }
+
+    // Row references of one envelope share a single decryption
+    private static int pendingDecryptions(SealedPhi[] fields) {
+        int decryptions = 0;
+        boolean rowEnvelope = false;
+        for (SealedPhi field : fields) {
+            if (field == null || field.isRevealed()) {
+                continue;
+            }
+            if (field.isRowReference()) {
+                rowEnvelope = true;
+            } else {
+                decryptions++;
+            }
+        }
+        return rowEnvelope ? decryptions + 1 : decryptions;
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        worker.setName("phi-decrypt-" + worker.getPoolIndex());
+        return worker;
+    }
+}
@@ -0,0 +1,71 @@
+package com.harak.pms.encryption;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Online conversion of legacy Base64 text ciphertext to the binary ciphertext format.
+ *
+ * <p>Migration V9 changed the PHI columns to {@code bytea} by copying the existing text
+ * byte-for-byte, so old rows remain readable but still carry the Base64 overhead. This task
+ * walks every registered {@link PhiTable} in small keyset batches and rewrites those values via
+ * {@link StringEncryptor#convertLegacyCiphertext(byte[])} — no decryption or re-encryption is
+ * involved. Each scheduled run processes a bounded number of batches so the scheduler thread
+ * and the connection pool are never monopolized; once a full pass completes, the task goes idle
+ * until the next restart.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PhiBinaryConversionTask {
+
+    private final List<PhiTable> phiTables;
+    private final PhiTableRewriter phiTableRewriter;
+    private final StringEncryptor stringEncryptor;
+
+    @Value("${phi.binary-conversion.enabled:true}")
+    private boolean enabled;
+
+    @Value("${phi.binary-conversion.batch-size:500}")
+    private int batchSize;
+
+    @Value("${phi.binary-conversion.batches-per-run:20}")
+    private int batchesPerRun;
+
+    private int tableIndex;
+    private UUID lastId;
+    private long converted;
+    private boolean completed;
+
+    @Scheduled(initialDelayString = "${phi.binary-conversion.initial-delay-ms:30000}",
+            fixedDelayString = "${phi.binary-conversion.interval-ms:1000}")
+    public void convertNextBatches() {
+        if (!enabled || completed) {
+            return;
+        }
+        for (int i = 0; i < batchesPerRun && tableIndex < phiTables.size(); i++) {
+            PhiTable table = phiTables.get(tableIndex);
+            PhiTableRewriter.Batch batch = phiTableRewriter.rewriteBatch(
+                    table, lastId, batchSize, stringEncryptor::convertLegacyCiphertext);
+            converted += batch.updated();
+            for (PhiTableRewriter.Failure failure : batch.failed()) {
+                log.warn("PHI binary conversion skipped row {} of {}: {}", failure.id(), table.name(), failure.error());
+            }
+            lastId = batch.lastId();
+            if (batch.scanned() < batchSize) {
+                tableIndex++;
+                lastId = null;
+            }
+        }
+        if (tableIndex >= phiTables.size()) {
+            completed = true;
+            log.info("PHI binary conversion complete — converted {} rows to binary ciphertext", converted);
+        }
+    }
+}
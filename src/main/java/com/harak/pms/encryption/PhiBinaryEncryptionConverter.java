@@ -0,0 +1,32 @@
+package com.harak.pms.encryption;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA AttributeConverter that transparently encrypts/decrypts PHI string fields into
+ * {@code bytea} columns using AES-256-GCM. Apply to entity fields with
+ * {@code @Convert(converter = PhiBinaryEncryptionConverter.class)}.
+ *
+ * <p>Binary storage avoids the 33% Base64 inflation and the encode/decode pass of
+ * {@link PhiEncryptionConverter}, and is not bound by a VARCHAR length limit.
+ */
+@Component
+@Converter
+@RequiredArgsConstructor
+public class PhiBinaryEncryptionConverter implements AttributeConverter<String, byte[]> {
+
+    private final StringEncryptor stringEncryptor;
+
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return stringEncryptor.encryptToBytes(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        return stringEncryptor.decrypt(dbData);
+    }
+}
@@ -0,0 +1,97 @@
+package com.harak.pms.encryption;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * DEFLATE compression of PHI plaintext before encryption, for long free-text values such as
+ * clinical notes.
+ *
+ * <p>A compressed payload is {@code originalLength[4] + rawDeflate}; it is what gets encrypted,
+ * and the envelope marks it with {@link PhiEnvelope#FLAG_COMPRESSED}. Raw DEFLATE (no zlib header
+ * or checksum) is used because AES-GCM already authenticates the payload. The original length
+ * lets the reader allocate the output exactly and rejects anything that would inflate beyond it.
+ *
+ * <p>Each thread reuses one {@link Deflater} and one {@link Inflater}, like the cipher instances
+ * in {@link StringEncryptor}.
+ */
+final class PhiCompression {
+
+    /** Upper bound for a decompressed value; a larger length can only come from a corrupt payload. */
+    static final int MAX_PLAINTEXT_LENGTH = 16 * 1024 * 1024;
+
+    private static final int LENGTH_PREFIX = Integer.BYTES;
+
+    private static final ThreadLocal<Deflater> DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private PhiCompression() {
+        // Utility class — prevent instantiation
+    }
+
+    /**
+     * Compresses a plaintext payload.
+     *
+     * @return the compressed payload, or {@code null} if it would not be smaller than {@code input}.
+     */
+    static byte[] compress(byte[] input) {
+        Deflater deflater = DEFLATER.get();
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            // Incompressible output does not fit and is rejected below without growing the buffer
+            byte[] output = new byte[input.length];
+            int length = LENGTH_PREFIX;
+            while (!deflater.finished() && length < output.length) {
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            if (!deflater.finished() || length >= input.length) {
+                Arrays.fill(output, (byte) 0);
+                return null;
+            }
+            ByteBuffer.wrap(output).putInt(input.length);
+            return Arrays.copyOf(output, length);
+        } finally {
+            deflater.reset();
+        }
+    }
+
+    /**
+     * Restores the plaintext of a compressed payload.
+     *
+     * @param payload the decrypted payload, read from offset 0.
+     * @param length  the number of payload bytes.
+     * @throws IllegalStateException if the payload is not a valid compressed value.
+     */
+    static byte[] decompress(byte[] payload, int length) {
+        int originalLength = length < LENGTH_PREFIX ? -1 : ByteBuffer.wrap(payload).getInt();
+        if (originalLength < 0 || originalLength > MAX_PLAINTEXT_LENGTH) {
+            throw new IllegalStateException("Invalid compressed PHI payload");
+        }
+        Inflater inflater = INFLATER.get();
+        try {
+            inflater.setInput(payload, LENGTH_PREFIX, length - LENGTH_PREFIX);
+            byte[] output = new byte[originalLength];
+            int inflated = 0;
+            while (inflated < originalLength) {
+                int n = inflater.inflate(output, inflated, originalLength - inflated);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += n;
+            }
+            if (inflated != originalLength) {
+                throw new IllegalStateException("Invalid compressed PHI payload");
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Invalid compressed PHI payload", e);
+        } finally {
+            inflater.reset();
+        }
+    }
+}
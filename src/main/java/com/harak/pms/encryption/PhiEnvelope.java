@@ -0,0 +1,151 @@
+package com.harak.pms.encryption;
+
+import java.util.Base64;
+
+/**
+ * Layout and format detection for PHI ciphertext envelopes.
+ *
+ * <p>Supported formats, newest first:
+ * <pre>
+ * row     MAGIC[1] VERSION=4[1] KEY_ID[1] WRAP_IV[12] wrappedDataKey[32] wrapTag[16] IV[12] ciphertext authTag[16]
+ * ref     MAGIC[1] VERSION=3[1] FIELD_INDEX[1]                                     (field stored in the row envelope)
+ * v2      MAGIC[1] VERSION=2[1] KEY_ID[1] IV[12] ciphertext authTag[16]
+ * v1      MAGIC[1] VERSION=1[1]           IV[12] ciphertext authTag[16]   (implicit legacy key)
+ * v0      Base64(IV[12] ciphertext authTag[16])                            (implicit legacy key)
+ * legacy  unencrypted plaintext
+ * </pre>
+ * Attachment files use a streaming format of their own, which never appears in a PHI column:
+ * <pre>
+ * stream  MAGIC[1] VERSION=5[1] KEY_ID[1] WRAP_IV[12] wrappedDataKey[32] wrapTag[16] CHUNK_SIZE[4] NONCE_PREFIX[7]
+ *         chunk[0] ... chunk[n-1]      each chunk: ciphertext[CHUNK_SIZE, the last one shorter] authTag[16]
+ * </pre>
+ * The text form of v1/v2 is the Base64 encoding of the envelope. {@code MAGIC} is a UTF-8
+ * continuation byte, which can never start valid UTF-8 text or Base64, so telling an envelope
+ * apart from a legacy value is a constant-time check of the first bytes. A legacy value that is
+ * not well-formed Base64 is plaintext, found in a single pass over its characters with no
+ * decoding. A well-formed Base64 value is only a v0 candidate: free text can be valid Base64 too,
+ * so {@link StringEncryptor} treats it as ciphertext only once it authenticates.
+ *
+ * <p>v2 and row envelopes may set {@link #FLAG_COMPRESSED} in the version byte: the encrypted
+ * payload is then DEFLATE-compressed (see {@link PhiCompression}). Values are only compressed
+ * above a size threshold, so short fields keep the plain layout.
+ *
+ * <p>The row format ({@code phi_envelope} column) encrypts all PHI fields of one row under a
+ * per-row data key, which is itself wrapped by the master key named by {@code KEY_ID}; each PHI
+ * column of such a row holds only a reference to its slot in the envelope (see {@link PhiRowEncryptor}).
+ * The stream format wraps its data key the same way (see {@link PhiStreamEncryptor}).
+ */
+final class PhiEnvelope {
+
+    static final byte MAGIC = (byte) 0xA5;
+    static final int VERSION_LEGACY = 0;
+    static final int VERSION_1 = 1;
+    static final int VERSION_2 = 2;
+    static final int VERSION_ROW_REFERENCE = 3;
+    static final int VERSION_ROW = 4;
+    static final int VERSION_STREAM = 5;
+    static final int FLAG_COMPRESSED = 0x80;
+
+    static final int IV_LENGTH = 12;
+    static final int TAG_LENGTH = 16;
+    static final int V1_HEADER_LENGTH = 2;
+    static final int V2_HEADER_LENGTH = 3;
+    static final int DATA_KEY_LENGTH = 32;
+    static final int WRAPPED_DATA_KEY_LENGTH = IV_LENGTH + DATA_KEY_LENGTH + TAG_LENGTH;
+    static final int ROW_HEADER_LENGTH = V2_HEADER_LENGTH + WRAPPED_DATA_KEY_LENGTH;
+    static final int ROW_REFERENCE_LENGTH = 3;
+    static final int STREAM_NONCE_PREFIX_LENGTH = 7;
+    static final int STREAM_HEADER_LENGTH = ROW_HEADER_LENGTH + Integer.BYTES + STREAM_NONCE_PREFIX_LENGTH;
+
+    /** Every Base64-encoded v2 envelope starts with these characters (derived from MAGIC and VERSION_2). */
+    static final String V2_TEXT_PREFIX = Base64.getEncoder()
+            .encodeToString(new byte[]{MAGIC, VERSION_2, 0}).substring(0, 2);
+
+    // Base64(IV + tag) of an empty plaintext is the shortest possible v0 ciphertext
+    static final int MIN_V0_TEXT_LENGTH = 4 * ((IV_LENGTH + TAG_LENGTH + 2) / 3);
+
+    private PhiEnvelope() {
+        // Utility class — prevent instantiation
+    }
+
+    /**
+     * Returns the envelope version of a binary value, or {@link #VERSION_LEGACY} if the value
+     * is not an envelope (legacy text copied byte-for-byte from a former VARCHAR column).
+     */
+    static int version(byte[] data) {
+        if (data.length < V1_HEADER_LENGTH || data[0] != MAGIC) {
+            return VERSION_LEGACY;
+        }
+        int version = data[1] & ~FLAG_COMPRESSED & 0xFF;
+        boolean compressed = (data[1] & FLAG_COMPRESSED) != 0;
+        if (version == VERSION_ROW && data.length >= ROW_HEADER_LENGTH + IV_LENGTH + TAG_LENGTH) {
+            return VERSION_ROW;
+        }
+        if (version == VERSION_2 && data.length >= V2_HEADER_LENGTH + IV_LENGTH + TAG_LENGTH) {
+            return VERSION_2;
+        }
+        if (compressed) {
+            return VERSION_LEGACY;
+        }
+        if (version == VERSION_ROW_REFERENCE && data.length == ROW_REFERENCE_LENGTH) {
+            return VERSION_ROW_REFERENCE;
+        }
+        if (version == VERSION_1 && data.length >= V1_HEADER_LENGTH + IV_LENGTH + TAG_LENGTH) {
+            return VERSION_1;
+        }
+        return VERSION_LEGACY;
+    }
+
+    /**
+     * Returns {@code true} if a v2 or row envelope holds a compressed payload.
+     */
+    static boolean isCompressed(byte[] data) {
+        return data.length >= V1_HEADER_LENGTH && (data[1] & FLAG_COMPRESSED) != 0;
+    }
+
+    /**
+     * Returns the version byte for a new envelope.
+     */
+    static byte versionByte(int version, boolean compressed) {
+        return (byte) (compressed ? version | FLAG_COMPRESSED : version);
+    }
+
+    static int headerLength(int version) {
+        return switch (version) {
+            case VERSION_ROW -> ROW_HEADER_LENGTH;
+            case VERSION_2 -> V2_HEADER_LENGTH;
+            case VERSION_1 -> V1_HEADER_LENGTH;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Returns {@code true} if the text may be a Base64-encoded v2 envelope. A match is only a
+     * candidate: v0 ciphertext starts with the same characters with probability 1/4096.
+     */
+    static boolean hasV2TextPrefix(String text) {
+        return text.startsWith(V2_TEXT_PREFIX);
+    }
+
+    /**
+     * Returns {@code true} if the text is well-formed Base64 long enough to hold an IV and an
+     * authentication tag — i.e. it can be decoded without error and may be v0 ciphertext.
+     * Anything else is legacy plaintext; a match still has to authenticate to be ciphertext.
+     */
+    static boolean isBase64Ciphertext(String text) {
+        int length = text.length();
+        if (length < MIN_V0_TEXT_LENGTH || length % 4 != 0) {
+            return false;
+        }
+        int padding = text.charAt(length - 1) == '=' ? (text.charAt(length - 2) == '=' ? 2 : 1) : 0;
+        for (int i = 0; i < length - padding; i++) {
+            char c = text.charAt(i);
+            boolean valid = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '+' || c == '/';
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
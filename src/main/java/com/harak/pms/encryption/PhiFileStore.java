@@ -0,0 +1,20 @@
+package com.harak.pms.encryption;
+
+import java.nio.file.Path;
+import java.util.function.Function;
+
+/**
+ * Describes a store of files encrypted by {@link PhiStreamEncryptor}, such as clinical attachments.
+ *
+ * <p>Each file's data key is wrapped by the master key in the file header, so the files depend on
+ * that key just like the PHI columns do. Domain modules register one {@code PhiFileStore} bean per
+ * store so that {@link PhiKeyRotationTask} can re-wrap those keys after a rotation without
+ * depending on the domain modules. The files are listed by a table with a UUID primary key named
+ * {@code id}; every row, including soft-deleted ones, names one file.
+ *
+ * @param table            the table listing the files.
+ * @param storageKeyColumn the column holding each file's storage key.
+ * @param resolver         maps a storage key to the path of its file.
+ */
+public record PhiFileStore(String table, String storageKeyColumn, Function<String, Path> resolver) {
+}
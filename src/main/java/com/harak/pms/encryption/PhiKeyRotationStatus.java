@@ -0,0 +1,25 @@
+package com.harak.pms.encryption;
+
+import java.util.List;
+
+/**
+ * Status of the PHI key rotation job, as reported by {@code GET /api/admin/phi/key-rotation}.
+ *
+ * <p>{@code tables} reports the re-encryption of each {@link PhiTable}; {@code files} reports the
+ * re-wrapping of the file data keys of each {@link PhiFileStore}, where a "row" is one file. The
+ * old key can be retired once every entry of both lists is {@code completed} with no failed rows.
+ *
+ * @param primaryKeyId  the ID of the key everything is being rewritten under.
+ * @param enabled       whether the job is enabled ({@code phi.key-rotation.enabled}).
+ * @param rowsPerSecond the throttle shared by all tables and file stores.
+ * @param tables        the progress per registered {@link PhiTable}.
+ * @param files         the progress per registered {@link PhiFileStore}.
+ */
+public record PhiKeyRotationStatus(
+        int primaryKeyId,
+        boolean enabled,
+        int rowsPerSecond,
+        List<PhiRewriteProgress> tables,
+        List<PhiRewriteProgress> files
+) {
+}
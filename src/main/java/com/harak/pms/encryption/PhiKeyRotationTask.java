@@ -0,0 +1,315 @@
+package com.harak.pms.encryption;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Online re-encryption of PHI under the primary key after a key rotation.
+ *
+ * <p>Walks every registered {@link PhiTable} in keyset-ordered batches via {@link PhiTableRewriter}
+ * and re-encrypts any value written under another key (or in a pre-envelope format) with
+ * {@link StringEncryptor#reencrypt(byte[])}. It then walks the files of every registered
+ * {@link PhiFileStore} the same way and re-wraps each file's data key in its header with
+ * {@link PhiStreamEncryptor#rewrapDataKey(java.nio.file.Path)}; the file contents are not rewritten.
+ * Progress is stored in {@code phi_rewrite_checkpoints} after every batch — under the
+ * {@code key-rotation} job for tables and {@code key-rotation-files} for file stores — so each pass
+ * resumes where it stopped after a restart and is skipped entirely once complete for the current
+ * primary key.
+ *
+ * <p>A row or file that cannot be rewritten (e.g. a value that fails authentication, one written
+ * under a key that is no longer configured, or a missing file) does not stall the pass: it is
+ * recorded in {@code phi_rewrite_failures}, counted in the checkpoint and skipped by the keyset
+ * cursor. Such rows and files still depend on their old key, so the retired key must be kept until
+ * the status reports every table and file store completed with no failures. They are retried once
+ * after each restart, e.g. after the missing key has been configured again or the value has been
+ * repaired.
+ *
+ * <p>Throughput is capped by a rows-per-second token bucket ({@code phi.key-rotation.rows-per-second})
+ * shared by rows and files. The job runs on the scheduler thread, holds a single pooled connection
+ * for one short batch transaction at a time and locks only the rows of that batch, so request
+ * threads and the connection pool are never starved — on a large table the pass simply takes longer.
+ * Progress is published as Micrometer metrics ({@code phi.key.rotation.*}) and via
+ * {@code GET /api/admin/phi/key-rotation}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PhiKeyRotationTask {
+
+    static final String JOB = "key-rotation";
+    static final String FILES_JOB = "key-rotation-files";
+
+    // Failed row IDs listed per table by getStatus(); the full list is in phi_rewrite_failures
+    private static final int MAX_LISTED_FAILURES = 100;
+
+    private final List<PhiTable> phiTables;
+    private final List<PhiFileStore> phiFileStores;
+    private final PhiTableRewriter phiTableRewriter;
+    private final PhiRewriteCheckpointRepository checkpointRepository;
+    private final StringEncryptor stringEncryptor;
+    private final PhiStreamEncryptor phiStreamEncryptor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${phi.key-rotation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${phi.key-rotation.batch-size:200}")
+    private int batchSize;
+
+    @Value("${phi.key-rotation.rows-per-second:500}")
+    private int rowsPerSecond;
+
+    private Bucket throttle;
+    private List<Pass> passes;
+    private Map<String, PhiRewriteCheckpoint> checkpoints;
+    // Passes whose failed rows have been retried (or recorded) since startup, and the retry cursors
+    private final Set<String> failuresRetried = new HashSet<>();
+    private final Map<String, UUID> retryCursors = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        throttle = Bucket.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(rowsPerSecond)
+                        .refillGreedy(rowsPerSecond, Duration.ofSeconds(1))
+                        .build())
+                .build();
+        Counter rowsScanned = meterRegistry.counter("phi.key.rotation.rows.scanned");
+        Counter rowsReencrypted = meterRegistry.counter("phi.key.rotation.rows.reencrypted");
+        Counter rowsFailed = meterRegistry.counter("phi.key.rotation.rows.failed");
+        Counter filesScanned = meterRegistry.counter("phi.key.rotation.files.scanned");
+        Counter filesRewrapped = meterRegistry.counter("phi.key.rotation.files.rewrapped");
+        Counter filesFailed = meterRegistry.counter("phi.key.rotation.files.failed");
+
+        passes = new ArrayList<>();
+        for (PhiTable table : phiTables) {
+            passes.add(new Pass(JOB, table.name(), table.name(),
+                    (afterId, limit) -> phiTableRewriter.rewriteBatch(table, afterId, limit, stringEncryptor::reencrypt),
+                    ids -> phiTableRewriter.rewriteRows(table, ids, stringEncryptor::reencrypt),
+                    rowsScanned, rowsReencrypted, rowsFailed));
+        }
+        for (PhiFileStore store : phiFileStores) {
+            passes.add(new Pass(FILES_JOB, store.table(), store.table() + " files",
+                    (afterId, limit) -> rewrapFiles(store,
+                            phiTableRewriter.readBatch(store.table(), store.storageKeyColumn(), afterId, limit)),
+                    ids -> rewrapFiles(store, phiTableRewriter.readRows(store.table(), store.storageKeyColumn(), ids)),
+                    filesScanned, filesRewrapped, filesFailed));
+        }
+        Gauge.builder("phi.key.rotation.tables.remaining", this, PhiKeyRotationTask::remainingTables)
+                .description("PHI tables and file stores not yet fully rewritten under the primary key")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${phi.key-rotation.initial-delay-ms:30000}",
+            fixedDelayString = "${phi.key-rotation.interval-ms:1000}")
+    public void reencryptNextBatches() {
+        if (!enabled) {
+            return;
+        }
+        if (checkpoints == null) {
+            checkpoints = loadCheckpoints();
+        }
+        for (Pass pass : passes) {
+            PhiRewriteCheckpoint checkpoint = checkpoints.get(pass.key());
+            while (!checkpoint.isCompleted()) {
+                int permitted = (int) throttle.tryConsumeAsMuchAsPossible(batchSize);
+                if (permitted == 0) {
+                    return;
+                }
+                PhiTableRewriter.Batch batch = pass.next().apply(checkpoint.getLastId(), permitted);
+                recordFailures(pass, batch.failed());
+
+                checkpoint.setLastId(batch.lastId());
+                checkpoint.setRowsScanned(checkpoint.getRowsScanned() + batch.scanned());
+                checkpoint.setRowsRewritten(checkpoint.getRowsRewritten() + batch.updated());
+                checkpoint.setRowsFailed(checkpoint.getRowsFailed() + batch.failed().size());
+                checkpoint.setCompleted(batch.scanned() < permitted);
+                checkpoint = checkpointRepository.save(checkpoint);
+                checkpoints.put(pass.key(), checkpoint);
+
+                pass.scanned().increment(batch.scanned());
+                pass.rewritten().increment(batch.updated());
+                pass.failed().increment(batch.failed().size());
+                if (checkpoint.isCompleted()) {
+                    // The rows that failed during this pass are only retried after the next restart
+                    failuresRetried.add(pass.key());
+                    log.info("PHI key rotation complete for {} — rewrote {} of {} under key ID {}, {} failed",
+                            pass.label(), checkpoint.getRowsRewritten(), checkpoint.getRowsScanned(),
+                            checkpoint.getTargetKeyId(), checkpoint.getRowsFailed());
+                }
+            }
+            if (checkpoint.getRowsFailed() > 0 && !failuresRetried.contains(pass.key())
+                    && !retryFailures(pass)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the persisted progress of the current rotation pass over every table and file store,
+     * including up to 100 failed row IDs per table or file store.
+     */
+    public PhiKeyRotationStatus getStatus() {
+        List<PhiRewriteProgress> tables = phiTables.stream()
+                .map(table -> progress(JOB, table.name()))
+                .toList();
+        List<PhiRewriteProgress> files = phiFileStores.stream()
+                .map(store -> progress(FILES_JOB, store.table()))
+                .toList();
+        return new PhiKeyRotationStatus(stringEncryptor.primaryKeyId(), enabled, rowsPerSecond, tables, files);
+    }
+
+    private PhiRewriteProgress progress(String job, String table) {
+        return checkpointRepository.findByJobAndTableName(job, table)
+                .filter(checkpoint -> checkpoint.getTargetKeyId() == stringEncryptor.primaryKeyId())
+                .map(checkpoint -> PhiRewriteProgress.from(checkpoint, checkpoint.getRowsFailed() == 0
+                        ? List.of()
+                        : checkpointRepository.findFailedRowIds(job, table, MAX_LISTED_FAILURES)))
+                .orElseGet(() -> PhiRewriteProgress.notStarted(table));
+    }
+
+    // Loads or creates a checkpoint per pass; a pass towards a different key restarts from the beginning
+    private Map<String, PhiRewriteCheckpoint> loadCheckpoints() {
+        int primaryKeyId = stringEncryptor.primaryKeyId();
+        Map<String, PhiRewriteCheckpoint> loaded = new LinkedHashMap<>();
+        for (Pass pass : passes) {
+            PhiRewriteCheckpoint checkpoint = checkpointRepository.findByJobAndTableName(pass.job(), pass.table())
+                    .orElseGet(() -> PhiRewriteCheckpoint.builder()
+                            .id(UUID.randomUUID())
+                            .job(pass.job())
+                            .tableName(pass.table())
+                            .targetKeyId(primaryKeyId)
+                            .build());
+            if (checkpoint.getTargetKeyId() != primaryKeyId) {
+                log.info("PHI primary key changed to ID {} — starting key rotation for {}", primaryKeyId, pass.label());
+                checkpoint.restart(primaryKeyId);
+                checkpointRepository.deleteAllFailures(pass.job(), pass.table());
+            } else if (!checkpoint.isCompleted() && checkpoint.getLastId() != null) {
+                log.info("Resuming PHI key rotation for {} after {} rows", pass.label(), checkpoint.getRowsScanned());
+            }
+            loaded.put(pass.key(), checkpointRepository.save(checkpoint));
+        }
+        return loaded;
+    }
+
+    private void recordFailures(Pass pass, List<PhiTableRewriter.Failure> failures) {
+        for (PhiTableRewriter.Failure failure : failures) {
+            log.warn("PHI key rotation skipped row {} of {}: {}", failure.id(), pass.label(), failure.error());
+            checkpointRepository.recordFailure(pass.job(), pass.table(), failure.id(), failure.error());
+        }
+    }
+
+    // Rewrites the rows or files a completed pass had to skip, in throttled batches ordered by row ID;
+    // returns false if the throttle ran out before every failure was retried
+    private boolean retryFailures(Pass pass) {
+        while (true) {
+            int permitted = (int) throttle.tryConsumeAsMuchAsPossible(batchSize);
+            if (permitted == 0) {
+                return false;
+            }
+            UUID afterId = retryCursors.get(pass.key());
+            List<UUID> ids = afterId == null
+                    ? checkpointRepository.findFailedRowIds(pass.job(), pass.table(), permitted)
+                    : checkpointRepository.findFailedRowIdsAfter(pass.job(), pass.table(), afterId, permitted);
+            if (!ids.isEmpty()) {
+                PhiTableRewriter.Batch batch = pass.retry().apply(ids);
+                Set<UUID> stillFailing = batch.failed().stream()
+                        .map(PhiTableRewriter.Failure::id)
+                        .collect(Collectors.toSet());
+                List<UUID> recovered = ids.stream().filter(id -> !stillFailing.contains(id)).toList();
+                if (!recovered.isEmpty()) {
+                    checkpointRepository.deleteFailures(pass.job(), pass.table(), recovered);
+                    PhiRewriteCheckpoint checkpoint = checkpoints.get(pass.key());
+                    checkpoint.setRowsFailed(checkpoint.getRowsFailed() - recovered.size());
+                    checkpoint.setRowsRewritten(checkpoint.getRowsRewritten() + batch.updated());
+                    checkpoints.put(pass.key(), checkpointRepository.save(checkpoint));
+                    log.info("PHI key rotation recovered {} previously failed rows of {}", recovered.size(), pass.label());
+                }
+                pass.rewritten().increment(batch.updated());
+                retryCursors.put(pass.key(), ids.getLast());
+            }
+            if (ids.size() < permitted) {
+                failuresRetried.add(pass.key());
+                return true;
+            }
+        }
+    }
+
+    // Re-wraps the data key of each listed file; a file that cannot be re-wrapped is reported as a
+    // failure of its row, like a value the table pass cannot re-encrypt
+    private PhiTableRewriter.Batch rewrapFiles(PhiFileStore store, Map<UUID, String> storageKeys) {
+        UUID lastId = null;
+        int rewrapped = 0;
+        List<PhiTableRewriter.Failure> failed = new ArrayList<>();
+        for (Map.Entry<UUID, String> file : storageKeys.entrySet()) {
+            lastId = file.getKey();
+            try {
+                if (phiStreamEncryptor.rewrapDataKey(store.resolver().apply(file.getValue()))) {
+                    rewrapped++;
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.add(new PhiTableRewriter.Failure(file.getKey(), describe(e)));
+            }
+        }
+        return new PhiTableRewriter.Batch(lastId, storageKeys.size(), rewrapped, failed);
+    }
+
+    // Exception messages name file paths (derived from random storage keys) and key IDs, never PHI
+    private static String describe(Exception e) {
+        String error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+
+    private double remainingTables() {
+        Map<String, PhiRewriteCheckpoint> current = checkpoints;
+        if (current == null) {
+            return phiTables.size() + phiFileStores.size();
+        }
+        return current.values().stream().filter(checkpoint -> !checkpoint.isCompleted()).count();
+    }
+
+    /**
+     * One rewrite pass of the rotation: the values of a table or the files of a file store.
+     *
+     * @param job       the checkpoint job.
+     * @param table     the checkpoint table name.
+     * @param label     the name used in log messages.
+     * @param next      rewrites the next batch after a row ID, up to a limit.
+     * @param retry     rewrites the rows with the given IDs.
+     * @param scanned   counts the rows or files scanned.
+     * @param rewritten counts the rows re-encrypted or files re-wrapped.
+     * @param failed    counts the rows or files that could not be rewritten.
+     */
+    private record Pass(String job, String table, String label,
+                        BiFunction<UUID, Integer, PhiTableRewriter.Batch> next,
+                        Function<List<UUID>, PhiTableRewriter.Batch> retry,
+                        Counter scanned, Counter rewritten, Counter failed) {
+
+        String key() {
+            return job + ":" + table;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.harak.pms.encryption;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-entity, per-field metrics for PHI encryption and decryption ({@code phi.metrics.enabled}).
+ *
+ * <p>{@link PhiRowEnvelopeListener} attaches a {@link Field} to every {@link SealedPhi} of a
+ * loaded or saved entity, which then records each decryption (on first read) and encryption (on
+ * write). Row envelopes are recorded under the pseudo-field {@value #ROW_FIELD}. Meters, all
+ * tagged with {@code entity} and {@code field}:
+ * <ul>
+ *   <li>{@code phi.crypto{operation=encrypt|decrypt}} — latency (percentile histogram with
+ *       {@code phi.metrics.percentile-histogram})</li>
+ *   <li>{@code phi.crypto.bytes{operation}} — ciphertext bytes written or read</li>
+ *   <li>{@code phi.crypto.failures{operation}} — operations that threw</li>
+ *   <li>{@code phi.crypto.legacy.plaintext} — reads of unencrypted legacy values</li>
+ *   <li>{@code phi.crypto.cache.hits} — reads served by the {@link PhiValueCache}, which are not
+ *       decryptions and so are not included in {@code phi.crypto{operation=decrypt}}</li>
+ * </ul>
+ * A summary ranked by total time is available at {@code /actuator/phi} (see {@link PhiMetricsEndpoint}).
+ * Tag cardinality is bounded by the number of PHI columns.
+ */
+@Component
+@RequiredArgsConstructor
+public class PhiMetrics {
+
+    static final String ROW_FIELD = "(row)";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${phi.metrics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${phi.metrics.percentile-histogram:false}")
+    private boolean percentileHistogram;
+
+    private final Map<String, Field> fields = new ConcurrentHashMap<>();
+
+    /**
+     * Returns {@code true} if PHI operations are instrumented.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the meters of one PHI column, registering them on first use.
+     */
+    Field field(String entity, String field) {
+        return fields.computeIfAbsent(entity + '.' + field, key -> new Field(entity, field));
+    }
+
+    Collection<Field> fields() {
+        return fields.values();
+    }
+
+    /**
+     * The meters of one PHI column (or of the row envelopes of one entity).
+     */
+    final class Field {
+
+        private final String entity;
+        private final String name;
+        private final Operation encrypt;
+        private final Operation decrypt;
+        private final Counter legacyPlaintext;
+        private final Counter cacheHits;
+
+        private Field(String entity, String name) {
+            this.entity = entity;
+            this.name = name;
+            Tags tags = Tags.of("entity", entity, "field", name);
+            this.encrypt = new Operation(tags.and("operation", "encrypt"));
+            this.decrypt = new Operation(tags.and("operation", "decrypt"));
+            this.legacyPlaintext = Counter.builder("phi.crypto.legacy.plaintext")
+                    .description("Reads of unencrypted legacy PHI values")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.cacheHits = Counter.builder("phi.crypto.cache.hits")
+                    .description("PHI reads served by the decrypted value cache")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        String entity() {
+            return entity;
+        }
+
+        String name() {
+            return name;
+        }
+
+        Operation encrypt() {
+            return encrypt;
+        }
+
+        Operation decrypt() {
+            return decrypt;
+        }
+
+        Counter legacyPlaintext() {
+            return legacyPlaintext;
+        }
+
+        Counter cacheHits() {
+            return cacheHits;
+        }
+    }
+
+    /**
+     * Latency, volume and failures of one operation on one column.
+     */
+    final class Operation {
+
+        private final Timer timer;
+        private final DistributionSummary bytes;
+        private final Counter failures;
+
+        private Operation(Tags tags) {
+            this.timer = Timer.builder("phi.crypto")
+                    .description("PHI encryption/decryption latency")
+                    .tags(tags)
+                    .publishPercentileHistogram(percentileHistogram)
+                    .register(meterRegistry);
+            this.bytes = DistributionSummary.builder("phi.crypto.bytes")
+                    .description("PHI ciphertext bytes processed")
+                    .baseUnit("bytes")
+                    .tags(tags)
+                    .register(meterRegistry);
+            this.failures = Counter.builder("phi.crypto.failures")
+                    .description("PHI encryption/decryption failures")
+                    .tags(tags)
+                    .register(meterRegistry);
+        }
+
+        void record(long startNanos, int ciphertextBytes) {
+            timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            bytes.record(ciphertextBytes);
+        }
+
+        void failed() {
+            failures.increment();
+        }
+
+        Timer timer() {
+            return timer;
+        }
+
+        DistributionSummary bytes() {
+            return bytes;
+        }
+
+        Counter failures() {
+            return failures;
+        }
+    }
+}
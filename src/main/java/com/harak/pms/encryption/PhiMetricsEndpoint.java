@@ -0,0 +1,83 @@
+package com.harak.pms.encryption;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actuator endpoint {@code /actuator/phi}: a ranked summary of the {@link PhiMetrics} meters, to
+ * find the hot PHI columns and compare tuning changes. {@code /actuator/phi/{entity}} narrows it
+ * to one entity (e.g. {@code Patient}). Like every actuator endpoint except health, it requires
+ * ROLE_ADMIN. The same data is available per meter under {@code /actuator/metrics/phi.crypto}.
+ */
+@Component
+@Endpoint(id = "phi")
+@RequiredArgsConstructor
+public class PhiMetricsEndpoint {
+
+    private final PhiMetrics phiMetrics;
+
+    /**
+     * Returns the metrics of every instrumented PHI column, ranked by total time.
+     *
+     * @return the report for all entities.
+     */
+    @ReadOperation
+    public PhiMetricsReport report() {
+        return report(phiMetrics.fields().stream()
+                .map(PhiMetricsEndpoint::column)
+                .toList());
+    }
+
+    /**
+     * Returns the metrics of the PHI columns of one entity, ranked by total time.
+     *
+     * @param entity the entity name, e.g. {@code Patient}; case-insensitive.
+     * @return the report for that entity, with no columns if the name is unknown.
+     */
+    @ReadOperation
+    public PhiMetricsReport entity(@Selector String entity) {
+        return report(phiMetrics.fields().stream()
+                .filter(field -> field.entity().equalsIgnoreCase(entity))
+                .map(PhiMetricsEndpoint::column)
+                .toList());
+    }
+
+    private static PhiMetricsReport report(List<PhiMetricsReport.Column> columns) {
+        List<PhiMetricsReport.Column> ranked = columns.stream()
+                .sorted(Comparator.comparingDouble(PhiMetricsReport.Column::totalTimeMs).reversed())
+                .toList();
+        return new PhiMetricsReport(
+                ranked.stream().mapToDouble(PhiMetricsReport.Column::totalTimeMs).sum(),
+                ranked.stream().mapToLong(PhiMetricsReport.Column::legacyPlaintextReads).sum(),
+                ranked.stream().mapToLong(PhiMetricsReport.Column::cacheHits).sum(),
+                ranked.stream().mapToLong(column -> column.encrypt().failures() + column.decrypt().failures()).sum(),
+                ranked);
+    }
+
+    private static PhiMetricsReport.Column column(PhiMetrics.Field field) {
+        PhiMetricsReport.Operation encrypt = operation(field.encrypt());
+        PhiMetricsReport.Operation decrypt = operation(field.decrypt());
+        return new PhiMetricsReport.Column(field.entity(), field.name(), encrypt, decrypt,
+                (long) field.legacyPlaintext().count(), (long) field.cacheHits().count(),
+                encrypt.totalTimeMs() + decrypt.totalTimeMs());
+    }
+
+    private static PhiMetricsReport.Operation operation(PhiMetrics.Operation operation) {
+        Timer timer = operation.timer();
+        return new PhiMetricsReport.Operation(
+                timer.count(),
+                timer.totalTime(TimeUnit.MILLISECONDS),
+                timer.mean(TimeUnit.MILLISECONDS),
+                timer.max(TimeUnit.MILLISECONDS),
+                (long) operation.bytes().totalAmount(),
+                (long) operation.failures().count());
+    }
+}
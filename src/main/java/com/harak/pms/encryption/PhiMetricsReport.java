@@ -0,0 +1,24 @@
+package com.harak.pms.encryption;
+
+import java.util.List;
+
+/**
+ * PHI encryption cost per column, as reported by {@code GET /actuator/phi}. Columns are ranked by
+ * the total time spent encrypting and decrypting them since startup; times are in milliseconds.
+ * Reads served by the {@link PhiValueCache} are counted in {@code cacheHits}, not as decryptions.
+ */
+public record PhiMetricsReport(
+        double totalTimeMs,
+        long legacyPlaintextReads,
+        long cacheHits,
+        long failures,
+        List<Column> columns
+) {
+    public record Column(String entity, String field, Operation encrypt, Operation decrypt,
+                         long legacyPlaintextReads, long cacheHits, double totalTimeMs) {
+    }
+
+    public record Operation(long count, double totalTimeMs, double meanTimeMs, double maxTimeMs,
+                            long bytes, long failures) {
+    }
+}
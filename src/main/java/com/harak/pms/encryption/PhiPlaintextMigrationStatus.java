@@ -0,0 +1,42 @@
+package com.harak.pms.encryption;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Status of the PHI plaintext migration, as reported by {@code GET /api/admin/phi/plaintext-migration}.
+ * Row counts cover the current (or last) run; {@code pending} is counted when a table's pass starts.
+ *
+ * @param running       whether a run is in progress.
+ * @param startedAt     when the run started, or {@code null} if none has run since startup.
+ * @param finishedAt    when the run finished, or {@code null} while it is running.
+ * @param rowsEncrypted the rows rewritten so far, over all tables.
+ * @param rowsRemaining the pending rows not rewritten yet, over the tables started so far.
+ * @param rowsPerSecond the average throughput of the run.
+ * @param failedBatches the batches that failed as a whole (e.g. on a database error); their rows are retried by the next run.
+ * @param failedRows    the rows skipped because one of their values could not be encrypted.
+ * @param tables        the progress per table, in the order the tables are migrated.
+ */
+public record PhiPlaintextMigrationStatus(
+        boolean running,
+        Instant startedAt,
+        Instant finishedAt,
+        long rowsEncrypted,
+        long rowsRemaining,
+        double rowsPerSecond,
+        long failedBatches,
+        long failedRows,
+        List<Table> tables
+) {
+    /**
+     * Progress of the run over one table.
+     *
+     * @param table     the table name.
+     * @param pending   the rows holding at least one value without an envelope header (plaintext, or
+     *                  v0 ciphertext not yet converted) when the table's pass started.
+     * @param encrypted the rows rewritten so far.
+     * @param remaining the pending rows not rewritten yet.
+     */
+    public record Table(String table, long pending, long encrypted, long remaining) {
+    }
+}
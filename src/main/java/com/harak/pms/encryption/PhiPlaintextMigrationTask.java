@@ -0,0 +1,237 @@
+package com.harak.pms.encryption;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Encrypts PHI that is still stored as legacy plaintext (rows written before encryption was
+ * introduced). Started on demand via {@code POST /api/admin/phi/plaintext-migration}.
+ *
+ * <p>For each registered {@link PhiTable} the IDs of rows holding at least one value without an
+ * envelope header — plaintext, or v0 Base64 ciphertext not yet converted by
+ * {@link PhiBinaryConversionTask} — are streamed through a server-side cursor (read-only transaction, {@code fetch-size} rows per
+ * round trip), so memory stays flat regardless of table size. IDs are grouped into batches and
+ * handed to a bounded worker pool; each worker re-reads its batch with
+ * {@link PhiTableRewriter#rewriteRows} — which locks the rows — encrypts the values that
+ * {@link StringEncryptor#isLegacyPlaintext} classifies as plaintext (Base64-looking values only
+ * if they fail v0 authentication) and writes them back with a single JDBC batch update. A value that the API has re-written in the
+ * meantime is already ciphertext and is left alone, so the job is safe to run under live traffic.
+ * The job holds at most {@code workers + 1} pooled connections; when all workers are busy the
+ * cursor thread blocks until one frees up, which throttles the stream.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PhiPlaintextMigrationTask {
+
+    private static final String ENVELOPE_PREFIX = String.format("'\\x%02x'::bytea", PhiEnvelope.MAGIC);
+
+    private final List<PhiTable> phiTables;
+    private final PhiTableRewriter phiTableRewriter;
+    private final StringEncryptor stringEncryptor;
+    private final DataSource dataSource;
+    private final PlatformTransactionManager transactionManager;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${phi.plaintext-migration.workers:2}")
+    private int workerCount;
+
+    @Value("${phi.plaintext-migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${phi.plaintext-migration.fetch-size:1000}")
+    private int fetchSize;
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("phi-plaintext-migration").daemon().factory());
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Map<String, Long> pendingByTable = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> encryptedByTable = new ConcurrentHashMap<>();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder failedRows = new LongAdder();
+
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private Counter rowsEncrypted;
+
+    @PostConstruct
+    public void init() {
+        rowsEncrypted = meterRegistry.counter("phi.plaintext.migration.rows.encrypted");
+        Gauge.builder("phi.plaintext.migration.rows.remaining", this, task -> task.getStatus().rowsRemaining())
+                .description("Rows still holding legacy plaintext PHI, as of the last migration run")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    /**
+     * Starts a migration run in the background.
+     *
+     * @return {@code false} if a run is already in progress.
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        pendingByTable.clear();
+        encryptedByTable.clear();
+        failedBatches.reset();
+        failedRows.reset();
+        startedAt = Instant.now();
+        finishedAt = null;
+        coordinator.execute(this::run);
+        return true;
+    }
+
+    public PhiPlaintextMigrationStatus getStatus() {
+        List<PhiPlaintextMigrationStatus.Table> tables = phiTables.stream()
+                .filter(table -> pendingByTable.containsKey(table.name()))
+                .map(table -> {
+                    long pending = pendingByTable.get(table.name());
+                    LongAdder encrypted = encryptedByTable.get(table.name());
+                    long done = encrypted == null ? 0 : encrypted.sum();
+                    return new PhiPlaintextMigrationStatus.Table(table.name(), pending, done, Math.max(0, pending - done));
+                })
+                .toList();
+        long encrypted = tables.stream().mapToLong(PhiPlaintextMigrationStatus.Table::encrypted).sum();
+        long remaining = tables.stream().mapToLong(PhiPlaintextMigrationStatus.Table::remaining).sum();
+
+        Instant start = startedAt;
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        double seconds = start == null ? 0 : Duration.between(start, end).toMillis() / 1000.0;
+        double rowsPerSecond = seconds > 0 ? encrypted / seconds : 0;
+
+        return new PhiPlaintextMigrationStatus(running.get(), start, finishedAt, encrypted, remaining,
+                rowsPerSecond, failedBatches.sum(), failedRows.sum(), tables);
+    }
+
+    private void run() {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerCount),
+                Thread.ofPlatform().name("phi-plaintext-worker-", 0).factory(),
+                PhiPlaintextMigrationTask::waitForWorker);
+        try {
+            for (PhiTable table : phiTables) {
+                migrate(table, workers);
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            PhiPlaintextMigrationStatus status = getStatus();
+            log.info("PHI plaintext migration finished — encrypted {} rows ({} rows/s), {} failed batches, {} failed rows",
+                    status.rowsEncrypted(), Math.round(status.rowsPerSecond()), status.failedBatches(),
+                    status.failedRows());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("PHI plaintext migration interrupted");
+        } catch (Exception e) {
+            log.error("PHI plaintext migration stopped: {}", e.getMessage(), e);
+        } finally {
+            workers.shutdownNow();
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    // Streams the IDs of rows with plaintext values through a server-side cursor and dispatches them in batches
+    private void migrate(PhiTable table, ThreadPoolExecutor workers) {
+        JdbcTemplate cursor = new JdbcTemplate(dataSource);
+        cursor.setFetchSize(fetchSize);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        String predicate = table.columns().stream()
+                .map(PhiPlaintextMigrationTask::isLegacyFormatSql)
+                .collect(Collectors.joining(" OR "));
+        Long pending = readOnly.execute(status -> cursor.queryForObject(
+                "SELECT count(*) FROM " + table.name() + " WHERE " + predicate, Long.class));
+        pendingByTable.put(table.name(), pending);
+        encryptedByTable.put(table.name(), new LongAdder());
+        if (pending == null || pending == 0) {
+            return;
+        }
+        log.info("PHI plaintext migration: {} rows in {} hold PHI without an envelope", pending, table.name());
+
+        readOnly.executeWithoutResult(status -> {
+            List<List<UUID>> batch = new ArrayList<>(List.of(new ArrayList<>(batchSize)));
+            cursor.query("SELECT id FROM " + table.name() + " WHERE " + predicate, (RowCallbackHandler) rs -> {
+                batch.getFirst().add(rs.getObject(1, UUID.class));
+                if (batch.getFirst().size() == batchSize) {
+                    dispatch(table, batch.getFirst(), workers);
+                    batch.set(0, new ArrayList<>(batchSize));
+                }
+            });
+            dispatch(table, batch.getFirst(), workers);
+        });
+    }
+
+    private void dispatch(PhiTable table, List<UUID> ids, ThreadPoolExecutor workers) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        workers.execute(() -> {
+            try {
+                PhiTableRewriter.Batch result = phiTableRewriter.rewriteRows(
+                        table, ids, stringEncryptor::encryptLegacyPlaintext);
+                encryptedByTable.get(table.name()).add(result.updated());
+                rowsEncrypted.increment(result.updated());
+                for (PhiTableRewriter.Failure failure : result.failed()) {
+                    // The row keeps its value and is picked up again by the next run
+                    failedRows.increment();
+                    log.warn("PHI plaintext migration skipped row {} of {}: {}", failure.id(), table.name(), failure.error());
+                }
+            } catch (Exception e) {
+                // The rows keep their plaintext and are picked up again by the next run
+                failedBatches.increment();
+                log.error("PHI plaintext migration batch failed for {}: {}", table.name(), e.getMessage(), e);
+            }
+        });
+    }
+
+    // Blocks the cursor thread instead of running the batch inline, which would join its read-only transaction
+    private static void waitForWorker(Runnable batch, ThreadPoolExecutor workers) {
+        try {
+            workers.getQueue().put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("PHI plaintext migration interrupted", e);
+        }
+    }
+
+    // Values without an envelope header: plaintext or v0 Base64. Telling Base64-looking plaintext from
+    // v0 ciphertext takes a decryption, so that is left to StringEncryptor#isLegacyPlaintext.
+    private static String isLegacyFormatSql(String column) {
+        return "(" + column + " IS NOT NULL AND substring(" + column + " FROM 1 FOR 1) <> " + ENVELOPE_PREFIX + ")";
+    }
+}
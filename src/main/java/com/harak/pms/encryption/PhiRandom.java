@@ -0,0 +1,76 @@
+package com.harak.pms.encryption;
+
+import java.nio.ByteBuffer;
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+/**
+ * Source of GCM IVs and data keys for PHI encryption, with one DRBG per thread.
+ *
+ * <p>A single shared {@code SecureRandom} serializes every encryption in the application: the
+ * default Linux implementation ({@code NativePRNG}) holds a global lock while it produces
+ * bytes. Instead, each thread lazily instantiates its own NIST SP 800-90A Hash_DRBG (SHA-256,
+ * 256-bit security strength), seeded from the JDK's system entropy source — the shared source —
+ * and personalized with the thread ID and a process-wide nonce. After {@link #RESEED_INTERVAL}
+ * requests a generator reseeds itself from the same source. The entropy source is only touched
+ * on instantiation and reseed, so request threads never contend on the hot path.
+ *
+ * <p>Uniqueness: IVs are 96-bit values drawn from a DRBG (NIST SP 800-38D §8.2.2, "RBG-based
+ * construction"), not counters. The per-thread generators are independently seeded, so their
+ * output streams are computationally independent; the probability that any two of {@code n}
+ * IVs under the same key collide is at most {@code n²/2⁹⁷}. SP 800-38D caps a key at 2³² random
+ * IVs (collision probability below 2⁻³²), which is why master keys are rotated (see
+ * {@link PhiKeyRotationTask}) well before that volume; a row data key encrypts only a handful of
+ * versions of its row. Unlike a counter scheme, this holds across restarts and across
+ * application instances sharing a key without any coordination.
+ *
+ * <p>Generators are kept per platform thread; with virtual threads each thread would pay for
+ * its own instantiation, so encryption-heavy work should stay on pooled platform threads.
+ */
+final class PhiRandom {
+
+    /** Requests served by a thread's generator before it pulls fresh entropy. */
+    static final int RESEED_INTERVAL = 1 << 20;
+
+    private static final long PROCESS_NONCE = new SecureRandom().nextLong();
+    private static final ThreadLocal<Generator> GENERATOR = ThreadLocal.withInitial(Generator::new);
+
+    private PhiRandom() {
+        // Utility class — prevent instantiation
+    }
+
+    /**
+     * Fills {@code bytes} with output of the calling thread's DRBG.
+     */
+    static void nextBytes(byte[] bytes) {
+        GENERATOR.get().nextBytes(bytes);
+    }
+
+    private static final class Generator {
+
+        private final SecureRandom drbg;
+        private int requests;
+
+        Generator() {
+            byte[] personalization = ByteBuffer.allocate(2 * Long.BYTES)
+                    .putLong(PROCESS_NONCE)
+                    .putLong(Thread.currentThread().threadId())
+                    .array();
+            try {
+                drbg = SecureRandom.getInstance("DRBG", DrbgParameters.instantiation(
+                        256, DrbgParameters.Capability.RESEED_ONLY, personalization));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("DRBG SecureRandom is not available", e);
+            }
+        }
+
+        void nextBytes(byte[] bytes) {
+            if (++requests >= RESEED_INTERVAL) {
+                drbg.reseed();
+                requests = 0;
+            }
+            drbg.nextBytes(bytes);
+        }
+    }
+}
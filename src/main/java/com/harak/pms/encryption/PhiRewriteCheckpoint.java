@@ -0,0 +1,70 @@
+package com.harak.pms.encryption;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Resumable progress of an online PHI rewrite job over one {@link PhiTable}.
+ */
+@Entity
+@Table(name = "phi_rewrite_checkpoints")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PhiRewriteCheckpoint {
+
+    @Id
+    @Column(columnDefinition = "UUID")
+    private UUID id;
+
+    @Column(nullable = false, length = 50)
+    private String job;
+
+    @Column(name = "table_name", nullable = false, length = 100)
+    private String tableName;
+
+    @Column(name = "target_key_id", nullable = false)
+    private int targetKeyId;
+
+    @Column(name = "last_id", columnDefinition = "UUID")
+    private UUID lastId;
+
+    @Column(name = "rows_scanned", nullable = false)
+    private long rowsScanned;
+
+    @Column(name = "rows_rewritten", nullable = false)
+    private long rowsRewritten;
+
+    // Rows skipped because they could not be rewritten; listed in phi_rewrite_failures
+    @Column(name = "rows_failed", nullable = false)
+    private long rowsFailed;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = Instant.now();
+    }
+
+    /**
+     * Starts a new pass over the table towards {@code keyId}, discarding any previous progress.
+     */
+    public void restart(int keyId) {
+        this.targetKeyId = keyId;
+        this.lastId = null;
+        this.rowsScanned = 0;
+        this.rowsRewritten = 0;
+        this.rowsFailed = 0;
+        this.completed = false;
+    }
+}
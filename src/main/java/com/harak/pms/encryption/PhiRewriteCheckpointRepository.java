@@ -0,0 +1,47 @@
+package com.harak.pms.encryption;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface PhiRewriteCheckpointRepository extends JpaRepository<PhiRewriteCheckpoint, UUID> {
+
+    Optional<PhiRewriteCheckpoint> findByJobAndTableName(String job, String tableName);
+
+    // The rows a job skipped (V17) are part of its checkpoint; a row that is already recorded keeps its first error
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO phi_rewrite_failures (job, table_name, row_id, error)"
+            + " VALUES (:job, :tableName, :rowId, :error) ON CONFLICT DO NOTHING", nativeQuery = true)
+    void recordFailure(@Param("job") String job, @Param("tableName") String tableName,
+                       @Param("rowId") UUID rowId, @Param("error") String error);
+
+    @Query(value = "SELECT row_id FROM phi_rewrite_failures WHERE job = :job AND table_name = :tableName"
+            + " ORDER BY row_id LIMIT :limit", nativeQuery = true)
+    List<UUID> findFailedRowIds(@Param("job") String job, @Param("tableName") String tableName,
+                                @Param("limit") int limit);
+
+    @Query(value = "SELECT row_id FROM phi_rewrite_failures WHERE job = :job AND table_name = :tableName"
+            + " AND row_id > :afterId ORDER BY row_id LIMIT :limit", nativeQuery = true)
+    List<UUID> findFailedRowIdsAfter(@Param("job") String job, @Param("tableName") String tableName,
+                                     @Param("afterId") UUID afterId, @Param("limit") int limit);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM phi_rewrite_failures WHERE job = :job AND table_name = :tableName"
+            + " AND row_id IN (:rowIds)", nativeQuery = true)
+    void deleteFailures(@Param("job") String job, @Param("tableName") String tableName,
+                        @Param("rowIds") Collection<UUID> rowIds);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM phi_rewrite_failures WHERE job = :job AND table_name = :tableName", nativeQuery = true)
+    void deleteAllFailures(@Param("job") String job, @Param("tableName") String tableName);
+}
@@ -0,0 +1,57 @@
+package com.harak.pms.encryption;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Progress of an online PHI rewrite job over a single table.
+ *
+ * <p>{@code rowsFailed} rows could not be rewritten and were skipped; {@code failedRowIds} lists
+ * the first of them (see {@link PhiTableRewriter.Failure}). A pass is {@code completed} once the
+ * whole table has been walked, even if some rows failed.
+ *
+ * @param table         the table, or the table listing the files of a file store.
+ * @param lastId        the keyset cursor: the last row ID processed, or {@code null} before the first batch.
+ * @param rowsScanned   the rows read so far in this pass.
+ * @param rowsRewritten the rows whose values were rewritten (or files re-wrapped); rows already
+ *                      in the target format are scanned but not rewritten.
+ * @param rowsFailed    the rows skipped because they could not be rewritten, less those recovered by a retry.
+ * @param failedRowIds  up to 100 of the failed row IDs, in ID order.
+ * @param completed     whether the whole table has been walked.
+ * @param updatedAt     when the checkpoint was last saved, or {@code null} if the pass has not started.
+ */
+public record PhiRewriteProgress(
+        String table,
+        UUID lastId,
+        long rowsScanned,
+        long rowsRewritten,
+        long rowsFailed,
+        List<UUID> failedRowIds,
+        boolean completed,
+        Instant updatedAt
+) {
+    /**
+     * Creates the progress report of a persisted checkpoint.
+     *
+     * @param checkpoint   the checkpoint of the pass.
+     * @param failedRowIds the failed row IDs to list.
+     * @return the progress of the pass.
+     */
+    public static PhiRewriteProgress from(PhiRewriteCheckpoint checkpoint, List<UUID> failedRowIds) {
+        return new PhiRewriteProgress(
+                checkpoint.getTableName(),
+                checkpoint.getLastId(),
+                checkpoint.getRowsScanned(),
+                checkpoint.getRowsRewritten(),
+                checkpoint.getRowsFailed(),
+                failedRowIds,
+                checkpoint.isCompleted(),
+                checkpoint.getUpdatedAt()
+        );
+    }
+
+    static PhiRewriteProgress notStarted(String table) {
+        return new PhiRewriteProgress(table, null, 0, 0, 0, List.of(), false, null);
+    }
+}
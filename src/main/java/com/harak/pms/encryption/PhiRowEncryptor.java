@@ -0,0 +1,233 @@
+package com.harak.pms.encryption;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static com.harak.pms.encryption.PhiEnvelope.IV_LENGTH;
+import static com.harak.pms.encryption.PhiEnvelope.ROW_HEADER_LENGTH;
+import static com.harak.pms.encryption.PhiEnvelope.TAG_LENGTH;
+
+/**
+ * Row-level envelope encryption for PHI entities (optional, {@code phi.row-envelope.enabled}).
+ *
+ * <p>Instead of encrypting each PHI column separately under the master key, all PHI fields of a
+ * row are serialized and encrypted in a single AES-256-GCM operation under a random per-row data
+ * key. The data key is wrapped by the primary master key and stored in the envelope header
+ * (layout in {@link PhiEnvelope}); the individual PHI columns only hold 3-byte references into
+ * the envelope. This replaces one cipher init/finalize cycle and 28 bytes of IV and tag per field
+ * with one per row.
+ *
+ * <p>Unwrapped data keys are kept in a bounded cache that expires entries after a period without
+ * access ({@code phi.row-envelope.data-key-cache.*}), so reading a hot row costs one decryption
+ * of the envelope and no key unwrap. A row keeps its data key across updates while it is wrapped
+ * by the primary key; key rotation only re-wraps the data key (see {@link StringEncryptor#reencrypt}).
+ *
+ * <p>Existing rows with per-field ciphertext remain readable and are packed into an envelope the
+ * next time they are written; envelope rows remain readable when the mode is switched off.
+ * The serialized fields are compressed as a whole under the same rules as single values
+ * ({@code phi.compression.*}).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PhiRowEncryptor {
+
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final int TAG_LENGTH_BITS = TAG_LENGTH * 8;
+    private static final int NULL_FIELD = -1;
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(PhiRowEncryptor::newCipher);
+
+    private final StringEncryptor stringEncryptor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${phi.row-envelope.enabled:false}")
+    private boolean enabled;
+
+    @Value("${phi.row-envelope.data-key-cache.maximum-size:10000}")
+    private long dataKeyCacheSize;
+
+    @Value("${phi.row-envelope.data-key-cache.expire-after-access:PT5M}")
+    private Duration dataKeyCacheExpiry;
+
+    private Cache<ByteBuffer, SecretKey> dataKeys;
+
+    @PostConstruct
+    public void init() {
+        dataKeys = Caffeine.newBuilder()
+                .maximumSize(dataKeyCacheSize)
+                .expireAfterAccess(dataKeyCacheExpiry)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, dataKeys, "phi.row.data.keys");
+        if (enabled) {
+            log.info("PHI row envelope encryption enabled (data key cache: {} entries, {} expiry)",
+                    dataKeyCacheSize, dataKeyCacheExpiry);
+        }
+    }
+
+    /**
+     * Returns {@code true} if PHI entities are written as row envelopes.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Encrypts the PHI fields of a row into a row envelope.
+     *
+     * @param values   the plaintext field values, in the entity's envelope order ({@code null} allowed).
+     * @param previous the row's current envelope, whose data key is reused if it is still wrapped by
+     *                 the primary key; {@code null} for a new data key.
+     * @return the new row envelope.
+     */
+    byte[] seal(String[] values, byte[] previous) {
+        byte[] payload = serialize(values);
+        byte[] compressed = stringEncryptor.compress(payload);
+        if (compressed != null) {
+            Arrays.fill(payload, (byte) 0);
+            payload = compressed;
+        }
+        byte[] envelope = new byte[ROW_HEADER_LENGTH + IV_LENGTH + payload.length + TAG_LENGTH];
+        envelope[0] = PhiEnvelope.MAGIC;
+        envelope[1] = PhiEnvelope.versionByte(PhiEnvelope.VERSION_ROW, compressed != null);
+
+        SecretKey dataKey;
+        if (previous != null && PhiEnvelope.version(previous) == PhiEnvelope.VERSION_ROW
+                && (previous[2] & 0xFF) == stringEncryptor.primaryKeyId()) {
+            System.arraycopy(previous, 2, envelope, 2, ROW_HEADER_LENGTH - 2);
+            dataKey = dataKey(envelope);
+        } else {
+            byte[] keyBytes = new byte[PhiEnvelope.DATA_KEY_LENGTH];
+            PhiRandom.nextBytes(keyBytes);
+            stringEncryptor.wrapDataKey(keyBytes, envelope);
+            dataKey = new SecretKeySpec(keyBytes, "AES");
+            Arrays.fill(keyBytes, (byte) 0);
+            dataKeys.put(cacheKey(envelope), dataKey);
+        }
+
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            PhiRandom.nextBytes(iv);
+            System.arraycopy(iv, 0, envelope, ROW_HEADER_LENGTH, IV_LENGTH);
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, dataKey,
+                    new GCMParameterSpec(TAG_LENGTH_BITS, envelope, ROW_HEADER_LENGTH, IV_LENGTH));
+            cipher.doFinal(payload, 0, payload.length, envelope, ROW_HEADER_LENGTH + IV_LENGTH);
+            return envelope;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to encrypt PHI row", e);
+        } finally {
+            Arrays.fill(payload, (byte) 0);
+        }
+    }
+
+    /**
+     * Decrypts all PHI fields of a row envelope in one operation.
+     *
+     * @return the plaintext field values, in envelope order.
+     */
+    String[] open(byte[] envelope) {
+        if (PhiEnvelope.version(envelope) != PhiEnvelope.VERSION_ROW) {
+            throw new IllegalStateException("Value is not a PHI row envelope");
+        }
+        byte[] payload = new byte[envelope.length - ROW_HEADER_LENGTH - IV_LENGTH - TAG_LENGTH];
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, dataKey(envelope),
+                    new GCMParameterSpec(TAG_LENGTH_BITS, envelope, ROW_HEADER_LENGTH, IV_LENGTH));
+            cipher.doFinal(envelope, ROW_HEADER_LENGTH + IV_LENGTH,
+                    envelope.length - ROW_HEADER_LENGTH - IV_LENGTH, payload, 0);
+            if (!PhiEnvelope.isCompressed(envelope)) {
+                return deserialize(payload);
+            }
+            byte[] fields = PhiCompression.decompress(payload, payload.length);
+            try {
+                return deserialize(fields);
+            } finally {
+                Arrays.fill(fields, (byte) 0);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to decrypt PHI row", e);
+        } finally {
+            Arrays.fill(payload, (byte) 0);
+        }
+    }
+
+    private SecretKey dataKey(byte[] envelope) {
+        return dataKeys.get(cacheKey(envelope), key -> {
+            byte[] keyBytes = stringEncryptor.unwrapDataKey(envelope);
+            SecretKey dataKey = new SecretKeySpec(keyBytes, "AES");
+            Arrays.fill(keyBytes, (byte) 0);
+            return dataKey;
+        });
+    }
+
+    // The wrapped key (with its key ID) identifies the data key; it is not secret
+    private static ByteBuffer cacheKey(byte[] envelope) {
+        return ByteBuffer.wrap(Arrays.copyOfRange(envelope, 2, ROW_HEADER_LENGTH));
+    }
+
+    // Fields are length-prefixed UTF-8; a length of -1 marks null
+    private static byte[] serialize(String[] values) {
+        byte[][] encoded = new byte[values.length][];
+        int size = 0;
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = values[i] == null ? null : values[i].getBytes(StandardCharsets.UTF_8);
+            size += Integer.BYTES + (encoded[i] == null ? 0 : encoded[i].length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (byte[] field : encoded) {
+            buffer.putInt(field == null ? NULL_FIELD : field.length);
+            if (field != null) {
+                buffer.put(field);
+            }
+        }
+        return buffer.array();
+    }
+
+    private static String[] deserialize(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        int count = 0;
+        while (buffer.hasRemaining()) {
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + Math.max(length, 0));
+            count++;
+        }
+        String[] values = new String[count];
+        buffer.rewind();
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            if (length != NULL_FIELD) {
+                values[i] = new String(payload, buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+        }
+        return values;
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available in this JVM", e);
+        }
+    }
+}
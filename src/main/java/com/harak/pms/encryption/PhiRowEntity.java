@@ -0,0 +1,30 @@
+package com.harak.pms.encryption;
+
+/**
+ * An entity whose PHI fields can be stored in a single row envelope (see {@link PhiRowEncryptor}).
+ * Implementations register {@link PhiRowEnvelopeListener} with {@code @EntityListeners} and map
+ * the envelope to a nullable {@code phi_envelope bytea} column.
+ */
+public interface PhiRowEntity {
+
+    /**
+     * Returns the PHI fields in envelope order. The order is part of the stored format and must
+     * never change; new fields are appended.
+     */
+    SealedPhi[] getPhiFields();
+
+    /**
+     * Replaces the PHI fields, in the same order as {@link #getPhiFields()}.
+     */
+    void setPhiFields(SealedPhi[] fields);
+
+    /**
+     * Returns the names of the PHI fields, in the same order as {@link #getPhiFields()} (used to
+     * tag {@link PhiMetrics}).
+     */
+    String[] getPhiFieldNames();
+
+    byte[] getPhiEnvelope();
+
+    void setPhiEnvelope(byte[] phiEnvelope);
+}
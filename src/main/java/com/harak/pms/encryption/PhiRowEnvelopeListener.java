@@ -0,0 +1,112 @@
+package com.harak.pms.encryption;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener that packs the PHI fields of a {@link PhiRowEntity} into a row envelope on
+ * write (when {@code phi.row-envelope.enabled} is set) and binds loaded row references to their
+ * envelope on read. Binding is free: the envelope is decrypted when a PHI getter is first called.
+ * It also attaches the per-column {@link PhiMetrics} to every PHI value it sees.
+ */
+@Component
+@RequiredArgsConstructor
+public class PhiRowEnvelopeListener {
+
+    private final PhiRowEncryptor phiRowEncryptor;
+    private final PhiMetrics phiMetrics;
+
+    @PostLoad
+    public void bind(Object entity) {
+        if (!(entity instanceof PhiRowEntity row)) {
+            return;
+        }
+        instrument(row);
+        if (row.getPhiEnvelope() == null) {
+            return;
+        }
+        RowEnvelope envelope = new RowEnvelope(row.getPhiEnvelope(), phiRowEncryptor, rowMetrics(row));
+        for (SealedPhi field : row.getPhiFields()) {
+            if (field != null && field.isRowReference()) {
+                field.bind(envelope);
+            }
+        }
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void pack(Object entity) {
+        if (!(entity instanceof PhiRowEntity row)) {
+            return;
+        }
+        if (!phiRowEncryptor.isEnabled()) {
+            instrument(row);
+            return;
+        }
+        SealedPhi[] fields = row.getPhiFields();
+        if (row.getPhiEnvelope() != null && isPacked(fields)) {
+            // No PHI field was reassigned — the envelope is current (e.g. a soft delete)
+            return;
+        }
+        String[] values = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            values[i] = SealedPhi.reveal(fields[i]);
+        }
+        byte[] envelope = seal(row, values);
+
+        RowEnvelope sealed = new RowEnvelope(values);
+        SealedPhi[] references = new SealedPhi[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            references[i] = SealedPhi.rowReference(i, sealed);
+        }
+        row.setPhiFields(references);
+        row.setPhiEnvelope(envelope);
+    }
+
+    private byte[] seal(PhiRowEntity row, String[] values) {
+        PhiMetrics.Field metrics = rowMetrics(row);
+        if (metrics == null) {
+            return phiRowEncryptor.seal(values, row.getPhiEnvelope());
+        }
+        long start = System.nanoTime();
+        try {
+            byte[] envelope = phiRowEncryptor.seal(values, row.getPhiEnvelope());
+            metrics.encrypt().record(start, envelope.length);
+            return envelope;
+        } catch (RuntimeException e) {
+            metrics.encrypt().failed();
+            throw e;
+        }
+    }
+
+    private void instrument(PhiRowEntity row) {
+        if (!phiMetrics.isEnabled()) {
+            return;
+        }
+        SealedPhi[] fields = row.getPhiFields();
+        String[] names = row.getPhiFieldNames();
+        String entity = row.getClass().getSimpleName();
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null && !fields[i].isRowReference()) {
+                fields[i].instrument(phiMetrics.field(entity, names[i]));
+            }
+        }
+    }
+
+    private PhiMetrics.Field rowMetrics(PhiRowEntity row) {
+        return phiMetrics.isEnabled() ? phiMetrics.field(row.getClass().getSimpleName(), PhiMetrics.ROW_FIELD) : null;
+    }
+
+    // Every field — including null ones — is a row reference only while the envelope is unchanged
+    private static boolean isPacked(SealedPhi[] fields) {
+        for (SealedPhi field : fields) {
+            if (field == null || !field.isRowReference()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,348 @@
+package com.harak.pms.encryption;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import static com.harak.pms.encryption.PhiEnvelope.IV_LENGTH;
+import static com.harak.pms.encryption.PhiEnvelope.ROW_HEADER_LENGTH;
+import static com.harak.pms.encryption.PhiEnvelope.STREAM_HEADER_LENGTH;
+import static com.harak.pms.encryption.PhiEnvelope.STREAM_NONCE_PREFIX_LENGTH;
+import static com.harak.pms.encryption.PhiEnvelope.TAG_LENGTH;
+
+/**
+ * Streaming encryption of PHI files (clinical attachments) in fixed-size authenticated chunks.
+ *
+ * <p>Each file is encrypted under a random data key, wrapped by the primary master key in the
+ * file header (layout in {@link PhiEnvelope}). The plaintext is split into chunks of
+ * {@code phi.stream-encryption.chunk-size} bytes, each sealed with AES-256-GCM under the IV
+ * {@code NONCE_PREFIX[7] || chunkIndex[4] || lastChunk[1]}, so chunks cannot be reordered, and a
+ * file truncated at a chunk boundary fails authentication because its new last chunk was not
+ * sealed as the last one. The immutable part of the header is authenticated with every chunk;
+ * the wrapped data key is authenticated by its own tag, so {@link #rewrapDataKey(Path)} can move a
+ * file to a new master key in place, without touching its chunks.
+ *
+ * <p>Neither direction ever holds more than a chunk or two of the file in memory: uploads are
+ * encrypted as they are read, and {@link #open(Path)} returns a stream that reads and decrypts
+ * one chunk at a time with positional {@link FileChannel} reads. Skipping is free — only the
+ * chunks that overlap the bytes actually read are decrypted — which makes range requests on
+ * large files cost the same as reading the range. The chunk size is recorded in each file, so it
+ * can be changed without affecting existing files.
+ */
+@Component
+@RequiredArgsConstructor
+public class PhiStreamEncryptor {
+
+    private static final String ALGORITHM = "AES/GCM/NoPadding";
+    private static final int TAG_LENGTH_BITS = TAG_LENGTH * 8;
+    private static final int MIN_CHUNK_SIZE = 1024;
+    private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+    // MAGIC, VERSION, CHUNK_SIZE and NONCE_PREFIX: everything in the header except the wrapped key
+    private static final int ASSOCIATED_DATA_LENGTH = 2 + Integer.BYTES + STREAM_NONCE_PREFIX_LENGTH;
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(PhiStreamEncryptor::newCipher);
+
+    private final StringEncryptor stringEncryptor;
+
+    @Value("${phi.stream-encryption.chunk-size:64KB}")
+    private DataSize chunkSize;
+
+    @PostConstruct
+    public void init() {
+        if (chunkSize.toBytes() < MIN_CHUNK_SIZE || chunkSize.toBytes() > MAX_CHUNK_SIZE) {
+            throw new IllegalStateException("phi.stream-encryption.chunk-size must be between 1KB and 1MB");
+        }
+    }
+
+    /**
+     * Encrypts a plaintext stream into {@code target}, chunk by chunk, until the end of the stream.
+     *
+     * @param plaintext the plaintext to encrypt; not closed.
+     * @param target    the channel the encrypted file is written to.
+     * @return the number of plaintext bytes encrypted.
+     * @throws IOException if reading the plaintext or writing the target fails.
+     */
+    public long encrypt(InputStream plaintext, WritableByteChannel target) throws IOException {
+        int size = (int) chunkSize.toBytes();
+        byte[] header = new byte[STREAM_HEADER_LENGTH];
+        header[0] = PhiEnvelope.MAGIC;
+        header[1] = (byte) PhiEnvelope.VERSION_STREAM;
+        byte[] keyBytes = new byte[PhiEnvelope.DATA_KEY_LENGTH];
+        PhiRandom.nextBytes(keyBytes);
+        stringEncryptor.wrapDataKey(keyBytes, header);
+        SecretKey dataKey = new SecretKeySpec(keyBytes, "AES");
+        Arrays.fill(keyBytes, (byte) 0);
+        ByteBuffer.wrap(header, ROW_HEADER_LENGTH, Integer.BYTES).putInt(size);
+        byte[] noncePrefix = new byte[STREAM_NONCE_PREFIX_LENGTH];
+        PhiRandom.nextBytes(noncePrefix);
+        System.arraycopy(noncePrefix, 0, header, ROW_HEADER_LENGTH + Integer.BYTES, STREAM_NONCE_PREFIX_LENGTH);
+        writeFully(target, header, header.length);
+
+        byte[] associatedData = associatedData(header);
+        byte[] current = new byte[size];
+        byte[] next = new byte[size];
+        byte[] sealed = new byte[size + TAG_LENGTH];
+        long total = 0;
+        long index = 0;
+        try {
+            int length = plaintext.readNBytes(current, 0, size);
+            while (true) {
+                // A chunk is the last one if the stream ends before the next chunk has any data
+                int nextLength = length == size ? plaintext.readNBytes(next, 0, size) : 0;
+                boolean last = nextLength == 0;
+                Cipher cipher = CIPHER.get();
+                cipher.init(Cipher.ENCRYPT_MODE, dataKey,
+                        new GCMParameterSpec(TAG_LENGTH_BITS, chunkIv(noncePrefix, index, last)));
+                cipher.updateAAD(associatedData);
+                int sealedLength = cipher.doFinal(current, 0, length, sealed, 0);
+                writeFully(target, sealed, sealedLength);
+                total += length;
+                if (last) {
+                    return total;
+                }
+                if (++index > 0xFFFFFFFFL) {
+                    throw new IOException("PHI stream exceeds the maximum number of chunks");
+                }
+                byte[] swap = current;
+                current = next;
+                next = swap;
+                length = nextLength;
+            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to encrypt PHI stream", e);
+        } finally {
+            Arrays.fill(current, (byte) 0);
+            Arrays.fill(next, (byte) 0);
+        }
+    }
+
+    /**
+     * Opens an encrypted file for reading. The returned stream decrypts one chunk at a time and
+     * supports {@link InputStream#skip(long)} without reading the skipped chunks; closing it
+     * closes the file. A chunk that fails authentication raises an {@link IOException}.
+     *
+     * @param file a file written by {@link #encrypt(InputStream, WritableByteChannel)}.
+     * @return the plaintext stream.
+     * @throws IOException if the file cannot be read or is not a PHI stream.
+     */
+    public InputStream open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            byte[] header = new byte[STREAM_HEADER_LENGTH];
+            readFully(channel, ByteBuffer.wrap(header), 0);
+            if (header[0] != PhiEnvelope.MAGIC || header[1] != PhiEnvelope.VERSION_STREAM) {
+                throw new IOException("Not a PHI stream: " + file.getFileName());
+            }
+            int size = ByteBuffer.wrap(header, ROW_HEADER_LENGTH, Integer.BYTES).getInt();
+            if (size < MIN_CHUNK_SIZE || size > MAX_CHUNK_SIZE) {
+                throw new IOException("Invalid PHI stream chunk size: " + size);
+            }
+            byte[] keyBytes = stringEncryptor.unwrapDataKey(header);
+            SecretKey dataKey = new SecretKeySpec(keyBytes, "AES");
+            Arrays.fill(keyBytes, (byte) 0);
+            return new DecryptingInputStream(channel, dataKey, header, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Re-wraps the data key of an encrypted file under the primary master key, for key rotation.
+     *
+     * <p>Only the key ID, IV and wrapped key in the header are rewritten — a single 61-byte write
+     * within the file's first disk block, flushed to disk before returning; the encrypted chunks
+     * are untouched. A reader that opens the file during that write may fail once and can retry.
+     *
+     * @param file a file written by {@link #encrypt(InputStream, WritableByteChannel)}.
+     * @return {@code true} if the header was rewritten, {@code false} if the data key was already
+     *         wrapped by the primary key.
+     * @throws IOException           if the file cannot be read or written, or is not a PHI stream.
+     * @throws IllegalStateException if the header names a master key that is not configured.
+     */
+    public boolean rewrapDataKey(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            byte[] header = new byte[ROW_HEADER_LENGTH];
+            readFully(channel, ByteBuffer.wrap(header), 0);
+            if (header[0] != PhiEnvelope.MAGIC || header[1] != PhiEnvelope.VERSION_STREAM) {
+                throw new IOException("Not a PHI stream: " + file.getFileName());
+            }
+            if ((header[2] & 0xFF) == stringEncryptor.primaryKeyId()) {
+                return false;
+            }
+            byte[] dataKey = stringEncryptor.unwrapDataKey(header);
+            try {
+                stringEncryptor.wrapDataKey(dataKey, header);
+            } finally {
+                Arrays.fill(dataKey, (byte) 0);
+            }
+            ByteBuffer rewrapped = ByteBuffer.wrap(header, 2, ROW_HEADER_LENGTH - 2);
+            long position = 2;
+            while (rewrapped.hasRemaining()) {
+                position += channel.write(rewrapped, position);
+            }
+            channel.force(false);
+            return true;
+        }
+    }
+
+    private static byte[] associatedData(byte[] header) {
+        byte[] associatedData = new byte[ASSOCIATED_DATA_LENGTH];
+        associatedData[0] = header[0];
+        associatedData[1] = header[1];
+        System.arraycopy(header, ROW_HEADER_LENGTH, associatedData, 2, ASSOCIATED_DATA_LENGTH - 2);
+        return associatedData;
+    }
+
+    private static byte[] chunkIv(byte[] noncePrefix, long index, boolean last) {
+        byte[] iv = new byte[IV_LENGTH];
+        System.arraycopy(noncePrefix, 0, iv, 0, STREAM_NONCE_PREFIX_LENGTH);
+        ByteBuffer.wrap(iv, STREAM_NONCE_PREFIX_LENGTH, Integer.BYTES).putInt((int) index);
+        iv[IV_LENGTH - 1] = (byte) (last ? 1 : 0);
+        return iv;
+    }
+
+    private static void writeFully(WritableByteChannel target, byte[] data, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("PHI stream is truncated");
+            }
+            position += read;
+        }
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available in this JVM", e);
+        }
+    }
+
+    // Holds one decrypted chunk; the position moves freely and a chunk is only decrypted when read
+    private static final class DecryptingInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final SecretKey dataKey;
+        private final byte[] noncePrefix;
+        private final byte[] associatedData;
+        private final int chunkSize;
+        private final long lastChunk;
+        private final long size;
+        private final byte[] sealed;
+        private final byte[] chunk;
+        private long chunkIndex = -1;
+        private int chunkLength;
+        private long position;
+
+        DecryptingInputStream(FileChannel channel, SecretKey dataKey, byte[] header, int chunkSize) throws IOException {
+            this.channel = channel;
+            this.dataKey = dataKey;
+            this.noncePrefix = Arrays.copyOfRange(header, ROW_HEADER_LENGTH + Integer.BYTES, STREAM_HEADER_LENGTH);
+            this.associatedData = associatedData(header);
+            this.chunkSize = chunkSize;
+            long body = channel.size() - STREAM_HEADER_LENGTH;
+            long sealedChunkSize = chunkSize + TAG_LENGTH;
+            long chunks = (body + sealedChunkSize - 1) / sealedChunkSize;
+            if (chunks == 0 || body - (chunks - 1) * sealedChunkSize < TAG_LENGTH) {
+                throw new IOException("PHI stream is truncated");
+            }
+            this.lastChunk = chunks - 1;
+            this.size = body - chunks * TAG_LENGTH;
+            this.sealed = new byte[chunkSize + TAG_LENGTH];
+            this.chunk = new byte[chunkSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= size) {
+                return -1;
+            }
+            long index = position / chunkSize;
+            if (index != chunkIndex) {
+                load(index);
+            }
+            int start = (int) (position % chunkSize);
+            int count = Math.min(length, chunkLength - start);
+            System.arraycopy(chunk, start, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.min(Math.max(n, 0), size - position);
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return position / chunkSize == chunkIndex ? (int) (chunkLength - position % chunkSize) : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Arrays.fill(chunk, (byte) 0);
+            chunkIndex = -1;
+            channel.close();
+        }
+
+        private void load(long index) throws IOException {
+            boolean last = index == lastChunk;
+            int sealedLength = last
+                    ? (int) (size - index * chunkSize) + TAG_LENGTH
+                    : chunkSize + TAG_LENGTH;
+            readFully(channel, ByteBuffer.wrap(sealed, 0, sealedLength),
+                    STREAM_HEADER_LENGTH + index * (chunkSize + TAG_LENGTH));
+            try {
+                Cipher cipher = CIPHER.get();
+                cipher.init(Cipher.DECRYPT_MODE, dataKey,
+                        new GCMParameterSpec(TAG_LENGTH_BITS, chunkIv(noncePrefix, index, last)));
+                cipher.updateAAD(associatedData);
+                chunkLength = cipher.doFinal(sealed, 0, sealedLength, chunk, 0);
+                chunkIndex = index;
+            } catch (AEADBadTagException e) {
+                chunkIndex = -1;
+                throw new IOException("PHI stream chunk " + index + " failed authentication", e);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("Failed to decrypt PHI stream", e);
+            }
+        }
+    }
+}
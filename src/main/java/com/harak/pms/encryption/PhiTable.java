@@ -0,0 +1,20 @@
+package com.harak.pms.encryption;
+
+import java.util.List;
+
+/**
+ * Describes a table whose PHI columns are encrypted by this module.
+ *
+ * <p>Domain modules register one {@code PhiTable} bean per encrypted table so that bulk
+ * maintenance jobs in the encryption module (such as {@link PhiBinaryConversionTask}) can
+ * process those tables over JDBC without depending on the domain modules. The table must
+ * have a UUID primary key named {@code id}.
+ *
+ * @param name      the table name.
+ * @param columns   the encrypted ({@code bytea}) PHI columns.
+ * @param versioned {@code true} if the table has an optimistic-locking {@code version} column,
+ *                  which bulk rewrites increment so that an entity loaded before the rewrite
+ *                  cannot be saved over it.
+ */
+public record PhiTable(String name, List<String> columns, boolean versioned) {
+}
@@ -0,0 +1,192 @@
+package com.harak.pms.encryption;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Rewrites the encrypted PHI columns of a {@link PhiTable} in keyset-ordered batches over JDBC.
+ *
+ * <p>Each batch runs in its own transaction and locks only the rows it reads
+ * ({@code SELECT ... FOR UPDATE}), so bulk jobs can run while the API is serving traffic. The
+ * lock only orders the batch and a concurrent update of the same row; it does not stop a request
+ * that read the row before the batch from writing its copy back afterwards. That is prevented by
+ * the entities themselves: the batch increments the row version of a
+ * {@linkplain PhiTable#versioned() versioned} table, so such a save fails its optimistic lock, and
+ * {@link SealedPhi} re-encrypts any value that is not current before writing it. Rows are ordered
+ * by primary key, which makes the walk resumable from the last processed ID. Jobs that locate their rows some other way can rewrite an explicit set
+ * of IDs with the same locking and write path via {@link #rewriteRows}.
+ *
+ * <p>A row whose transform throws (e.g. ciphertext that fails authentication) is left unchanged
+ * and reported in {@link Batch#failed()}; the rest of the batch is still written and the keyset
+ * cursor moves past it, so a single bad row cannot stall a job.
+ */
+@Component
+@RequiredArgsConstructor
+public class PhiTableRewriter {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Rewrites the next batch of rows after {@code afterId}.
+     *
+     * @param table     the table to process.
+     * @param afterId   the last ID processed by the previous batch, or {@code null} to start at the beginning.
+     * @param batchSize the maximum number of rows to read.
+     * @param transform applied to every PHI column value; returns the replacement value, or
+     *                  {@code null} to leave the value unchanged. If it throws, the row is skipped.
+     * @return the outcome of the batch; {@link Batch#scanned()} below {@code batchSize} means the table is exhausted.
+     */
+    @Transactional
+    public Batch rewriteBatch(PhiTable table, UUID afterId, int batchSize, UnaryOperator<byte[]> transform) {
+        String select = "SELECT id, " + String.join(", ", table.columns()) + " FROM " + table.name()
+                + (afterId == null ? "" : " WHERE id > ?") + " ORDER BY id LIMIT ? FOR UPDATE";
+        Object[] selectArgs = afterId == null ? new Object[]{batchSize} : new Object[]{afterId, batchSize};
+        return rewrite(table, select, selectArgs, afterId, transform);
+    }
+
+    /**
+     * Rewrites the rows with the given IDs. IDs that no longer exist are ignored.
+     *
+     * @param table     the table to process.
+     * @param ids       the primary keys of the rows to rewrite.
+     * @param transform applied to every PHI column value; returns the replacement value, or
+     *                  {@code null} to leave the value unchanged. If it throws, the row is skipped.
+     * @return the outcome of the batch; {@link Batch#lastId()} is the highest ID read.
+     */
+    @Transactional
+    public Batch rewriteRows(PhiTable table, List<UUID> ids, UnaryOperator<byte[]> transform) {
+        if (ids.isEmpty()) {
+            return new Batch(null, 0, 0, List.of());
+        }
+        String select = "SELECT id, " + String.join(", ", table.columns()) + " FROM " + table.name()
+                + " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?"))
+                + ") ORDER BY id FOR UPDATE";
+        return rewrite(table, select, ids.toArray(), null, transform);
+    }
+
+    // Reads the selected rows (id first, then the PHI columns in order) and batch-updates the changed ones
+    private Batch rewrite(PhiTable table, String select, Object[] selectArgs, UUID afterId,
+                          UnaryOperator<byte[]> transform) {
+        List<String> columns = table.columns();
+        List<Object[]> updates = new ArrayList<>();
+        List<Failure> failed = new ArrayList<>();
+        UUID[] lastId = {afterId};
+        int[] scanned = {0};
+
+        jdbcTemplate.query(select, (RowCallbackHandler) rs -> {
+            UUID id = rs.getObject(1, UUID.class);
+            lastId[0] = id;
+            scanned[0]++;
+            Object[] row = new Object[columns.size() + 1];
+            boolean changed = false;
+            for (int i = 0; i < columns.size(); i++) {
+                byte[] value = rs.getBytes(i + 2);
+                byte[] rewritten;
+                try {
+                    rewritten = value == null ? null : transform.apply(value);
+                } catch (RuntimeException e) {
+                    failed.add(new Failure(id, describe(columns.get(i), e)));
+                    return;
+                }
+                changed |= rewritten != null;
+                row[i] = new SqlParameterValue(Types.BINARY, rewritten != null ? rewritten : value);
+            }
+            row[columns.size()] = id;
+            if (changed) {
+                updates.add(row);
+            }
+        }, selectArgs);
+
+        if (!updates.isEmpty()) {
+            String update = "UPDATE " + table.name() + " SET " + String.join(" = ?, ", columns) + " = ?"
+                    + (table.versioned() ? ", version = version + 1" : "") + " WHERE id = ?";
+            jdbcTemplate.batchUpdate(update, updates);
+        }
+        return new Batch(lastId[0], scanned[0], updates.size(), failed);
+    }
+
+    /**
+     * Reads the next batch of values of a text column after {@code afterId}, in primary key order
+     * and without locking — for jobs that process something a row refers to, such as the file
+     * named by a {@link PhiFileStore}, rather than the row itself.
+     *
+     * @param table     the table to read.
+     * @param column    the column to read.
+     * @param afterId   the last ID of the previous batch, or {@code null} to start at the beginning.
+     * @param batchSize the maximum number of rows to read.
+     * @return the column value by row ID, in ID order; fewer than {@code batchSize} entries means
+     *         the table is exhausted.
+     */
+    public Map<UUID, String> readBatch(String table, String column, UUID afterId, int batchSize) {
+        String select = "SELECT id, " + column + " FROM " + table
+                + (afterId == null ? "" : " WHERE id > ?") + " ORDER BY id LIMIT ?";
+        Object[] args = afterId == null ? new Object[]{batchSize} : new Object[]{afterId, batchSize};
+        return read(select, args);
+    }
+
+    /**
+     * Reads the values of a text column for the rows with the given IDs, in ID order and without
+     * locking. IDs that no longer exist are absent from the result.
+     *
+     * @param table  the table to read.
+     * @param column the column to read.
+     * @param ids    the primary keys of the rows to read.
+     * @return the column value by row ID.
+     */
+    public Map<UUID, String> readRows(String table, String column, List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        String select = "SELECT id, " + column + " FROM " + table
+                + " WHERE id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ") ORDER BY id";
+        return read(select, ids.toArray());
+    }
+
+    private Map<UUID, String> read(String select, Object[] args) {
+        Map<UUID, String> values = new LinkedHashMap<>();
+        jdbcTemplate.query(select, (RowCallbackHandler) rs -> values.put(rs.getObject(1, UUID.class), rs.getString(2)), args);
+        return values;
+    }
+
+    // Exception messages of the encryption module name formats and key IDs, never values
+    private static String describe(String column, RuntimeException e) {
+        String error = column + ": " + e.getMessage()
+                + (e.getCause() != null ? " (" + e.getCause().getClass().getSimpleName() + ")" : "");
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    /**
+     * Outcome of a single {@link #rewriteBatch} call.
+     *
+     * @param lastId  the ID of the last row read, used as the keyset cursor for the next batch.
+     * @param scanned the number of rows read, including failed rows.
+     * @param updated the number of rows rewritten.
+     * @param failed  the rows that were skipped because the transform threw.
+     */
+    public record Batch(UUID lastId, int scanned, int updated, List<Failure> failed) {
+    }
+
+    /**
+     * A row that could not be rewritten.
+     *
+     * @param id    the primary key of the row.
+     * @param error the failing column and the exception message; never contains PHI.
+     */
+    public record Failure(UUID id, String error) {
+    }
+}
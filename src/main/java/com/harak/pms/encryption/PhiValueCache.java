@@ -0,0 +1,205 @@
+package com.harak.pms.encryption;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Optional cache of decrypted PHI field values for hot rows ({@code phi.value-cache.enabled}),
+ * used by {@link SealedPhi} when an entity getter is first called.
+ *
+ * <p>Entries are keyed by the SHA-256 digest of the stored ciphertext. Ciphertext is never
+ * reused — every write encrypts under a fresh IV — so an updated value simply misses, and no
+ * invalidation is needed; stale entries age out. Entries expire a short time after they were
+ * written ({@code ttl}), and the total plaintext held by the cache is capped at
+ * {@code max-resident-size} bytes, with the least valuable entries evicted first. Values longer
+ * than {@code max-value-size} (clinical notes) are never cached.
+ *
+ * <p>The cache holds each plaintext as a UTF-8 byte array and overwrites it with zeros as soon as
+ * the entry is removed — whether it expired, was evicted for size, or the cache was cleared on
+ * shutdown. Removal is processed on the calling thread, and expired entries are removed by a
+ * scheduler even when the cache is idle. Strings handed out on a hit belong to the entity and are
+ * garbage-collected with it, exactly as without the cache.
+ *
+ * <p>Metrics: {@code cache.gets{cache=phi.values,result=hit|miss}}, {@code cache.evictions},
+ * {@code cache.size} and {@code phi.value.cache.resident.bytes}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PhiValueCache {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(PhiValueCache::newDigest);
+
+    private final StringEncryptor stringEncryptor;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${phi.value-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${phi.value-cache.ttl:PT30S}")
+    private Duration ttl;
+
+    @Value("${phi.value-cache.max-resident-size:4MB}")
+    private DataSize maxResidentSize;
+
+    @Value("${phi.value-cache.max-value-size:1KB}")
+    private DataSize maxValueSize;
+
+    private Cache<ByteBuffer, CachedValue> values;
+
+    /**
+     * Builds the cache and registers its metrics, if {@code phi.value-cache.enabled} is set.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        values = Caffeine.newBuilder()
+                .maximumWeight(maxResidentSize.toBytes())
+                .weigher((ByteBuffer key, CachedValue value) -> value.length())
+                .expireAfterWrite(ttl)
+                .executor(Runnable::run)
+                .scheduler(Scheduler.systemScheduler())
+                .removalListener((ByteBuffer key, CachedValue value, RemovalCause cause) -> {
+                    if (value != null) {
+                        value.clear();
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, values, "phi.values");
+        Gauge.builder("phi.value.cache.resident.bytes", this, PhiValueCache::residentBytes)
+                .description("Plaintext PHI bytes currently held by the decrypted value cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        log.info("PHI value cache enabled (TTL {}, at most {} of plaintext, values up to {})",
+                ttl, maxResidentSize, maxValueSize);
+    }
+
+    /**
+     * Removes every entry, overwriting the cached plaintext with zeros.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (values != null) {
+            values.invalidateAll();
+            values.cleanUp();
+        }
+    }
+
+    /**
+     * Decrypts a stored field value, serving it from the cache when enabled.
+     *
+     * @param ciphertext the stored column value.
+     * @return the decrypted plaintext, or {@code null} if {@code ciphertext} is {@code null}.
+     * @throws IllegalStateException if the value cannot be decrypted here, as for
+     *                               {@link StringEncryptor#decrypt(byte[])}.
+     * @see StringEncryptor#decrypt(byte[])
+     */
+    public String decrypt(byte[] ciphertext) {
+        return decrypt(ciphertext, null);
+    }
+
+    /**
+     * Decrypts a stored field value like {@link #decrypt(byte[])}, recording it in the metrics of
+     * its column: a value served from the cache counts as a cache hit, and only an actual
+     * decryption is timed, so that hits do not skew the decryption latency.
+     *
+     * @param ciphertext the stored column value.
+     * @param field      the metrics of the column, or {@code null} if it is not instrumented.
+     * @return the decrypted plaintext, or {@code null} if {@code ciphertext} is {@code null}.
+     */
+    String decrypt(byte[] ciphertext, PhiMetrics.Field field) {
+        if (values == null || ciphertext == null) {
+            return decryptAndRecord(ciphertext, field);
+        }
+        ByteBuffer key = ByteBuffer.wrap(SHA_256.get().digest(ciphertext));
+        CachedValue cached = values.getIfPresent(key);
+        String plaintext = cached == null ? null : cached.read();
+        if (plaintext != null) {
+            if (field != null) {
+                field.cacheHits().increment();
+            }
+            return plaintext;
+        }
+        plaintext = decryptAndRecord(ciphertext, field);
+        byte[] encoded = plaintext.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length <= maxValueSize.toBytes()) {
+            values.put(key, new CachedValue(encoded));
+        } else {
+            Arrays.fill(encoded, (byte) 0);
+        }
+        return plaintext;
+    }
+
+    private String decryptAndRecord(byte[] ciphertext, PhiMetrics.Field field) {
+        if (field == null || ciphertext == null) {
+            return stringEncryptor.decrypt(ciphertext);
+        }
+        long start = System.nanoTime();
+        try {
+            String plaintext = stringEncryptor.decrypt(ciphertext);
+            field.decrypt().record(start, ciphertext.length);
+            return plaintext;
+        } catch (RuntimeException e) {
+            field.decrypt().failed();
+            throw e;
+        }
+    }
+
+    private long residentBytes() {
+        return values.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    // A reader that raced with the removal of its entry sees null and decrypts instead of reading zeros
+    private static final class CachedValue {
+
+        private final byte[] plaintext;
+        private boolean cleared;
+
+        CachedValue(byte[] plaintext) {
+            this.plaintext = plaintext;
+        }
+
+        int length() {
+            return plaintext.length;
+        }
+
+        synchronized String read() {
+            return cleared ? null : new String(plaintext, StandardCharsets.UTF_8);
+        }
+
+        synchronized void clear() {
+            Arrays.fill(plaintext, (byte) 0);
+            cleared = true;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available in this JVM", e);
+        }
+    }
+}
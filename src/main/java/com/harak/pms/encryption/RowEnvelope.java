@@ -0,0 +1,51 @@
+package com.harak.pms.encryption;
+
+/**
+ * The decrypted-on-demand contents of one row envelope, shared by the {@link SealedPhi} row
+ * references of an entity so that the whole row is decrypted at most once.
+ */
+final class RowEnvelope {
+
+    private final byte[] envelope;
+    private final PhiRowEncryptor rowEncryptor;
+    private final PhiMetrics.Field metrics;
+    private volatile String[] values;
+
+    RowEnvelope(byte[] envelope, PhiRowEncryptor rowEncryptor, PhiMetrics.Field metrics) {
+        this.envelope = envelope;
+        this.rowEncryptor = rowEncryptor;
+        this.metrics = metrics;
+    }
+
+    // For a freshly sealed envelope whose plaintext is already known
+    RowEnvelope(String[] values) {
+        this.envelope = null;
+        this.rowEncryptor = null;
+        this.metrics = null;
+        this.values = values;
+    }
+
+    String field(int index) {
+        String[] current = values;
+        if (current == null) {
+            current = open();
+            values = current;
+        }
+        return index < current.length ? current[index] : null;
+    }
+
+    private String[] open() {
+        if (metrics == null) {
+            return rowEncryptor.open(envelope);
+        }
+        long start = System.nanoTime();
+        try {
+            String[] opened = rowEncryptor.open(envelope);
+            metrics.decrypt().record(start, envelope.length);
+            return opened;
+        } catch (RuntimeException e) {
+            metrics.decrypt().failed();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.harak.pms.encryption;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An encrypted PHI value that is decrypted only when it is actually read.
+ *
+ * <p>Entities hold their PHI attributes as {@code SealedPhi} (mapped with {@link SealedPhiConverter})
+ * and expose plain {@code String} getters that call {@link #reveal(SealedPhi)}. Loading an entity
+ * therefore costs no AES work: a patient fetched only to check that it exists, or a record
+ * touched only for its ID or audit metadata, is never decrypted. Each value is decrypted at most
+ * once and the plaintext is kept for the lifetime of the instance. Decryption goes through
+ * {@link PhiValueCache}, which can serve values of hot rows without AES work.
+ *
+ * <p>Values loaded from the database keep their stored ciphertext, so writing an unchanged value
+ * back (Hibernate updates all columns of a dirty row) does not re-encrypt it — provided it is
+ * already current (see {@link StringEncryptor#isCurrent(byte[])}). Legacy plaintext, v0/v1
+ * ciphertext and ciphertext under a retired key are decrypted and re-encrypted under the primary
+ * key when written, so a save never puts back a value that the PHI migration or key rotation has
+ * replaced in the meantime. Values created from plaintext with {@link #of(String)} are encrypted
+ * once, when they are first written.
+ *
+ * <p>Instances are immutable from the entity's point of view — changing a field means assigning
+ * a new instance — which lets Hibernate dirty-check them by identity without copying (and thus
+ * without decrypting or encrypting) the value. {@link #toString()} never reveals the plaintext.
+ *
+ * <p>In row envelope mode (see {@link PhiRowEncryptor}) a value is a reference to its slot in the
+ * row's envelope; {@link PhiRowEnvelopeListener} binds it to the envelope when the entity is loaded.
+ */
+public final class SealedPhi {
+
+    private final byte[] ciphertext;
+    private final PhiValueCache decryptor;
+    private volatile String plaintext;
+    private volatile boolean revealed;
+    private volatile byte[] encrypted;
+    private volatile RowEnvelope row;
+    private volatile PhiMetrics.Field metrics;
+
+    private SealedPhi(byte[] ciphertext, PhiValueCache decryptor, String plaintext, boolean revealed) {
+        this.ciphertext = ciphertext;
+        this.decryptor = decryptor;
+        this.plaintext = plaintext;
+        this.revealed = revealed;
+    }
+
+    /**
+     * Wraps a plaintext value assigned by application code.
+     *
+     * @return the sealed value, or {@code null} if {@code plaintext} is {@code null}.
+     */
+    public static SealedPhi of(String plaintext) {
+        return plaintext == null ? null : new SealedPhi(null, null, plaintext, true);
+    }
+
+    /**
+     * Null-safe {@link #reveal()}, for entity getters.
+     */
+    public static String reveal(SealedPhi value) {
+        return value == null ? null : value.reveal();
+    }
+
+    static SealedPhi fromCiphertext(byte[] ciphertext, PhiValueCache decryptor) {
+        return new SealedPhi(ciphertext, decryptor, null, false);
+    }
+
+    static SealedPhi rowReference(int index, RowEnvelope envelope) {
+        byte[] reference = {PhiEnvelope.MAGIC, (byte) PhiEnvelope.VERSION_ROW_REFERENCE, (byte) index};
+        SealedPhi value = new SealedPhi(reference, null, null, false);
+        value.row = envelope;
+        return value;
+    }
+
+    /**
+     * Returns the plaintext, decrypting it on first access.
+     */
+    public String reveal() {
+        if (!revealed) {
+            // Concurrent first reads may both decrypt; the result is identical, so no locking is needed
+            plaintext = isRowReference() ? boundRow().field(ciphertext[2] & 0xFF) : decryptField();
+            revealed = true;
+        }
+        return plaintext;
+    }
+
+    /**
+     * Returns {@code true} once the plaintext is available without decryption.
+     */
+    public boolean isRevealed() {
+        return revealed;
+    }
+
+    boolean isRowReference() {
+        return ciphertext != null && PhiEnvelope.version(ciphertext) == PhiEnvelope.VERSION_ROW_REFERENCE;
+    }
+
+    void bind(RowEnvelope envelope) {
+        this.row = envelope;
+    }
+
+    // Attaches the metrics of the column this value belongs to (see PhiMetrics)
+    void instrument(PhiMetrics.Field field) {
+        this.metrics = field;
+    }
+
+    // Latency is recorded by the value cache, which knows whether the value was actually decrypted
+    private String decryptField() {
+        PhiMetrics.Field field = metrics;
+        String value = decryptor.decrypt(ciphertext, field);
+        if (field != null && isLegacyPlaintext(value)) {
+            field.legacyPlaintext().increment();
+        }
+        return value;
+    }
+
+    // Legacy plaintext is returned unchanged, whereas v0 ciphertext never decrypts to its own Base64 text
+    private boolean isLegacyPlaintext(String value) {
+        return PhiEnvelope.version(ciphertext) == PhiEnvelope.VERSION_LEGACY
+                && value.equals(new String(ciphertext, StandardCharsets.UTF_8));
+    }
+
+    private RowEnvelope boundRow() {
+        RowEnvelope envelope = row;
+        if (envelope == null) {
+            throw new IllegalStateException("PHI row reference is not bound to its row envelope");
+        }
+        return envelope;
+    }
+
+    // Ciphertext to store: the loaded value if it is current, otherwise the plaintext encrypted once
+    byte[] toCiphertext(StringEncryptor stringEncryptor) {
+        if (ciphertext != null && stringEncryptor.isCurrent(ciphertext)) {
+            return ciphertext;
+        }
+        byte[] result = encrypted;
+        if (result == null) {
+            String value = reveal();
+            PhiMetrics.Field field = metrics;
+            long start = System.nanoTime();
+            try {
+                result = stringEncryptor.encryptToBytes(value);
+            } catch (RuntimeException e) {
+                if (field != null) {
+                    field.encrypt().failed();
+                }
+                throw e;
+            }
+            if (field != null) {
+                field.encrypt().record(start, result.length);
+            }
+            encrypted = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof SealedPhi other && ciphertext != null && Arrays.equals(ciphertext, other.ciphertext);
+    }
+
+    @Override
+    public int hashCode() {
+        return ciphertext != null ? Arrays.hashCode(ciphertext) : System.identityHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+        return "SealedPhi[***]";
+    }
+}
@@ -0,0 +1,36 @@
+package com.harak.pms.encryption;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.annotations.Immutable;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA AttributeConverter for {@link SealedPhi} attributes stored in {@code bytea} columns. Apply to
+ * entity fields with {@code @Convert(converter = SealedPhiConverter.class)}.
+ *
+ * <p>Unlike {@link PhiBinaryEncryptionConverter}, reading a row does not decrypt anything: the
+ * stored ciphertext is wrapped as-is and decrypted on first access. {@link Immutable} tells
+ * Hibernate not to deep-copy values for dirty checking, which would otherwise round-trip every
+ * value through this converter on load.
+ */
+@Component
+@Converter
+@Immutable
+@RequiredArgsConstructor
+public class SealedPhiConverter implements AttributeConverter<SealedPhi, byte[]> {
+
+    private final StringEncryptor stringEncryptor;
+    private final PhiValueCache phiValueCache;
+
+    @Override
+    public byte[] convertToDatabaseColumn(SealedPhi attribute) {
+        return attribute == null ? null : attribute.toCiphertext(stringEncryptor);
+    }
+
+    @Override
+    public SealedPhi convertToEntityAttribute(byte[] dbData) {
+        return dbData == null ? null : SealedPhi.fromCiphertext(dbData, phiValueCache);
+    }
+}
@@ -1,34 +1,107 @@
 package com.harak.pms.encryption;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.security.SecureRandom;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.harak.pms.encryption.PhiEnvelope.IV_LENGTH;
+import static com.harak.pms.encryption.PhiEnvelope.TAG_LENGTH;
+import static com.harak.pms.encryption.PhiEnvelope.V2_HEADER_LENGTH;
 
 /**
  * AES-256-GCM encryptor for PHI fields.
- * Ciphertext format: Base64(IV[12] + ciphertext + authTag[16])
+ * Binary ciphertext format: MAGIC[1] + VERSION[1] + KEY_ID[1] + IV[12] + ciphertext + authTag[16]
+ * Text ciphertext format: Base64 of the binary format
+ *
+ * <p>The envelope is self-describing (see {@link PhiEnvelope}): the version byte selects the
+ * layout and the key ID selects the decryption key, so ciphertext written under different keys
+ * can coexist in the same column during key rotation. Values written by earlier releases —
+ * binary v1, Base64 v0 and unencrypted legacy plaintext — are still read; they were all
+ * produced with the legacy key. Envelopes are recognized by their header. A legacy value is only
+ * treated as v0 ciphertext if it is well-formed Base64 <em>and</em> authenticates under the
+ * legacy key; free text that merely looks like Base64 (a long alphanumeric note) fails the GCM
+ * tag check and is read as plaintext, counted by {@code phi.legacy.plaintext.base64}.
+ *
+ * <p>Key rotation: new values are always written under the primary key
+ * ({@code phi.encryption-key} / {@code phi.encryption-key-id}); retired keys listed in
+ * {@code phi.decryption-keys} remain available for reads until {@link PhiKeyRotationTask} has
+ * re-encrypted every row under the primary key.
+ *
+ * <p>Long values (clinical notes) are DEFLATE-compressed before encryption when they reach
+ * {@code phi.compression.min-size} bytes and compression actually shrinks them; the envelope
+ * header flags compressed payloads (see {@link PhiCompression}). Short fields such as names and
+ * SSNs are never compressed.
+ *
+ * <p>The binary format is stored in {@code bytea} columns via {@link SealedPhiConverter} (lazy
+ * decryption) or {@link PhiBinaryEncryptionConverter}.
+ *
+ * <p>This class sits on the hottest path in the application (once per PHI column per row),
+ * so it avoids per-call provider lookups and intermediate copies: each thread reuses its own
+ * {@link Cipher} instance (a {@code Cipher} is stateful and not thread-safe, but it can be
+ * re-initialized with a fresh IV for every operation), and the header, IV and ciphertext are
+ * written directly into a single output buffer. IVs come from a per-thread DRBG
+ * ({@link PhiRandom}) rather than a shared {@code SecureRandom}, which would serialize writers.
  */
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class StringEncryptor {
 
     private static final String ALGORITHM = "AES/GCM/NoPadding";
-    private static final int IV_LENGTH = 12;
-    private static final int TAG_LENGTH_BITS = 128;
+    private static final int TAG_LENGTH_BITS = TAG_LENGTH * 8;
+    private static final int MAX_KEY_ID = 255;
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(StringEncryptor::newCipher);
+    private static final ThreadLocal<byte[]> IV_BUFFER = ThreadLocal.withInitial(() -> new byte[IV_LENGTH]);
 
     @Value("${phi.encryption-key:}")
     private String encodedKey;
 
-    private SecretKey secretKey;
-    private final SecureRandom secureRandom = new SecureRandom();
+    @Value("${phi.encryption-key-id:1}")
+    private int encryptionKeyId;
+
+    // Retired keys still needed for reads, as comma-separated "keyId:base64Key" entries
+    @Value("${phi.decryption-keys:}")
+    private String decryptionKeys;
+
+    // Key that wrote the pre-envelope (v0/v1) ciphertext; defaults to the primary key
+    @Value("${phi.legacy-key-id:-1}")
+    private int configuredLegacyKeyId;
+
+    @Value("${phi.compression.enabled:true}")
+    private boolean compressionEnabled;
+
+    // Smallest payload (UTF-8 bytes) worth compressing; shorter values skip compression
+    @Value("${phi.compression.min-size:512}")
+    private int compressionMinSize;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Integer, SecretKey> keys = new HashMap<>();
+    private SecretKey primaryKey;
+    private int primaryKeyId;
+    private SecretKey legacyKey;
+    private int legacyKeyId;
+
+    private final AtomicBoolean legacyPlaintextReported = new AtomicBoolean();
+    private Counter base64Plaintext;
 
     @PostConstruct
     public void init() {
@@ -37,68 +110,413 @@ public class StringEncryptor {
                     "PHI_ENCRYPTION_KEY is not set. HIPAA requires encryption of PHI at rest. "
                             + "Generate a key with: openssl rand -base64 32");
         }
-        byte[] keyBytes = Base64.getDecoder().decode(encodedKey);
-        if (keyBytes.length != 32) {
+        this.primaryKeyId = checkKeyId("phi.encryption-key-id", encryptionKeyId);
+        this.primaryKey = decodeKey("PHI_ENCRYPTION_KEY", encodedKey);
+        keys.put(primaryKeyId, primaryKey);
+
+        if (decryptionKeys != null && !decryptionKeys.isBlank()) {
+            for (String entry : decryptionKeys.split(",")) {
+                int separator = entry.indexOf(':');
+                if (separator < 0) {
+                    throw new IllegalArgumentException(
+                            "phi.decryption-keys entries must have the form keyId:base64Key");
+                }
+                int keyId = checkKeyId("phi.decryption-keys", Integer.parseInt(entry.substring(0, separator).trim()));
+                if (keys.putIfAbsent(keyId, decodeKey("phi.decryption-keys", entry.substring(separator + 1).trim())) != null) {
+                    throw new IllegalArgumentException("PHI encryption key ID " + keyId + " is configured more than once");
+                }
+            }
+        }
+
+        this.legacyKeyId = configuredLegacyKeyId < 0 ? primaryKeyId : configuredLegacyKeyId;
+        this.legacyKey = keys.get(legacyKeyId);
+        if (legacyKey == null) {
             throw new IllegalArgumentException(
-                    "PHI_ENCRYPTION_KEY must be exactly 32 bytes (256 bits). Current: "
-                            + keyBytes.length + " bytes. Generate with: openssl rand -base64 32");
+                    "phi.legacy-key-id " + legacyKeyId + " does not match any configured PHI encryption key");
         }
-        this.secretKey = new SecretKeySpec(keyBytes, "AES");
-        log.info("PHI encryption initialized successfully");
+        this.base64Plaintext = Counter.builder("phi.legacy.plaintext.base64")
+                .description("Legacy values that look like v0 Base64 ciphertext but fail authentication, "
+                        + "and are therefore treated as plaintext")
+                .register(meterRegistry);
+        log.info("PHI encryption initialized successfully (primary key ID {}, {} key(s) available for decryption)",
+                primaryKeyId, keys.size());
+    }
+
+    /**
+     * Returns the ID of the key that all new ciphertext is written under.
+     */
+    public int primaryKeyId() {
+        return primaryKeyId;
     }
 
     public String encrypt(String plaintext) {
         if (plaintext == null) {
             return null;
         }
+        return Base64.getEncoder().encodeToString(seal(plaintext, false));
+    }
+
+    /**
+     * Encrypts a PHI value into the binary ciphertext format under the primary key.
+     *
+     * @param plaintext the value to encrypt.
+     * @return the v2 envelope, or {@code null} if {@code plaintext} is {@code null}.
+     */
+    public byte[] encryptToBytes(String plaintext) {
+        if (plaintext == null) {
+            return null;
+        }
+        return seal(plaintext, true);
+    }
+
+    public String decrypt(String ciphertext) {
+        if (ciphertext == null) {
+            return null;
+        }
+        boolean base64 = PhiEnvelope.isBase64Ciphertext(ciphertext);
+        try {
+            if (base64 && PhiEnvelope.hasV2TextPrefix(ciphertext)) {
+                byte[] data = Base64.getDecoder().decode(ciphertext);
+                if (PhiEnvelope.version(data) == PhiEnvelope.VERSION_2 && keys.containsKey(keyId(data))) {
+                    try {
+                        return open(data, V2_HEADER_LENGTH, keys.get(keyId(data)), data, PhiEnvelope.isCompressed(data));
+                    } catch (AEADBadTagException e) {
+                        // Rare: v0 ciphertext whose first bytes happen to match the v2 header
+                    }
+                }
+            }
+            if (base64) {
+                String plaintext = openV0(ciphertext);
+                if (plaintext != null) {
+                    return plaintext;
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to decrypt PHI data", e);
+        }
+        reportLegacyPlaintext();
+        return ciphertext;
+    }
+
+    /**
+     * Decrypts a value read from a binary PHI column.
+     *
+     * <p>Values that do not carry an envelope header were copied byte-for-byte from the former
+     * VARCHAR column and are handled exactly like {@link #decrypt(String)}.
+     *
+     * @param data the stored column value.
+     * @return the decrypted plaintext, or {@code null} if {@code data} is {@code null}.
+     * @throws IllegalStateException if the envelope references a key ID that is not configured,
+     *                               or the value belongs to a row envelope (see {@link PhiRowEncryptor}).
+     */
+    public String decrypt(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        int version = PhiEnvelope.version(data);
+        if (version == PhiEnvelope.VERSION_LEGACY) {
+            return decrypt(new String(data, StandardCharsets.UTF_8));
+        }
+        if (version == PhiEnvelope.VERSION_ROW || version == PhiEnvelope.VERSION_ROW_REFERENCE) {
+            throw new IllegalStateException("Row envelope PHI must be read through its entity");
+        }
+        SecretKey key = version == PhiEnvelope.VERSION_2 ? requireKey(keyId(data)) : legacyKey;
+        int headerLength = PhiEnvelope.headerLength(version);
         try {
-            byte[] iv = new byte[IV_LENGTH];
-            secureRandom.nextBytes(iv);
+            return open(data, headerLength, key, new byte[data.length - headerLength - IV_LENGTH],
+                    PhiEnvelope.isCompressed(data));
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to decrypt PHI data", e);
+        }
+    }
+
+    /**
+     * Re-encrypts a value read from a binary PHI column under the primary key.
+     *
+     * <p>Row envelopes are re-keyed by re-wrapping their data key only; the encrypted fields and
+     * the per-field row references are left untouched.
+     *
+     * @param data the stored column value.
+     * @return the new ciphertext, or {@code null} if {@code data} is already a v2 or row envelope
+     *         under the primary key, a row reference, legacy plaintext (left for the PHI migration
+     *         task), or {@code null}.
+     * @throws RuntimeException if the value is an envelope that fails to decrypt.
+     */
+    public byte[] reencrypt(byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (isCurrent(data)) {
+            return null;
+        }
+        int version = PhiEnvelope.version(data);
+        if (version == PhiEnvelope.VERSION_ROW) {
+            byte[] dataKey = unwrapDataKey(data);
+            byte[] rewrapped = data.clone();
+            wrapDataKey(dataKey, rewrapped);
+            Arrays.fill(dataKey, (byte) 0);
+            return rewrapped;
+        }
+        if (version == PhiEnvelope.VERSION_LEGACY) {
+            String text = new String(data, StandardCharsets.ISO_8859_1);
+            String plaintext = null;
+            try {
+                plaintext = PhiEnvelope.isBase64Ciphertext(text) ? openV0(text) : null;
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("Failed to decrypt PHI data", e);
+            }
+            return plaintext == null ? null : seal(plaintext, true);
+        }
+        return seal(decrypt(data), true);
+    }
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
-            byte[] ciphertext = cipher.doFinal(plaintext.getBytes());
+    /**
+     * Returns {@code true} if a binary column value needs no re-encryption: a v2 or row envelope
+     * under the primary key, or a row reference (whose row envelope is checked on its own).
+     *
+     * @param data the stored column value; not {@code null}.
+     * @return {@code true} if the value can be written back as-is.
+     */
+    public boolean isCurrent(byte[] data) {
+        int version = PhiEnvelope.version(data);
+        if (version == PhiEnvelope.VERSION_2 || version == PhiEnvelope.VERSION_ROW) {
+            return keyId(data) == primaryKeyId;
+        }
+        return version == PhiEnvelope.VERSION_ROW_REFERENCE;
+    }
 
-            byte[] combined = new byte[IV_LENGTH + ciphertext.length];
-            System.arraycopy(iv, 0, combined, 0, IV_LENGTH);
-            System.arraycopy(ciphertext, 0, combined, IV_LENGTH, ciphertext.length);
+    /**
+     * Returns {@code true} if a binary column value is unencrypted legacy plaintext: neither an
+     * envelope nor v0 Base64 ciphertext. A well-formed Base64 value is only v0 ciphertext if it
+     * authenticates under the legacy key, so classifying it costs one decryption.
+     *
+     * @param data the stored column value; not {@code null}.
+     * @return {@code true} if the value is plaintext.
+     */
+    public boolean isLegacyPlaintext(byte[] data) {
+        if (PhiEnvelope.version(data) != PhiEnvelope.VERSION_LEGACY) {
+            return false;
+        }
+        String text = new String(data, StandardCharsets.ISO_8859_1);
+        try {
+            return !PhiEnvelope.isBase64Ciphertext(text) || openV0(text) == null;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to decrypt PHI data", e);
+        }
+    }
 
-            return Base64.getEncoder().encodeToString(combined);
+    /**
+     * Encrypts a legacy plaintext value read from a binary PHI column under the primary key.
+     *
+     * @param data the stored column value.
+     * @return the new ciphertext, or {@code null} if {@code data} is already ciphertext (in any
+     *         format) or {@code null}.
+     */
+    public byte[] encryptLegacyPlaintext(byte[] data) {
+        if (data == null || !isLegacyPlaintext(data)) {
+            return null;
+        }
+        return seal(new String(data, StandardCharsets.UTF_8), true);
+    }
+
+    /**
+     * Converts legacy Base64 text ciphertext, as stored byte-for-byte in a binary PHI column,
+     * into the binary format without decrypting it.
+     *
+     * <p>The IV, ciphertext and tag are unchanged; only the Base64 encoding is removed and a v2
+     * header naming the legacy key is added. The value is decrypted once to make sure it is
+     * ciphertext: legacy plaintext that merely looks like Base64 would otherwise be turned into
+     * an envelope that can never be opened. Legacy plaintext is left for the PHI migration task.
+     *
+     * @param data the stored column value.
+     * @return the binary ciphertext, or {@code null} if {@code data} is already binary,
+     *         legacy plaintext, or {@code null}.
+     */
+    public byte[] convertLegacyCiphertext(byte[] data) {
+        if (data == null || PhiEnvelope.version(data) != PhiEnvelope.VERSION_LEGACY) {
+            return null;
+        }
+        String text = new String(data, StandardCharsets.ISO_8859_1);
+        if (!PhiEnvelope.isBase64Ciphertext(text)) {
+            return null;
+        }
+        try {
+            if (openV0(text) == null) {
+                return null;
+            }
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to decrypt PHI data", e);
+        }
+        byte[] combined = Base64.getDecoder().decode(text);
+        byte[] binary = new byte[V2_HEADER_LENGTH + combined.length];
+        writeHeader(binary, legacyKeyId, false);
+        System.arraycopy(combined, 0, binary, V2_HEADER_LENGTH, combined.length);
+        return binary;
+    }
+
+    /**
+     * Wraps a row data key under the primary key, writing {@code KEY_ID + IV + wrappedKey + tag}
+     * into the row envelope header (see {@link PhiEnvelope}).
+     */
+    void wrapDataKey(byte[] dataKey, byte[] envelope) {
+        try {
+            envelope[2] = (byte) primaryKeyId;
+            byte[] iv = IV_BUFFER.get();
+            PhiRandom.nextBytes(iv);
+            System.arraycopy(iv, 0, envelope, V2_HEADER_LENGTH, IV_LENGTH);
+
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, primaryKey,
+                    new GCMParameterSpec(TAG_LENGTH_BITS, envelope, V2_HEADER_LENGTH, IV_LENGTH));
+            cipher.doFinal(dataKey, 0, dataKey.length, envelope, V2_HEADER_LENGTH + IV_LENGTH);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to wrap PHI data key", e);
+        }
+    }
+
+    /**
+     * Unwraps the data key of a row envelope with the master key named in its header.
+     */
+    byte[] unwrapDataKey(byte[] envelope) {
+        try {
+            byte[] dataKey = new byte[PhiEnvelope.DATA_KEY_LENGTH];
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, requireKey(keyId(envelope)),
+                    new GCMParameterSpec(TAG_LENGTH_BITS, envelope, V2_HEADER_LENGTH, IV_LENGTH));
+            cipher.doFinal(envelope, V2_HEADER_LENGTH + IV_LENGTH, PhiEnvelope.DATA_KEY_LENGTH + TAG_LENGTH, dataKey, 0);
+            return dataKey;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to unwrap PHI data key", e);
+        }
+    }
+
+    // Encrypts under the primary key into a new buffer laid out as [v2 header][IV][ciphertext + tag];
+    // the Base64 text form is never compressed, so its v2 prefix stays recognizable
+    private byte[] seal(String plaintext, boolean compressible) {
+        byte[] compressed = null;
+        try {
+            byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
+            if (compressible) {
+                compressed = compress(input);
+            }
+            if (compressed != null) {
+                input = compressed;
+            }
+            byte[] sealed = new byte[V2_HEADER_LENGTH + IV_LENGTH + input.length + TAG_LENGTH];
+            writeHeader(sealed, primaryKeyId, compressed != null);
+
+            byte[] iv = IV_BUFFER.get();
+            PhiRandom.nextBytes(iv);
+            System.arraycopy(iv, 0, sealed, V2_HEADER_LENGTH, IV_LENGTH);
+
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, primaryKey,
+                    new GCMParameterSpec(TAG_LENGTH_BITS, sealed, V2_HEADER_LENGTH, IV_LENGTH));
+            cipher.doFinal(input, 0, input.length, sealed, V2_HEADER_LENGTH + IV_LENGTH);
+            return sealed;
         } catch (Exception e) {
             throw new RuntimeException("Failed to encrypt PHI data", e);
+        } finally {
+            if (compressed != null) {
+                Arrays.fill(compressed, (byte) 0);
+            }
         }
     }
 
-    public String decrypt(String ciphertext) {
-        if (ciphertext == null) {
+    /**
+     * Compresses a plaintext payload if compression is enabled and the payload reaches the size
+     * threshold ({@code phi.compression.*}).
+     *
+     * @return the compressed payload, or {@code null} if the payload is stored as-is.
+     */
+    byte[] compress(byte[] payload) {
+        if (!compressionEnabled || payload.length < compressionMinSize) {
             return null;
         }
+        return PhiCompression.compress(payload);
+    }
+
+    // Decrypts v0 text ciphertext — Base64(IV + ciphertext + tag) under the legacy key — in place over
+    // the decoded buffer. Returns null if the tag does not verify: the value is plaintext that looks
+    // like Base64, not ciphertext.
+    private String openV0(String text) throws GeneralSecurityException {
+        byte[] combined = Base64.getDecoder().decode(text);
         try {
-            byte[] combined = Base64.getDecoder().decode(ciphertext);
+            return open(combined, 0, legacyKey, combined, false);
+        } catch (AEADBadTagException e) {
+            base64Plaintext.increment();
+            return null;
+        }
+    }
 
-            // Encrypted data must be at least IV (12 bytes) + GCM auth tag (16 bytes)
-            if (combined.length < IV_LENGTH + (TAG_LENGTH_BITS / 8)) {
-                log.warn("Data too short to be AES-GCM ciphertext — treating as legacy plaintext. "
-                        + "Run the PHI migration task to encrypt existing records.");
-                return ciphertext;
-            }
+    // Decrypts [IV][ciphertext + tag] starting at offset into output (which may be data itself —
+    // cipher operations are copy-safe)
+    private String open(byte[] data, int offset, SecretKey key, byte[] output, boolean compressed)
+            throws GeneralSecurityException {
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, data, offset, IV_LENGTH));
+        int length = cipher.doFinal(data, offset + IV_LENGTH, data.length - offset - IV_LENGTH, output, 0);
+        if (!compressed) {
+            return new String(output, 0, length, StandardCharsets.UTF_8);
+        }
+        byte[] plaintext = PhiCompression.decompress(output, length);
+        Arrays.fill(output, 0, length, (byte) 0);
+        String value = new String(plaintext, StandardCharsets.UTF_8);
+        Arrays.fill(plaintext, (byte) 0);
+        return value;
+    }
 
-            byte[] iv = new byte[IV_LENGTH];
-            System.arraycopy(combined, 0, iv, 0, IV_LENGTH);
+    private static int checkKeyId(String property, int keyId) {
+        if (keyId < 0 || keyId > MAX_KEY_ID) {
+            throw new IllegalArgumentException(
+                    property + " key IDs must be between 0 and " + MAX_KEY_ID + ". Current: " + keyId);
+        }
+        return keyId;
+    }
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
-            byte[] plaintext = cipher.doFinal(combined, IV_LENGTH, combined.length - IV_LENGTH);
+    private static SecretKey decodeKey(String property, String encoded) {
+        byte[] keyBytes = Base64.getDecoder().decode(encoded);
+        if (keyBytes.length != 32) {
+            throw new IllegalArgumentException(
+                    property + " keys must be exactly 32 bytes (256 bits). Current: "
+                            + keyBytes.length + " bytes. Generate with: openssl rand -base64 32");
+        }
+        return new SecretKeySpec(keyBytes, "AES");
+    }
 
-            return new String(plaintext);
-        } catch (IllegalArgumentException e) {
-            // Base64 decoding failed — data is legacy unencrypted plaintext
+    private SecretKey requireKey(int keyId) {
+        SecretKey key = keys.get(keyId);
+        if (key == null) {
+            throw new IllegalStateException("PHI ciphertext references unknown encryption key ID " + keyId);
+        }
+        return key;
+    }
+
+    private void reportLegacyPlaintext() {
+        // Warn once per process — a partially migrated table would otherwise log on every row read
+        if (legacyPlaintextReported.compareAndSet(false, true)) {
             log.warn("Found unencrypted PHI data in database — returning as-is. "
-                    + "Run the PHI migration task to encrypt existing records.");
-            return ciphertext;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to decrypt PHI data", e);
+                    + "Run the PHI migration task (POST /api/admin/phi/plaintext-migration) to encrypt existing records.");
+        } else {
+            log.debug("Found unencrypted PHI data in database — returning as-is");
         }
     }
-}
 
+    private static int keyId(byte[] envelope) {
+        return envelope[2] & 0xFF;
+    }
+
+    private static void writeHeader(byte[] envelope, int keyId, boolean compressed) {
+        envelope[0] = PhiEnvelope.MAGIC;
+        envelope[1] = PhiEnvelope.versionByte(PhiEnvelope.VERSION_2, compressed);
+        envelope[2] = (byte) keyId;
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available in this JVM", e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.harak.pms.idempotency;
+
+import com.harak.pms.audit.AuditContext;
+import com.harak.pms.audit.AuditService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.Ordered;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Optional;
+
+/**
+ * AOP aspect that makes {@link Idempotent} endpoints safe to retry with an
+ * {@code Idempotency-Key} request header, using {@link IdempotencyService}.
+ *
+ * <p>A retry with the same key and body is answered with the stored status, {@code ETag} and body
+ * of the first successful response, plus {@code Idempotent-Replayed: true}, without invoking the
+ * method. The aspect runs inside Spring Security's method authorization — a replay is authorized
+ * like any other request — and outside {@link com.harak.pms.audit.AuditAspect}, so a replay does
+ * not record the creation a second time. The replay itself discloses the stored PHI again, so it is
+ * audited as {@link Idempotent#replayAction()} with the ID of the created resource.
+ */
+@Slf4j
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+@RequiredArgsConstructor
+public class IdempotencyAspect {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyService idempotencyService;
+    private final AuditService auditService;
+
+    /**
+     * Executes the method once per idempotency key, replaying its stored response for retries.
+     *
+     * @param joinPoint  the join point representing the intercepted method invocation.
+     * @param idempotent the {@link Idempotent} annotation of the intercepted method.
+     * @return the response of the method, or the stored response of an earlier request with the same key.
+     * @throws IllegalArgumentException if the key is blank or longer than 255 characters.
+     */
+    @Around("@annotation(idempotent)")
+    public Object applyIdempotencyKey(ProceedingJoinPoint joinPoint, Idempotent idempotent) throws Throwable {
+        Optional<HttpServletRequest> request = AuditContext.getCurrentHttpRequest();
+        String key = request.map(httpRequest -> httpRequest.getHeader(KEY_HEADER)).orElse(null);
+        if (key == null) {
+            return joinPoint.proceed();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        String keyHash = idempotencyService.keyHash(AuditContext.getCurrentUsername(),
+                request.get().getMethod() + " " + request.get().getRequestURI(), key);
+        String fingerprint = idempotencyService.fingerprint(requestBody(method, joinPoint.getArgs()));
+
+        Optional<IdempotencyService.Replay> stored = idempotencyService.begin(keyHash, fingerprint,
+                ResolvableType.forMethodReturnType(method).getGeneric(0).getType());
+        if (stored.isPresent()) {
+            log.info("Replayed the stored response of {} for a repeated Idempotency-Key", method.getName());
+            auditService.logEvent(idempotent.replayAction(), idempotent.entityType(), stored.get().resourceId(),
+                    AuditContext.getCurrentUsername(), AuditContext.getClientIp(request.get()),
+                    "Replayed the stored response for a repeated Idempotency-Key");
+            return stored.get().response();
+        }
+
+        Object result;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            idempotencyService.release(keyHash);
+            throw e;
+        }
+        if (result instanceof ResponseEntity<?> response && response.getStatusCode().is2xxSuccessful()) {
+            idempotencyService.complete(keyHash, response);
+        } else {
+            idempotencyService.release(keyHash);
+        }
+        return result;
+    }
+
+    private static Object requestBody(Method method, Object[] args) {
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isAnnotationPresent(RequestBody.class)) {
+                return args[i];
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,17 @@
+package com.harak.pms.idempotency;
+
+/**
+ * Thrown when an {@code Idempotency-Key} is sent again with a different request body.
+ * Mapped to {@code 422 Unprocessable Content}.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    /**
+     * Constructs a new exception with the given detail message.
+     *
+     * @param message the detail message returned to the client.
+     */
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,25 @@
+package com.harak.pms.idempotency;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Purges expired idempotency keys, every {@code idempotency.purge-interval-ms} (default 10 minutes).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdempotencyMaintenanceTask {
+
+    private final IdempotencyService idempotencyService;
+
+    @Scheduled(fixedRateString = "${idempotency.purge-interval-ms:600000}")
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyService.purgeExpired();
+        if (deleted > 0) {
+            log.info("Purged {} expired idempotency keys", deleted);
+        }
+    }
+}
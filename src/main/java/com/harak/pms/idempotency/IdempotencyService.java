@@ -0,0 +1,218 @@
+package com.harak.pms.idempotency;
+
+import com.harak.pms.encryption.BlindIndexer;
+import com.harak.pms.encryption.StringEncryptor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import tools.jackson.databind.JavaType;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Stores the outcome of requests sent with an {@code Idempotency-Key} header, so that retries
+ * can be answered without executing the request again (see {@link Idempotent}).
+ *
+ * <p>Each key is scoped to the user and endpoint and stored only as a SHA-256 digest. The first
+ * request claims the key with an atomic insert and holds it for {@code idempotency.lease}; its
+ * successful response is then stored — AES-GCM encrypted, as it contains PHI — and can be replayed
+ * for {@code idempotency.ttl}. If the request fails, the key is released so it can be retried. A
+ * key that is reused with a different request body (compared by a keyed HMAC fingerprint, see
+ * {@link BlindIndexer}) is rejected. Expired keys are purged by {@link IdempotencyMaintenanceTask}.
+ *
+ * <p>A stored response that can no longer be replayed — typically because it was encrypted under
+ * a master key that has since been retired, since key rotation does not rewrite this table — is
+ * treated like an expired one: it is deleted and the request is executed again.
+ *
+ * <p>Every statement runs in its own transaction, outside the transaction of the request it
+ * guards: the claim must be visible to concurrent retries before the request executes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    private static final String SELECT_SQL = "SELECT request_fingerprint, response_snapshot,"
+            + " expires_at < CURRENT_TIMESTAMP FROM idempotency_keys WHERE key_hash = ?";
+
+    private static final String CLAIM_SQL = "INSERT INTO idempotency_keys (key_hash, request_fingerprint, expires_at)"
+            + " VALUES (?, ?, CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond')"
+            + " ON CONFLICT (key_hash) DO NOTHING";
+
+    private static final String TAKE_OVER_SQL = "UPDATE idempotency_keys SET request_fingerprint = ?,"
+            + " response_snapshot = NULL, expires_at = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond'"
+            + " WHERE key_hash = ? AND expires_at < CURRENT_TIMESTAMP";
+
+    private static final String COMPLETE_SQL = "UPDATE idempotency_keys SET response_snapshot = ?,"
+            + " expires_at = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond' WHERE key_hash = ?";
+
+    private static final String RELEASE_SQL =
+            "DELETE FROM idempotency_keys WHERE key_hash = ? AND response_snapshot IS NULL";
+
+    private static final String DISCARD_SQL =
+            "DELETE FROM idempotency_keys WHERE key_hash = ? AND response_snapshot IS NOT NULL";
+
+    private static final String PURGE_SQL = "DELETE FROM idempotency_keys WHERE expires_at < CURRENT_TIMESTAMP";
+
+    // Separates request fingerprints from the MRN blind indexes computed with the same HMAC key
+    private static final String FINGERPRINT_DOMAIN = "idempotency-request\n";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringEncryptor stringEncryptor;
+    private final BlindIndexer blindIndexer;
+    private final ObjectMapper objectMapper;
+
+    @Value("${idempotency.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${idempotency.lease:PT60S}")
+    private Duration lease;
+
+    /**
+     * Returns the digest that identifies a key: the same key sent by another user or to another
+     * endpoint is a different key.
+     */
+    public String keyHash(String username, String endpoint, String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((username + "\n" + endpoint + "\n" + key).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns a keyed digest of the request body, to detect a key reused for a different request.
+     */
+    public String fingerprint(Object requestBody) {
+        return blindIndexer.index(FINGERPRINT_DOMAIN + objectMapper.writeValueAsString(requestBody));
+    }
+
+    /**
+     * Claims a key for a new request, or returns the stored response of the request that already
+     * completed with it.
+     *
+     * @param bodyType the type of the response body, to restore the stored body as.
+     * @return the stored response to replay, with the ID of the resource it created, or empty if
+     *         the caller now holds the key and must execute the request, then call
+     *         {@link #complete} or {@link #release}.
+     * @throws IdempotencyKeyReusedException       if the key was used with a different request body.
+     * @throws IdempotentRequestInProgressException if a request with the key is still in progress.
+     */
+    public Optional<Replay> begin(String keyHash, String fingerprint, Type bodyType) {
+        while (true) {
+            List<StoredKey> rows = jdbcTemplate.query(SELECT_SQL,
+                    (rs, rowNum) -> new StoredKey(rs.getString(1), rs.getBytes(2), rs.getBoolean(3)), keyHash);
+            if (rows.isEmpty()) {
+                if (jdbcTemplate.update(CLAIM_SQL, keyHash, fingerprint, lease.toMillis()) == 1) {
+                    return Optional.empty();
+                }
+                continue; // claimed by a concurrent request in the meantime
+            }
+            StoredKey stored = rows.getFirst();
+            if (stored.expired()) {
+                // Not purged yet; if two requests race for it, the loser sees the winner's claim
+                if (jdbcTemplate.update(TAKE_OVER_SQL, fingerprint, lease.toMillis(), keyHash) == 1) {
+                    return Optional.empty();
+                }
+                continue;
+            }
+            if (!stored.fingerprint().equals(fingerprint)) {
+                throw new IdempotencyKeyReusedException(
+                        "This Idempotency-Key has already been used with a different request body");
+            }
+            if (stored.snapshot() == null) {
+                throw new IdempotentRequestInProgressException(
+                        "A request with this Idempotency-Key is still being processed. Retry later.");
+            }
+            Replay replay;
+            try {
+                replay = replay(stored.snapshot(), bodyType);
+            } catch (RuntimeException e) {
+                log.warn("Discarding a stored idempotent response that cannot be replayed: {}", e.getMessage());
+                jdbcTemplate.update(DISCARD_SQL, keyHash);
+                continue;
+            }
+            return Optional.of(replay);
+        }
+    }
+
+    /**
+     * Stores the successful response of the request that holds the key, for replay until
+     * {@code idempotency.ttl} has passed. A failure to store it is logged, not thrown: the request
+     * itself has succeeded, and the key expires at the end of its lease.
+     */
+    public void complete(String keyHash, ResponseEntity<?> response) {
+        try {
+            Snapshot snapshot = new Snapshot(response.getStatusCode().value(), response.getHeaders().getETag(),
+                    objectMapper.valueToTree(response.getBody()));
+            byte[] sealed = stringEncryptor.encryptToBytes(objectMapper.writeValueAsString(snapshot));
+            jdbcTemplate.update(COMPLETE_SQL, sealed, ttl.toMillis(), keyHash);
+        } catch (RuntimeException e) {
+            log.error("Failed to store idempotent response: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Releases a key whose request failed, so that a retry executes it again.
+     */
+    public void release(String keyHash) {
+        jdbcTemplate.update(RELEASE_SQL, keyHash);
+    }
+
+    /**
+     * Deletes every key whose lease or replay period has passed.
+     *
+     * @return the number of keys deleted.
+     */
+    public int purgeExpired() {
+        return jdbcTemplate.update(PURGE_SQL);
+    }
+
+    private Replay replay(byte[] sealed, Type bodyType) {
+        Snapshot snapshot = objectMapper.readValue(stringEncryptor.decrypt(sealed), Snapshot.class);
+        JavaType type = objectMapper.getTypeFactory().constructType(bodyType);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(snapshot.status())
+                .header(IdempotencyAspect.REPLAYED_HEADER, "true");
+        if (snapshot.eTag() != null) {
+            response.header(HttpHeaders.ETAG, snapshot.eTag());
+        }
+        Object body = snapshot.body() != null ? objectMapper.treeToValue(snapshot.body(), type) : null;
+        JsonNode id = snapshot.body() != null ? snapshot.body().get("id") : null;
+        return new Replay(response.body(body), id != null && id.isString() ? UUID.fromString(id.asString()) : null);
+    }
+
+    /**
+     * A stored response to send instead of executing a request again.
+     *
+     * @param response   the stored status, {@code ETag} and body, marked as replayed.
+     * @param resourceId the {@code id} of the resource the original request created, or {@code null}
+     *                   if the body has none.
+     */
+    public record Replay(ResponseEntity<Object> response, UUID resourceId) {
+    }
+
+    private record StoredKey(String fingerprint, byte[] snapshot, boolean expired) {
+    }
+
+    /**
+     * The parts of a response that are replayed: status, {@code ETag} and body.
+     */
+    record Snapshot(int status, String eTag, JsonNode body) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.harak.pms.idempotency;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a create endpoint as safe to retry with an {@code Idempotency-Key} request header.
+ *
+ * <p>The first request with a given key is executed and its successful response is stored (see
+ * {@link IdempotencyService}). Retries with the same key and the same body are answered from the
+ * stored response by {@link IdempotencyAspect}, without executing the method again — so a retried
+ * create neither creates a duplicate nor repeats its audit entry. Each replay is audited as
+ * {@link #replayAction()} instead, with the ID of the resource the original request created.
+ * Requests without the header are not affected.
+ *
+ * <p>The annotated method must return a {@link org.springframework.http.ResponseEntity} and take
+ * its input as a {@code @RequestBody} parameter.
+ *
+ * @see IdempotencyAspect
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Idempotent {
+
+    /**
+     * The audit action recorded when a stored response is replayed (e.g. {@code "PATIENT_CREATE_REPLAYED"}).
+     *
+     * @return the action string recorded in the audit log.
+     */
+    String replayAction();
+
+    /**
+     * The type of entity the endpoint creates (e.g. {@code "PATIENT"}), as in {@code @Auditable}.
+     *
+     * @return the entity type string recorded in the audit log.
+     */
+    String entityType();
+}
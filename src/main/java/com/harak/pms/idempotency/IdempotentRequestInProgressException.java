@@ -0,0 +1,17 @@
+package com.harak.pms.idempotency;
+
+/**
+ * Thrown when a request arrives while an earlier request with the same {@code Idempotency-Key}
+ * is still being processed. Mapped to {@code 409 Conflict}; the client should retry later.
+ */
+public class IdempotentRequestInProgressException extends RuntimeException {
+
+    /**
+     * Constructs a new exception with the given detail message.
+     *
+     * @param message the detail message returned to the client.
+     */
+    public IdempotentRequestInProgressException(String message) {
+        super(message);
+    }
+}
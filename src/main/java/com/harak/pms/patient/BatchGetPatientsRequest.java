@@ -0,0 +1,16 @@
+package com.harak.pms.patient;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+import java.util.UUID;
+
+public record BatchGetPatientsRequest(
+
+        @NotEmpty(message = "At least one patient ID is required")
+        @Size(max = 100, message = "At most 100 patient IDs can be requested at once")
+        List<@NotNull(message = "Patient IDs must not be null") UUID> ids
+) {
+}
@@ -1,6 +1,9 @@
 package com.harak.pms.patient;
 
-import com.harak.pms.encryption.PhiEncryptionConverter;
+import com.harak.pms.encryption.PhiRowEntity;
+import com.harak.pms.encryption.PhiRowEnvelopeListener;
+import com.harak.pms.encryption.SealedPhi;
+import com.harak.pms.encryption.SealedPhiConverter;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -14,39 +17,56 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Patient {
+@EntityListeners(PhiRowEnvelopeListener.class)
+public class Patient implements PhiRowEntity {
+
+    private static final String[] PHI_FIELD_NAMES =
+            {"firstName", "lastName", "ssn", "email", "dateOfBirth", "medicalRecordNumber"};
 
     @Id
     @Column(columnDefinition = "UUID")
     private UUID id;
 
-    @Convert(converter = PhiEncryptionConverter.class)
+    @Convert(converter = SealedPhiConverter.class)
     @Column(name = "first_name", nullable = false)
-    private String firstName;
+    private SealedPhi firstName;
 
-    @Convert(converter = PhiEncryptionConverter.class)
+    @Convert(converter = SealedPhiConverter.class)
     @Column(name = "last_name", nullable = false)
-    private String lastName;
+    private SealedPhi lastName;
 
-    @Convert(converter = PhiEncryptionConverter.class)
+    @Convert(converter = SealedPhiConverter.class)
     @Column(nullable = false)
-    private String ssn;
+    private SealedPhi ssn;
 
-    @Convert(converter = PhiEncryptionConverter.class)
-    private String email;
+    @Convert(converter = SealedPhiConverter.class)
+    private SealedPhi email;
 
-    @Convert(converter = PhiEncryptionConverter.class)
+    @Convert(converter = SealedPhiConverter.class)
     @Column(name = "date_of_birth")
-    private String dateOfBirth;
+    private SealedPhi dateOfBirth;
+
+    @Convert(converter = SealedPhiConverter.class)
+    @Column(name = "medical_record_number", nullable = false)
+    private SealedPhi medicalRecordNumber;
+
+    // Keyed HMAC of the MRN (see BlindIndexer) — supports indexed lookups without decryption
+    @Column(name = "mrn_blind_index", length = 64)
+    private String mrnBlindIndex;
 
-    @Convert(converter = PhiEncryptionConverter.class)
-    @Column(name = "medical_record_number", unique = true, nullable = false)
-    private String medicalRecordNumber;
+    // All PHI fields sealed under one per-row data key, when row envelope mode is enabled (see PhiRowEncryptor)
+    @Column(name = "phi_envelope")
+    private byte[] phiEnvelope;
 
     @Builder.Default
     @Column(nullable = false)
     private boolean deleted = false;
 
+    // Incremented by Hibernate on every update; guards against lost updates and serves as the ETag
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private Instant createdAt;
 
@@ -62,5 +82,106 @@ public class Patient {
     protected void onUpdate() {
         updatedAt = Instant.now();
     }
-}
 
+    // PHI accessors — decryption happens here, on first read, not when the entity is loaded
+
+    public String getFirstName() {
+        return SealedPhi.reveal(firstName);
+    }
+
+    public void setFirstName(String firstName) {
+        this.firstName = SealedPhi.of(firstName);
+    }
+
+    public String getLastName() {
+        return SealedPhi.reveal(lastName);
+    }
+
+    public void setLastName(String lastName) {
+        this.lastName = SealedPhi.of(lastName);
+    }
+
+    public String getSsn() {
+        return SealedPhi.reveal(ssn);
+    }
+
+    public void setSsn(String ssn) {
+        this.ssn = SealedPhi.of(ssn);
+    }
+
+    public String getEmail() {
+        return SealedPhi.reveal(email);
+    }
+
+    public void setEmail(String email) {
+        this.email = SealedPhi.of(email);
+    }
+
+    public String getDateOfBirth() {
+        return SealedPhi.reveal(dateOfBirth);
+    }
+
+    public void setDateOfBirth(String dateOfBirth) {
+        this.dateOfBirth = SealedPhi.of(dateOfBirth);
+    }
+
+    public String getMedicalRecordNumber() {
+        return SealedPhi.reveal(medicalRecordNumber);
+    }
+
+    public void setMedicalRecordNumber(String medicalRecordNumber) {
+        this.medicalRecordNumber = SealedPhi.of(medicalRecordNumber);
+    }
+
+    @Override
+    public SealedPhi[] getPhiFields() {
+        return new SealedPhi[]{firstName, lastName, ssn, email, dateOfBirth, medicalRecordNumber};
+    }
+
+    @Override
+    public String[] getPhiFieldNames() {
+        return PHI_FIELD_NAMES.clone();
+    }
+
+    @Override
+    public void setPhiFields(SealedPhi[] fields) {
+        this.firstName = fields[0];
+        this.lastName = fields[1];
+        this.ssn = fields[2];
+        this.email = fields[3];
+        this.dateOfBirth = fields[4];
+        this.medicalRecordNumber = fields[5];
+    }
+
+    public static class PatientBuilder {
+        public PatientBuilder firstName(String firstName) {
+            this.firstName = SealedPhi.of(firstName);
+            return this;
+        }
+
+        public PatientBuilder lastName(String lastName) {
+            this.lastName = SealedPhi.of(lastName);
+            return this;
+        }
+
+        public PatientBuilder ssn(String ssn) {
+            this.ssn = SealedPhi.of(ssn);
+            return this;
+        }
+
+        public PatientBuilder email(String email) {
+            this.email = SealedPhi.of(email);
+            return this;
+        }
+
+        public PatientBuilder dateOfBirth(String dateOfBirth) {
+            this.dateOfBirth = SealedPhi.of(dateOfBirth);
+            return this;
+        }
+
+        public PatientBuilder medicalRecordNumber(String medicalRecordNumber) {
+            this.medicalRecordNumber = SealedPhi.of(medicalRecordNumber);
+            return this;
+        }
+    }
+}
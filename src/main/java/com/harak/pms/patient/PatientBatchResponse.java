@@ -0,0 +1,16 @@
+package com.harak.pms.patient;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Result of a batch patient lookup.
+ *
+ * @param patients the active patients found, in the order their IDs were requested.
+ * @param notFound the requested IDs with no active patient.
+ */
+public record PatientBatchResponse(
+        List<PatientResponse> patients,
+        List<UUID> notFound
+) {
+}
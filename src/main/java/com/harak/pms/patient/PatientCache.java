@@ -0,0 +1,139 @@
+package com.harak.pms.patient;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache of active patients by ID, holding the {@link PatientResponse} (SSN
+ * already masked) rather than the entity, so a cached patient can never be modified or saved.
+ *
+ * <p>A hit skips both the database round trip and the PHI decryptions of a patient read. Entries
+ * expire {@code patient-cache.ttl} after they were loaded and at most
+ * {@code patient-cache.maximum-size} patients are held. Writers evict the patient immediately
+ * and again once their transaction has completed, so a concurrent read of the old row cannot
+ * re-populate the cache with it. The TTL bounds how long other application instances may serve a
+ * patient that was changed elsewhere.
+ *
+ * <p>Disabled by default ({@code patient-cache.enabled}): a cached response holds the patient's
+ * decrypted name, email, date of birth and MRN as {@code String}s, which cannot be zeroized and
+ * stay on the heap (and in any heap dump) until collected — up to {@code maximum-size} patients
+ * at a time. Unlike {@code PhiValueCache}, the residency is bounded by patient count, not bytes.
+ *
+ * <p>Metrics: {@code cache.gets{cache=patients,result=hit|miss}}, {@code cache.evictions},
+ * {@code cache.size} and {@code patient.cache.hit.ratio}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+class PatientCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${patient-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${patient-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${patient-cache.ttl:PT60S}")
+    private Duration ttl;
+
+    private Cache<UUID, PatientResponse> patients;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        patients = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, patients, "patients");
+        Gauge.builder("patient.cache.hit.ratio", patients, cache -> cache.stats().hitRate())
+                .description("Share of patient reads served from the cache since startup")
+                .register(meterRegistry);
+        log.info("Patient cache enabled: up to {} patients for {}", maximumSize, ttl);
+    }
+
+    /**
+     * Returns the cached patient, loading and caching it on a miss. An exception thrown by the
+     * loader (e.g. {@link PatientNotFoundException}) is propagated and nothing is cached.
+     */
+    PatientResponse get(UUID id, Function<UUID, PatientResponse> loader) {
+        return enabled ? patients.get(id, loader) : loader.apply(id);
+    }
+
+    /**
+     * Returns the cached patients among the given IDs, loading all missing ones with a single
+     * call to the loader. IDs the loader does not return are absent from the result.
+     *
+     * <p>Loaded patients are not cached: unlike {@link #get}, a bulk load is not atomic per key, so
+     * a patient invalidated by a concurrent writer while the loader runs could otherwise be cached
+     * in its old state until the TTL expires.
+     */
+    Map<UUID, PatientResponse> getAll(Collection<UUID> ids, Function<Set<UUID>, Map<UUID, PatientResponse>> loader) {
+        if (!enabled) {
+            return loader.apply(new LinkedHashSet<>(ids));
+        }
+        Map<UUID, PatientResponse> found = new HashMap<>(patients.getAllPresent(ids));
+        Set<UUID> missing = new LinkedHashSet<>(ids);
+        missing.removeAll(found.keySet());
+        if (!missing.isEmpty()) {
+            found.putAll(loader.apply(missing));
+        }
+        return found;
+    }
+
+    /**
+     * Returns the cached patient, or {@code null} if it is not cached. Never loads.
+     */
+    PatientResponse getIfPresent(UUID id) {
+        return enabled ? patients.getIfPresent(id) : null;
+    }
+
+    /**
+     * Returns {@code true} if the patient is cached, i.e. was active when it was last loaded.
+     */
+    boolean contains(UUID id) {
+        return enabled && patients.getIfPresent(id) != null;
+    }
+
+    /**
+     * Evicts a patient that is being updated or deleted, now and after the current transaction.
+     */
+    void invalidate(UUID id) {
+        if (!enabled) {
+            return;
+        }
+        patients.invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    patients.invalidate(id);
+                }
+            });
+        }
+    }
+}
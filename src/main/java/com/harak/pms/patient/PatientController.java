@@ -1,17 +1,30 @@
 package com.harak.pms.patient;
 
 import com.harak.pms.audit.Auditable;
+import com.harak.pms.common.EntityTags;
+import com.harak.pms.common.SliceResponse;
+import com.harak.pms.common.TotalMode;
+import com.harak.pms.encryption.PhiBatchDecryptor;
+import com.harak.pms.idempotency.Idempotent;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -27,6 +40,9 @@ import java.util.UUID;
 public class PatientController {
 
     private final PatientService patientService;
+    private final PatientImportService patientImportService;
+    private final PatientExportService patientExportService;
+    private final PhiBatchDecryptor phiBatchDecryptor;
 
     /**
      * Creates a new patient record with encrypted PHI fields.
@@ -34,19 +50,52 @@ public class PatientController {
      * <p>The medical record number is checked for uniqueness. The creation event
      * is recorded in the audit trail automatically via {@link Auditable}.
      *
+     * <p>A retry with the same {@code Idempotency-Key} header is answered with the stored
+     * response instead of creating a duplicate (see {@link Idempotent}).
+     *
      * @param request the validated patient creation request containing PHI fields.
      * @return the created patient with masked SSN, wrapped in a {@code 201 Created} response.
      * @throws IllegalArgumentException if a patient with the given MRN already exists.
      */
     @PostMapping
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Idempotent(replayAction = "PATIENT_CREATE_REPLAYED", entityType = "PATIENT")
     @Auditable(action = "PATIENT_CREATED", entityType = "PATIENT",
             detailExpression = "'Created patient with MRN: ' + #request.medicalRecordNumber()")
     public ResponseEntity<PatientResponse> createPatient(
             @Valid @RequestBody CreatePatientRequest request) {
 
         Patient patient = patientService.createPatient(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(PatientResponse.from(patient));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .eTag(EntityTags.of(patient.getVersion()))
+                .body(PatientResponse.from(patient));
+    }
+
+    /**
+     * Creates patients in bulk from an NDJSON ({@code application/x-ndjson}) or CSV
+     * ({@code text/csv}, with a header row of field names) request body.
+     *
+     * <p>The body is streamed: rows are validated like {@link #createPatient} requests, encrypted
+     * in parallel and inserted in batches, so imports of any size run in constant memory. Invalid
+     * rows and rows with an MRN that already exists are skipped and listed in the report by line.
+     * Each committed batch is audited as one {@code PATIENTS_IMPORTED} entry with the created IDs;
+     * the import as a whole is audited via {@link Auditable}.
+     *
+     * @param contentType the format of the body.
+     * @param request     the HTTP request, whose body holds the rows.
+     * @return the import report, wrapped in a {@code 200 OK} response.
+     * @throws IllegalArgumentException if the CSV header names an unknown field.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"})
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Auditable(action = "PATIENT_IMPORT", entityType = "PATIENT",
+            detailExpression = "'Imported patients — rows: ' + #result.body.rows() + ', imported: '"
+                    + " + #result.body.imported() + ', rejected: ' + #result.body.rejected()")
+    public ResponseEntity<PatientImportReport> importPatients(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            HttpServletRequest request) throws IOException {
+
+        return ResponseEntity.ok(patientImportService.importPatients(request.getInputStream(), contentType));
     }
 
     /**
@@ -56,53 +105,220 @@ public class PatientController {
      * Access is restricted to ADMIN, DOCTOR, and NURSE roles.
      * The access event is recorded in the audit trail automatically via {@link Auditable}.
      *
-     * @param id the UUID of the patient to retrieve.
-     * @return the patient data with masked SSN, wrapped in a {@code 200 OK} response.
+     * <p>The response carries the patient version as a strong {@code ETag}. A poll with a current
+     * {@code If-None-Match} is answered with {@code 304 Not Modified} after checking the version
+     * alone — with a version-only query, never from the patient cache — without decrypting anything.
+     *
+     * <p>With {@code fields}, only the selected fields are returned (plus {@code id} and
+     * {@code version}); on a cache miss only their PHI columns are read and decrypted.
+     *
+     * @param id          the UUID of the patient to retrieve.
+     * @param fields      optional comma-separated response fields to return, e.g. {@code firstName,lastName}.
+     * @param ifNoneMatch the {@code ETag}s of the copies the client already holds, if any.
+     * @return the patient data with masked SSN, wrapped in a {@code 200 OK} response, or
+     *         {@code 304 Not Modified} without a body.
      * @throws PatientNotFoundException if no active patient exists with the given ID.
+     * @throws IllegalArgumentException if {@code fields} names an unknown field.
      */
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
-    @Auditable(action = "PATIENT_VIEWED", entityType = "PATIENT", detail = "Viewed patient record")
-    public ResponseEntity<PatientResponse> getPatientById(@PathVariable UUID id) {
+    @Auditable(action = "PATIENT_VIEWED", entityType = "PATIENT",
+            detailExpression = "(#result.statusCode.value() == 304 ? 'Patient record not modified' : 'Viewed patient record')"
+                    + " + (#fields != null ? ' — fields: ' + @patientService.getSelectedFieldNames(#fields) : '')")
+    public ResponseEntity<PatientResponse> getPatientById(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        PatientFields selected = PatientFields.parse(fields);
+
+        if (ifNoneMatch != null) {
+            long version = patientService.getPatientVersion(id);
+            if (EntityTags.matches(ifNoneMatch, version)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(EntityTags.of(version)).build();
+            }
+        }
+        PatientResponse patient = patientService.getPatientResponse(id, selected);
+        return ResponseEntity.ok().eTag(EntityTags.of(patient.version())).body(patient);
+    }
+
+    /**
+     * Retrieves up to 100 patients by ID in one request, e.g. for a ward dashboard.
+     *
+     * <p>Patients not in the patient cache are read with a single query and decrypted in one
+     * batch. Unknown or soft-deleted IDs are listed in {@code notFound} rather than failing the
+     * request. One audit entry lists the IDs of all patients disclosed, instead of one entry per
+     * patient.
+     *
+     * @param request the validated list of patient IDs.
+     * @return the patients found, in request order, wrapped in a {@code 200 OK} response.
+     */
+    @PostMapping("/batch-get")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Auditable(action = "PATIENT_BATCH_VIEWED", entityType = "PATIENT",
+            detailExpression = "'Viewed patients: ' + T(String).join(', ', #result.body.patients().![id().toString()])")
+    public ResponseEntity<PatientBatchResponse> getPatientsByIds(
+            @Valid @RequestBody BatchGetPatientsRequest request) {
 
-        Patient patient = patientService.getPatientById(id);
-        return ResponseEntity.ok(PatientResponse.from(patient));
+        return ResponseEntity.ok(patientService.getPatientResponses(request.ids()));
     }
 
     /**
      * Retrieves a paginated list of all active patients.
      *
      * <p>Supports configurable pagination and sorting. Page size is clamped
-     * to a maximum of 100 to prevent excessive data retrieval.
+     * to a maximum of 100 to prevent excessive data retrieval. The PHI of the
+     * page is decrypted in one batch, in parallel for full pages. Only the unencrypted,
+     * indexed columns {@code createdAt} and {@code id} can be sorted on — the PHI columns
+     * hold ciphertext, whose order is meaningless. Deep pages get slower with the offset and
+     * every page pays for a total count; use {@code total=none|approximate} (below) to skip the
+     * count, or the cursor mode to page through the full list.
+     *
+     * <p>List screens that show a few columns should pass {@code fields} (e.g.
+     * {@code fields=firstName,lastName,medicalRecordNumber}): only those PHI columns are then
+     * selected and decrypted, and the other fields are left out of the response.
      *
      * @param page      the zero-based page index (default 0).
      * @param size      the page size (default 20, max 100).
-     * @param sortBy    the field to sort by (default {@code createdAt}).
+     * @param sortBy    the field to sort by: {@code createdAt} (default) or {@code id}.
      * @param direction the sort direction: {@code asc} or {@code desc} (default {@code desc}).
+     * @param fields    optional comma-separated response fields to return; {@code id} and {@code version} are always included.
      * @return a page of patients with masked SSNs, wrapped in a {@code 200 OK} response.
+     * @throws IllegalArgumentException if {@code sortBy} is not a sortable field or {@code fields} names an unknown field.
      */
     @GetMapping
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
     @Auditable(action = "PATIENT_LIST_VIEWED", entityType = "PATIENT",
-            detailExpression = "'Listed patients — page: ' + #page + ', size: ' + T(Math).min(#size, 100)")
+            detailExpression = "'Listed patients — page: ' + #page + ', size: ' + T(Math).min(#size, 100)"
+                    + " + (#fields != null ? ', fields: ' + @patientService.getSelectedFieldNames(#fields) : '')")
     public ResponseEntity<Page<PatientResponse>> getAllPatients(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String direction) {
+            @RequestParam(defaultValue = "desc") String direction,
+            @RequestParam(required = false) String fields) {
 
+        PatientFields selected = PatientFields.parse(fields);
         int clampedSize = Math.min(size, 100);
-        Sort sort = direction.equalsIgnoreCase("asc")
-                ? Sort.by(sortBy).ascending()
-                : Sort.by(sortBy).descending();
-        Pageable pageable = PageRequest.of(page, clampedSize, sort);
+        Pageable pageable = PageRequest.of(page, clampedSize, sort(sortBy, parseDirection(direction)));
 
-        Page<Patient> patients = patientService.getAllPatients(pageable);
-        Page<PatientResponse> responsePage = patients.map(PatientResponse::from);
+        Page<Patient> patients = patientService.getAllPatients(pageable, selected);
+        phiBatchDecryptor.revealAll(patients.getContent());
+        Page<PatientResponse> responsePage = patients.map(patient -> selected.apply(PatientResponse.from(patient)));
 
         return ResponseEntity.ok(responsePage);
     }
 
+    /**
+     * Retrieves a page of active patients without an exact total, for clients that do not show one.
+     *
+     * <p>Selected with {@code total=none} or {@code total=approximate}; paging and sorting are the
+     * same as in {@link #getAllPatients}. No {@code COUNT} query is run: one extra row is read to
+     * set {@code hasNext}. With {@code total=approximate}, {@code approximateTotal} is served from
+     * an incrementally maintained counter.
+     *
+     * @param total     {@code none} or {@code approximate}.
+     * @param page      the zero-based page index (default 0).
+     * @param size      the page size (default 20, max 100).
+     * @param sortBy    the field to sort by: {@code createdAt} (default) or {@code id}.
+     * @param direction the sort direction: {@code asc} or {@code desc} (default {@code desc}).
+     * @param fields    optional comma-separated response fields to return, as in {@link #getAllPatients}.
+     * @return a slice of patients with masked SSNs, wrapped in a {@code 200 OK} response.
+     * @throws IllegalArgumentException if {@code total}, {@code sortBy} or {@code fields} is invalid.
+     */
+    @GetMapping(params = {"total", "total!=exact", "!cursor"})
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Auditable(action = "PATIENT_LIST_VIEWED", entityType = "PATIENT",
+            detailExpression = "'Listed patients — page: ' + #page + ', size: ' + T(Math).min(#size, 100)"
+                    + " + (#fields != null ? ', fields: ' + @patientService.getSelectedFieldNames(#fields) : '')")
+    public ResponseEntity<SliceResponse<PatientResponse>> getPatientSlice(
+            @RequestParam String total,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String direction,
+            @RequestParam(required = false) String fields) {
+
+        PatientFields selected = PatientFields.parse(fields);
+        boolean approximate = TotalMode.parse(total) == TotalMode.APPROXIMATE;
+        int clampedSize = Math.min(size, 100);
+        Pageable pageable = PageRequest.of(page, clampedSize, sort(sortBy, parseDirection(direction)));
+
+        Slice<Patient> patients = patientService.getPatientSlice(pageable, selected);
+        phiBatchDecryptor.revealAll(patients.getContent());
+
+        return ResponseEntity.ok(SliceResponse.from(patients, patient -> selected.apply(PatientResponse.from(patient)),
+                approximate ? patientService.getApproximatePatientCount() : null));
+    }
+
+    /**
+     * Retrieves active patients with keyset (cursor) pagination, ordered by creation time.
+     *
+     * <p>Selected by the presence of the {@code cursor} parameter: pass an empty {@code cursor}
+     * for the first page and the returned {@code nextCursor} for each following page. Each page
+     * is a range scan of the {@code (created_at, id)} index starting after the previous page, so
+     * latency is the same at any depth, and no total count is computed. The direction is fixed by
+     * the first request and carried in the cursor.
+     *
+     * @param cursor    the opaque token from the previous page, or empty for the first page.
+     * @param size      the page size (default 20, max 100).
+     * @param direction the sort direction of the first page: {@code asc} or {@code desc} (default {@code desc}).
+     * @param fields    optional comma-separated response fields to return, as in {@link #getAllPatients}.
+     * @return a page of patients with masked SSNs, wrapped in a {@code 200 OK} response.
+     * @throws IllegalArgumentException if the cursor is malformed or {@code fields} names an unknown field.
+     */
+    @GetMapping(params = "cursor")
+    @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
+    @Auditable(action = "PATIENT_LIST_VIEWED", entityType = "PATIENT",
+            detailExpression = "'Listed patients — cursor page, size: ' + T(Math).min(#size, 100)"
+                    + " + (#fields != null ? ', fields: ' + @patientService.getSelectedFieldNames(#fields) : '')")
+    public ResponseEntity<PatientCursorPage> getPatientsByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "desc") String direction,
+            @RequestParam(required = false) String fields) {
+
+        PatientFields selected = PatientFields.parse(fields);
+        int clampedSize = Math.max(1, Math.min(size, 100));
+        PatientCursor position = cursor.isEmpty()
+                ? PatientCursor.start(parseDirection(direction))
+                : PatientCursor.decode(cursor);
+
+        // One extra row tells whether another page follows, without a count query
+        List<Patient> patients = patientService.getPatientsAfter(position, clampedSize + 1, selected);
+        boolean hasNext = patients.size() > clampedSize;
+        List<Patient> content = hasNext ? patients.subList(0, clampedSize) : patients;
+        phiBatchDecryptor.revealAll(content);
+
+        return ResponseEntity.ok(new PatientCursorPage(
+                content.stream().map(patient -> selected.apply(PatientResponse.from(patient))).toList(),
+                clampedSize,
+                hasNext,
+                hasNext ? position.after(content.getLast()).encode() : null));
+    }
+
+    /**
+     * Exports all active patients as NDJSON, one patient per line, for full extracts. Restricted
+     * to ADMIN role only.
+     *
+     * <p>The body is written directly to the response as patients are read and decrypted, in
+     * constant memory whatever the number of patients, and with no count or offset queries. SSNs
+     * are masked as in every other response. The export is audited by {@link PatientExportService}
+     * once it has finished, with the number of patients written.
+     *
+     * @param response the HTTP response the patients are written to.
+     * @throws IOException if the client disconnects before the export is complete.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public void exportPatients(HttpServletResponse response) throws IOException {
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("patients.ndjson").build().toString());
+        patientExportService.exportPatients(response.getOutputStream());
+    }
+
     /**
      * Retrieves a patient record by medical record number.
      *
@@ -116,7 +332,7 @@ public class PatientController {
     public ResponseEntity<PatientResponse> getPatientByMrn(@PathVariable String mrn) {
 
         Patient patient = patientService.getPatientByMedicalRecordNumber(mrn);
-        return ResponseEntity.ok(PatientResponse.from(patient));
+        return ResponseEntity.ok().eTag(EntityTags.of(patient.getVersion())).body(PatientResponse.from(patient));
     }
 
     /**
@@ -125,10 +341,16 @@ public class PatientController {
      * <p>Only fields present in the request body are applied. The list of updated
      * field names (not values) is recorded in the audit trail to avoid logging PHI.
      *
+     * <p>Send the {@code ETag} of the copy being edited as {@code If-Match} to make the update
+     * conditional: it is refused with {@code 412 Precondition Failed} if the patient has changed
+     * since. An update that loses a race with a concurrent one is refused with {@code 409 Conflict}.
+     *
      * @param id      the UUID of the patient to update.
+     * @param ifMatch the {@code ETag}s of the versions the update may apply to, if any.
      * @param request the validated update request containing fields to change.
-     * @return the updated patient with masked SSN, wrapped in a {@code 200 OK} response.
+     * @return the updated patient with masked SSN and its new {@code ETag}, wrapped in a {@code 200 OK} response.
      * @throws PatientNotFoundException if no active patient exists with the given ID.
+     * @throws com.harak.pms.common.VersionMismatchException if the patient does not match {@code If-Match}.
      */
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN', 'ROLE_DOCTOR', 'ROLE_NURSE')")
@@ -136,10 +358,11 @@ public class PatientController {
             detailExpression = "'Updated fields: ' + @patientService.getUpdatedFieldNames(#request)")
     public ResponseEntity<PatientResponse> updatePatient(
             @PathVariable UUID id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody UpdatePatientRequest request) {
 
-        Patient patient = patientService.updatePatient(id, request);
-        return ResponseEntity.ok(PatientResponse.from(patient));
+        Patient patient = patientService.updatePatient(id, request, EntityTags.acceptedVersions(ifMatch));
+        return ResponseEntity.ok().eTag(EntityTags.of(patient.getVersion())).body(PatientResponse.from(patient));
     }
 
     /**
@@ -160,4 +383,17 @@ public class PatientController {
         patientService.deletePatient(id);
         return ResponseEntity.noContent().build();
     }
+
+    private static Sort.Direction parseDirection(String direction) {
+        return direction.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+    }
+
+    // Sorting is limited to unencrypted, indexed columns; id breaks ties so pages never overlap
+    private static Sort sort(String sortBy, Sort.Direction direction) {
+        return switch (sortBy) {
+            case "createdAt" -> Sort.by(direction, "createdAt", "id");
+            case "id" -> Sort.by(direction, "id");
+            default -> throw new IllegalArgumentException("Patients can only be sorted by createdAt or id");
+        };
+    }
 }
@@ -0,0 +1,74 @@
+package com.harak.pms.patient;
+
+import org.springframework.data.domain.Sort;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in the keyset-paginated patient listing: the {@code (createdAt, id)} of the last
+ * patient returned, and the listing direction. Serialized as an opaque URL-safe token; clients
+ * must not construct or interpret tokens. A token carries no PHI and grants nothing — it only
+ * selects where the next page starts.
+ *
+ * @param createdAt the creation time of the last patient returned, or {@code null} for the first page.
+ * @param id        the ID of the last patient returned, or {@code null} for the first page.
+ * @param direction the listing direction.
+ */
+record PatientCursor(Instant createdAt, UUID id, Sort.Direction direction) {
+
+    private static final byte VERSION = 1;
+    private static final int LENGTH = 2 + Long.BYTES + Integer.BYTES + 2 * Long.BYTES;
+
+    /**
+     * Returns the cursor of the first page in the given direction.
+     */
+    static PatientCursor start(Sort.Direction direction) {
+        return new PatientCursor(null, null, direction);
+    }
+
+    /**
+     * Returns the cursor of the page that follows {@code last}.
+     */
+    PatientCursor after(Patient last) {
+        return new PatientCursor(last.getCreatedAt(), last.getId(), direction);
+    }
+
+    boolean isStart() {
+        return id == null;
+    }
+
+    String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH)
+                .put(VERSION)
+                .put((byte) (direction.isAscending() ? 1 : 0))
+                .putLong(createdAt.getEpochSecond())
+                .putInt(createdAt.getNano())
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decodes a token produced by {@link #encode()}.
+     *
+     * @throws IllegalArgumentException if the token is malformed.
+     */
+    static PatientCursor decode(String token) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(token));
+            if (buffer.remaining() != LENGTH || buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            Sort.Direction direction = buffer.get() == 1 ? Sort.Direction.ASC : Sort.Direction.DESC;
+            Instant createdAt = Instant.ofEpochSecond(buffer.getLong(), buffer.getInt());
+            return new PatientCursor(createdAt, new UUID(buffer.getLong(), buffer.getLong()), direction);
+        } catch (BufferUnderflowException | DateTimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.harak.pms.patient;
+
+import java.util.List;
+
+/**
+ * One page of the keyset-paginated patient listing ({@code GET /api/patients?cursor=...}).
+ *
+ * <p>Unlike {@link org.springframework.data.domain.Page}, there are no page numbers and no total
+ * count: each page is an indexed range scan that starts where the previous one ended, so every
+ * page costs the same regardless of how deep it is.
+ *
+ * @param content    the patients of this page, with masked SSNs.
+ * @param size       the requested page size.
+ * @param hasNext    whether more patients follow this page.
+ * @param nextCursor the token to pass as {@code cursor} to fetch the next page, or {@code null} on the last page.
+ */
+public record PatientCursorPage(
+        List<PatientResponse> content,
+        int size,
+        boolean hasNext,
+        String nextCursor
+) {
+}
@@ -0,0 +1,25 @@
+package com.harak.pms.patient;
+
+import com.harak.pms.encryption.PhiTable;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Registers the encrypted PHI columns of the {@code patients} table with the encryption module.
+ */
+@Configuration
+public class PatientEncryptionConfig {
+
+    /**
+     * Declares the PHI columns of {@code patients} for bulk encryption maintenance jobs.
+     *
+     * @return the {@link PhiTable} descriptor for patients.
+     */
+    @Bean
+    public PhiTable patientPhiTable() {
+        return new PhiTable("patients", List.of(
+                "first_name", "last_name", "ssn", "email", "date_of_birth", "medical_record_number", "phi_envelope"), true);
+    }
+}
@@ -0,0 +1,155 @@
+package com.harak.pms.patient;
+
+import com.harak.pms.audit.AuditContext;
+import com.harak.pms.audit.AuditService;
+import com.harak.pms.encryption.PhiBatchDecryptor;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Streams every active patient as NDJSON, one {@link PatientResponse} per line, for full extracts
+ * (e.g. a nightly data warehouse load).
+ *
+ * <p>Patients are read through a forward-only, read-only cursor that fetches
+ * {@code patient-export.batch-size} rows per round trip, and the persistence context is cleared
+ * after every batch, so memory use is the same for 10 thousand or 10 million patients. Reading
+ * and decryption are pipelined: while {@link PhiBatchDecryptor} decrypts one batch and maps it to
+ * DTOs on a separate thread, the next batch is fetched; at most two batches are in memory. Lines
+ * are written to the output as soon as their batch is decrypted.
+ *
+ * <p>The export holds one pooled connection for its whole duration. Since the response is still
+ * being written after the controller has returned, the export is audited here rather than via
+ * {@code @Auditable}: one {@code PATIENTS_EXPORTED} entry with the number of patients written,
+ * recorded even if the export fails or the client disconnects part-way.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PatientExportService {
+
+    private static final String QUERY = "SELECT p FROM Patient p WHERE p.deleted = false";
+
+    private final EntityManager entityManager;
+    private final PlatformTransactionManager transactionManager;
+    private final PhiBatchDecryptor phiBatchDecryptor;
+    private final ObjectMapper objectMapper;
+    private final AuditService auditService;
+
+    @Value("${patient-export.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Writes all active patients to the given output as NDJSON.
+     *
+     * @param output the response body; flushed after every batch, not closed.
+     * @return the number of patients written.
+     * @throws IOException if writing to the output fails, e.g. because the client disconnected.
+     */
+    public long exportPatients(OutputStream output) throws IOException {
+        String performedBy = AuditContext.getCurrentUsername();
+        String ipAddress = AuditContext.getCurrentHttpRequest().map(AuditContext::getClientIp).orElse("unknown");
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        long[] exported = {0};
+        try {
+            readOnly.executeWithoutResult(status -> {
+                try {
+                    stream(new BufferedOutputStream(output, 64 * 1024), exported);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            audit(performedBy, ipAddress, "Patient export aborted after " + exported[0] + " patients: "
+                    + e.getCause().getClass().getSimpleName());
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            audit(performedBy, ipAddress, "Patient export aborted after " + exported[0] + " patients: "
+                    + e.getClass().getSimpleName());
+            throw e;
+        }
+        audit(performedBy, ipAddress, "Exported " + exported[0] + " active patients (NDJSON)");
+        log.info("Patient export finished — {} patients", exported[0]);
+        return exported[0];
+    }
+
+    // Fetches batch n+1 from the cursor while batch n is decrypted, then writes batch n
+    private void stream(OutputStream output, long[] written) throws IOException {
+        try (Stream<Patient> patients = entityManager.createQuery(QUERY, Patient.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, batchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+             ExecutorService decryption = Executors.newSingleThreadExecutor(
+                     Thread.ofPlatform().name("patient-export-decrypt").daemon().factory())) {
+
+            Iterator<Patient> cursor = patients.iterator();
+            CompletableFuture<List<PatientResponse>> pending = null;
+            do {
+                List<Patient> batch = new ArrayList<>(batchSize);
+                while (batch.size() < batchSize && cursor.hasNext()) {
+                    batch.add(cursor.next());
+                }
+                // The loaded entities are referenced only by the batch from here on
+                entityManager.clear();
+                if (pending != null) {
+                    written[0] += write(await(pending), output);
+                }
+                pending = batch.isEmpty() ? null : CompletableFuture.supplyAsync(() -> decrypt(batch), decryption);
+            } while (pending != null);
+        }
+    }
+
+    private List<PatientResponse> decrypt(List<Patient> batch) {
+        phiBatchDecryptor.revealAll(batch);
+        return batch.stream().map(PatientResponse::from).toList();
+    }
+
+    private int write(List<PatientResponse> responses, OutputStream output) throws IOException {
+        for (PatientResponse response : responses) {
+            output.write(objectMapper.writeValueAsBytes(response));
+            output.write('\n');
+        }
+        output.flush();
+        return responses.size();
+    }
+
+    private static List<PatientResponse> await(CompletableFuture<List<PatientResponse>> batch) {
+        try {
+            return batch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Patient export decryption failed", e.getCause());
+        }
+    }
+
+    private void audit(String performedBy, String ipAddress, String detail) {
+        try {
+            auditService.logEvent("PATIENTS_EXPORTED", "PATIENT", null, performedBy, ipAddress, detail);
+        } catch (RuntimeException e) {
+            log.error("Failed to record audit event for action=PATIENTS_EXPORTED: {}", e.getMessage(), e);
+        }
+    }
+}
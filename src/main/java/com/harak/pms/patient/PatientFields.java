@@ -0,0 +1,134 @@
+package com.harak.pms.patient;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The {@link PatientResponse} fields a client selected with the {@code fields} request parameter
+ * (a sparse fieldset), e.g. {@code fields=firstName,lastName,medicalRecordNumber} for a list screen.
+ *
+ * <p>Only the PHI columns behind the selected fields are read and decrypted (see
+ * {@link PatientProjections}); the other fields are left out of the response. {@code id} and
+ * {@code version} are always included.
+ *
+ * @param selected the selected fields.
+ */
+record PatientFields(Set<Field> selected) {
+
+    /**
+     * Every field — the response of a request without {@code fields}.
+     */
+    static final PatientFields ALL = new PatientFields(EnumSet.allOf(Field.class));
+
+    /**
+     * A selectable field: its name in {@link PatientResponse} and, for PHI, the {@link Patient}
+     * attribute it is read from and that attribute's index in {@link Patient#getPhiFields()}.
+     */
+    enum Field {
+        ID("id", null, -1),
+        FIRST_NAME("firstName", "firstName", 0),
+        LAST_NAME("lastName", "lastName", 1),
+        MASKED_SSN("maskedSsn", "ssn", 2),
+        EMAIL("email", "email", 3),
+        DATE_OF_BIRTH("dateOfBirth", "dateOfBirth", 4),
+        MEDICAL_RECORD_NUMBER("medicalRecordNumber", "medicalRecordNumber", 5),
+        CREATED_AT("createdAt", null, -1),
+        UPDATED_AT("updatedAt", null, -1),
+        VERSION("version", null, -1);
+
+        private final String responseName;
+        private final String phiAttribute;
+        private final int phiIndex;
+
+        Field(String responseName, String phiAttribute, int phiIndex) {
+            this.responseName = responseName;
+            this.phiAttribute = phiAttribute;
+            this.phiIndex = phiIndex;
+        }
+
+        String phiAttribute() {
+            return phiAttribute;
+        }
+
+        int phiIndex() {
+            return phiIndex;
+        }
+
+        boolean isPhi() {
+            return phiAttribute != null;
+        }
+    }
+
+    /**
+     * Parses a comma-separated list of {@link PatientResponse} field names.
+     *
+     * @param fields the {@code fields} request parameter, or {@code null} for all fields.
+     * @throws IllegalArgumentException if a name is not a field of {@link PatientResponse}.
+     */
+    static PatientFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<Field> selected = EnumSet.of(Field.ID, Field.VERSION);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            selected.add(Arrays.stream(Field.values())
+                    .filter(field -> field.responseName.equals(trimmed))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown patient field '" + trimmed
+                            + "'. Selectable fields: " + Arrays.stream(Field.values())
+                            .map(field -> field.responseName).collect(Collectors.joining(", ")))));
+        }
+        return selected.size() == Field.values().length ? ALL : new PatientFields(selected);
+    }
+
+    /**
+     * Returns the names of the selected fields, comma-separated in {@link PatientResponse} order.
+     */
+    String names() {
+        return selected.stream().map(field -> field.responseName).collect(Collectors.joining(","));
+    }
+
+    boolean isAll() {
+        return selected.size() == Field.values().length;
+    }
+
+    boolean includes(Field field) {
+        return selected.contains(field);
+    }
+
+    /**
+     * Returns the selected PHI fields, in {@link Patient#getPhiFields()} order.
+     */
+    List<Field> phi() {
+        return selected.stream().filter(Field::isPhi).toList();
+    }
+
+    /**
+     * Returns the response with every field that was not selected set to {@code null}, which
+     * leaves it out of the JSON. Returns the response itself when all fields are selected.
+     */
+    PatientResponse apply(PatientResponse response) {
+        if (isAll()) {
+            return response;
+        }
+        return new PatientResponse(
+                response.id(),
+                includes(Field.FIRST_NAME) ? response.firstName() : null,
+                includes(Field.LAST_NAME) ? response.lastName() : null,
+                includes(Field.MASKED_SSN) ? response.maskedSsn() : null,
+                includes(Field.EMAIL) ? response.email() : null,
+                includes(Field.DATE_OF_BIRTH) ? response.dateOfBirth() : null,
+                includes(Field.MEDICAL_RECORD_NUMBER) ? response.medicalRecordNumber() : null,
+                includes(Field.CREATED_AT) ? response.createdAt() : null,
+                includes(Field.UPDATED_AT) ? response.updatedAt() : null,
+                response.version()
+        );
+    }
+}
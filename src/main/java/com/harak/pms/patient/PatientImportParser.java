@@ -0,0 +1,287 @@
+package com.harak.pms.patient;
+
+import org.springframework.http.MediaType;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the rows of a bulk patient import one at a time, straight from the request body.
+ *
+ * <p>Two formats are accepted: NDJSON ({@code application/x-ndjson}), one
+ * {@link CreatePatientRequest} JSON object per line, and CSV ({@code text/csv}, RFC 4180), whose
+ * header row names the {@link CreatePatientRequest} fields to expect in each column; empty CSV
+ * values are read as absent. Only the current row is held in memory, and a row longer than
+ * {@code maxRowLength} characters is skipped rather than buffered. A row that cannot be parsed is
+ * returned with an error instead of a request; its content is never echoed back, as it may hold PHI.
+ */
+abstract class PatientImportParser {
+
+    static final MediaType CSV = new MediaType("text", "csv");
+
+    private static final int EOF = -1;
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final int maxRowLength;
+    private final char[] chars = new char[8192];
+    private int position;
+    private int limit;
+    private int pushedBack = NONE;
+    private boolean started;
+    private long line = 1;
+
+    private PatientImportParser(InputStream body, int maxRowLength) {
+        this.reader = new InputStreamReader(body, StandardCharsets.UTF_8);
+        this.maxRowLength = maxRowLength;
+    }
+
+    /**
+     * Opens a parser for the given body.
+     *
+     * @throws IllegalArgumentException if the media type is not supported.
+     */
+    static PatientImportParser open(MediaType contentType, InputStream body, ObjectMapper objectMapper,
+                                    int maxRowLength) {
+        if (MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)) {
+            return new NdjsonParser(body, objectMapper, maxRowLength);
+        }
+        if (CSV.isCompatibleWith(contentType)) {
+            return new CsvParser(body, maxRowLength);
+        }
+        throw new IllegalArgumentException("Patient imports must be sent as application/x-ndjson or text/csv");
+    }
+
+    /**
+     * Reads the next non-blank row.
+     *
+     * @return the row, or {@code null} at the end of the body.
+     * @throws IllegalArgumentException if the body is not in the expected format at all (e.g. a bad CSV header).
+     */
+    abstract Row next() throws IOException;
+
+    int maxRowLength() {
+        return maxRowLength;
+    }
+
+    // Physical line of the next character, for error reporting
+    long line() {
+        return line;
+    }
+
+    int read() throws IOException {
+        if (pushedBack != NONE) {
+            int c = pushedBack;
+            pushedBack = NONE;
+            return c;
+        }
+        if (position == limit) {
+            limit = reader.read(chars);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return EOF;
+            }
+        }
+        char c = chars[position++];
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') {
+                return read();
+            }
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    void unread(int c) {
+        pushedBack = c;
+    }
+
+    /**
+     * One row of the import: its starting line and either the parsed request or a parse error.
+     */
+    record Row(long line, CreatePatientRequest request, String error) {
+
+        static Row rejected(long line, String error) {
+            return new Row(line, null, error);
+        }
+    }
+
+    private static final class NdjsonParser extends PatientImportParser {
+
+        private final ObjectMapper objectMapper;
+        private final StringBuilder text = new StringBuilder();
+
+        NdjsonParser(InputStream body, ObjectMapper objectMapper, int maxRowLength) {
+            super(body, maxRowLength);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        Row next() throws IOException {
+            while (true) {
+                long start = line();
+                text.setLength(0);
+                boolean overflow = false;
+                int c;
+                while ((c = read()) != EOF && c != '\n') {
+                    if (text.length() < maxRowLength()) {
+                        text.append((char) c);
+                    } else {
+                        overflow = true;
+                    }
+                }
+                if (overflow) {
+                    return Row.rejected(start, "Row exceeds " + maxRowLength() + " characters");
+                }
+                if (!text.isEmpty() && !text.toString().isBlank()) {
+                    return parse(start);
+                }
+                if (c == EOF) {
+                    return null;
+                }
+            }
+        }
+
+        private Row parse(long start) {
+            try {
+                CreatePatientRequest request = objectMapper.readValue(text.toString(), CreatePatientRequest.class);
+                return request == null ? Row.rejected(start, "Malformed JSON") : new Row(start, request, null);
+            } catch (JacksonException e) {
+                return Row.rejected(start, "Malformed JSON");
+            }
+        }
+    }
+
+    private static final class CsvParser extends PatientImportParser {
+
+        private static final List<String> FIELDS = List.of(
+                "firstName", "lastName", "ssn", "email", "dateOfBirth", "medicalRecordNumber");
+
+        private final List<String> values = new ArrayList<>();
+        private final StringBuilder value = new StringBuilder();
+        private Map<String, Integer> columns;
+        private int length;
+        private boolean overflow;
+
+        CsvParser(InputStream body, int maxRowLength) {
+            super(body, maxRowLength);
+        }
+
+        @Override
+        Row next() throws IOException {
+            if (columns == null && !readHeader()) {
+                return null;
+            }
+            while (true) {
+                long start = line();
+                if (!readRecord()) {
+                    return null;
+                }
+                if (overflow) {
+                    return Row.rejected(start, "Row exceeds " + maxRowLength() + " characters");
+                }
+                if (values.size() == 1 && values.getFirst().isEmpty()) {
+                    continue;
+                }
+                if (values.size() != columns.size()) {
+                    return Row.rejected(start, "Row has " + values.size() + " columns, expected " + columns.size());
+                }
+                return new Row(start, new CreatePatientRequest(
+                        value("firstName"), value("lastName"), value("ssn"), value("email"),
+                        value("dateOfBirth"), value("medicalRecordNumber")), null);
+            }
+        }
+
+        private boolean readHeader() throws IOException {
+            if (!readRecord()) {
+                return false;
+            }
+            if (overflow) {
+                throw new IllegalArgumentException("CSV header exceeds " + maxRowLength() + " characters");
+            }
+            columns = new HashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                String name = values.get(i).strip();
+                if (!FIELDS.contains(name)) {
+                    throw new IllegalArgumentException("Unknown CSV column: '" + name + "' (expected " + FIELDS + ")");
+                }
+                if (columns.putIfAbsent(name, i) != null) {
+                    throw new IllegalArgumentException("Duplicate CSV column: '" + name + "'");
+                }
+            }
+            return true;
+        }
+
+        private String value(String field) {
+            Integer index = columns.get(field);
+            if (index == null) {
+                return null;
+            }
+            String text = values.get(index);
+            return text.isEmpty() ? null : text;
+        }
+
+        // Reads one record into values; a quoted value may span lines and contain "" for a quote
+        private boolean readRecord() throws IOException {
+            values.clear();
+            value.setLength(0);
+            length = 0;
+            overflow = false;
+            boolean quoted = false;
+            int c = read();
+            if (c == EOF) {
+                return false;
+            }
+            for (; ; c = read()) {
+                if (quoted) {
+                    if (c == EOF) {
+                        break;
+                    }
+                    if (c != '"') {
+                        append(c);
+                        continue;
+                    }
+                    int following = read();
+                    if (following == '"') {
+                        append('"');
+                    } else {
+                        quoted = false;
+                        unread(following);
+                    }
+                } else if (c == EOF || c == '\n') {
+                    break;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else if (c == '"' && value.isEmpty()) {
+                    quoted = true;
+                } else if (c != '\r') {
+                    append(c);
+                }
+            }
+            values.add(value.toString());
+            return true;
+        }
+
+        private void append(int c) {
+            if (++length > maxRowLength()) {
+                overflow = true;
+            } else {
+                value.append((char) c);
+            }
+        }
+    }
+}
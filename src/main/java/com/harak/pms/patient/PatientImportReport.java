@@ -0,0 +1,30 @@
+package com.harak.pms.patient;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a bulk patient import.
+ *
+ * @param rows            the number of non-blank rows read.
+ * @param imported        the number of patients created.
+ * @param rejected        the number of rows that were not imported.
+ * @param errors          why each rejected row was not imported, by line, up to
+ *                        {@code patient-import.max-reported-errors} entries.
+ * @param errorsTruncated whether more rows were rejected than are listed in {@code errors}.
+ */
+public record PatientImportReport(
+        long rows,
+        long imported,
+        long rejected,
+        List<RowError> errors,
+        boolean errorsTruncated
+) {
+
+    /**
+     * A rejected row: the line it starts on and its error messages by field ({@code row} for
+     * errors that concern the whole row). Messages never contain the submitted values.
+     */
+    public record RowError(long line, Map<String, String> errors) {
+    }
+}
@@ -0,0 +1,294 @@
+package com.harak.pms.patient;
+
+import com.harak.pms.audit.AuditContext;
+import com.harak.pms.audit.AuditService;
+import com.harak.pms.encryption.BlindIndexer;
+import com.harak.pms.encryption.PhiRowEnvelopeListener;
+import com.harak.pms.encryption.SealedPhi;
+import com.harak.pms.encryption.SealedPhiConverter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk import of patients from an NDJSON or CSV request body (see {@link PatientImportParser}).
+ *
+ * <p>The body is consumed as it arrives, {@code patient-import.batch-size} valid rows at a time,
+ * so memory use does not depend on the size of the import. Every row is validated against the
+ * constraints of {@link CreatePatientRequest}; invalid rows are reported and skipped. The PHI of
+ * each batch is encrypted on a pool of {@code patient-import.workers} threads — exactly as
+ * {@link PhiRowEnvelopeListener} and {@link SealedPhiConverter} would on save — while the request
+ * thread parses the next batch. The batch is then written with a single JDBC batch insert in its
+ * own transaction; a row whose MRN already belongs to an active patient (including an earlier row
+ * of the same import) is left out by {@code ON CONFLICT DO NOTHING} and reported as a duplicate.
+ * While the MRN blind index backfill has not indexed every active patient, rows matching the MRN
+ * of an unindexed patient are left out the same way, since the unique index cannot see those.
+ *
+ * <p>Batches that were committed stay imported if the import fails later on. Instead of one audit
+ * entry per patient, every committed batch is recorded as one {@code PATIENTS_IMPORTED} entry
+ * listing the IDs of the patients it created.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PatientImportService {
+
+    private static final String INSERT_SQL = "INSERT INTO patients (id, first_name, last_name, ssn, email,"
+            + " date_of_birth, medical_record_number, mrn_blind_index, phi_envelope, deleted, created_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, FALSE, ?)"
+            + " ON CONFLICT (mrn_blind_index) WHERE deleted = FALSE DO NOTHING";
+
+    private static final String DUPLICATE_MRN = "A patient with this medical record number already exists";
+
+    private final PatientService patientService;
+    private final BlindIndexer blindIndexer;
+    private final PhiRowEnvelopeListener phiRowEnvelopeListener;
+    private final SealedPhiConverter sealedPhiConverter;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final AuditService auditService;
+
+    @Value("${patient-import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${patient-import.workers:0}")
+    private int workerCount;
+
+    @Value("${patient-import.max-row-length:16384}")
+    private int maxRowLength;
+
+    @Value("${patient-import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    private ExecutorService workers;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        if (workerCount <= 0) {
+            workerCount = Runtime.getRuntime().availableProcessors();
+        }
+        workers = Executors.newFixedThreadPool(workerCount,
+                Thread.ofPlatform().name("patient-import-", 0).daemon().factory());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Imports the patients in the given body.
+     *
+     * @param body        the request body; not closed.
+     * @param contentType {@code application/x-ndjson} or {@code text/csv}.
+     * @return the number of rows read, imported and rejected, with the reason for each rejection.
+     * @throws IllegalArgumentException if the media type is not supported or the CSV header is invalid.
+     * @throws IOException              if reading the body fails; batches committed before that remain imported.
+     */
+    public PatientImportReport importPatients(InputStream body, MediaType contentType) throws IOException {
+        Progress progress = new Progress();
+        String performedBy = AuditContext.getCurrentUsername();
+        String ipAddress = AuditContext.getCurrentHttpRequest().map(AuditContext::getClientIp).orElse("unknown");
+
+        PatientImportParser parser = PatientImportParser.open(contentType, body, objectMapper, maxRowLength);
+        // Patients indexed from here on are covered by ON CONFLICT, and no new ones are left unindexed
+        Set<String> unindexedMrns = patientService.unindexedMrnBlindIndexes();
+        List<Future<List<SealedPatient>>> sealing = null;
+        while (true) {
+            List<PatientImportParser.Row> rows = readBatch(parser, progress);
+            if (sealing != null) {
+                write(await(sealing), unindexedMrns, progress, performedBy, ipAddress);
+            }
+            if (rows.isEmpty()) {
+                break;
+            }
+            sealing = seal(rows);
+        }
+
+        progress.errors.sort(Comparator.comparingLong(PatientImportReport.RowError::line));
+        log.info("Patient import finished — {} rows, {} imported, {} rejected",
+                progress.rows, progress.imported, progress.rejected);
+        return new PatientImportReport(progress.rows, progress.imported, progress.rejected,
+                progress.errors, progress.rejected > progress.errors.size());
+    }
+
+    // Reads rows until a batch of valid ones is complete or the body ends
+    private List<PatientImportParser.Row> readBatch(PatientImportParser parser, Progress progress) throws IOException {
+        List<PatientImportParser.Row> rows = new ArrayList<>(batchSize);
+        PatientImportParser.Row row;
+        while (rows.size() < batchSize && (row = parser.next()) != null) {
+            progress.rows++;
+            if (row.error() != null) {
+                progress.reject(row.line(), Map.of("row", row.error()));
+                continue;
+            }
+            Map<String, String> violations = validate(row.request());
+            if (!violations.isEmpty()) {
+                progress.reject(row.line(), violations);
+                continue;
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private Map<String, String> validate(CreatePatientRequest request) {
+        Map<String, String> errors = new TreeMap<>();
+        for (ConstraintViolation<CreatePatientRequest> violation : validator.validate(request)) {
+            errors.putIfAbsent(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return errors;
+    }
+
+    // Encrypts the batch on the worker pool, one contiguous slice per worker
+    private List<Future<List<SealedPatient>>> seal(List<PatientImportParser.Row> rows) {
+        int slices = Math.min(workerCount, rows.size());
+        List<Future<List<SealedPatient>>> futures = new ArrayList<>(slices);
+        for (int i = 0; i < slices; i++) {
+            List<PatientImportParser.Row> slice = rows.subList(i * rows.size() / slices, (i + 1) * rows.size() / slices);
+            futures.add(workers.submit(() -> slice.stream().map(this::seal).toList()));
+        }
+        return futures;
+    }
+
+    private SealedPatient seal(PatientImportParser.Row row) {
+        CreatePatientRequest request = row.request();
+        Patient patient = Patient.builder()
+                .id(UUID.randomUUID())
+                .firstName(request.firstName())
+                .lastName(request.lastName())
+                .ssn(request.ssn())
+                .email(request.email())
+                .dateOfBirth(request.dateOfBirth())
+                .medicalRecordNumber(request.medicalRecordNumber())
+                .mrnBlindIndex(blindIndexer.index(request.medicalRecordNumber()))
+                .build();
+        phiRowEnvelopeListener.pack(patient);
+
+        SealedPhi[] fields = patient.getPhiFields();
+        byte[][] columns = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            columns[i] = sealedPhiConverter.convertToDatabaseColumn(fields[i]);
+        }
+        return new SealedPatient(row.line(), patient.getId(), columns, patient.getPhiEnvelope(),
+                patient.getMrnBlindIndex());
+    }
+
+    private static List<SealedPatient> await(List<Future<List<SealedPatient>>> futures) {
+        List<SealedPatient> patients = new ArrayList<>();
+        try {
+            for (Future<List<SealedPatient>> future : futures) {
+                patients.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Patient import interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Patient import encryption failed", e.getCause());
+        }
+        return patients;
+    }
+
+    private void write(List<SealedPatient> patients, Set<String> unindexedMrns, Progress progress,
+                       String performedBy, String ipAddress) {
+        List<SealedPatient> insertable = unindexedMrns.isEmpty() ? patients : patients.stream()
+                .filter(patient -> !unindexedMrns.contains(patient.mrnBlindIndex()))
+                .toList();
+        List<Object[]> args = new ArrayList<>(insertable.size());
+        for (SealedPatient patient : insertable) {
+            Object[] row = new Object[10];
+            row[0] = patient.id();
+            for (int i = 0; i < patient.columns().length; i++) {
+                row[i + 1] = new SqlParameterValue(Types.BINARY, patient.columns()[i]);
+            }
+            row[7] = patient.mrnBlindIndex();
+            row[8] = new SqlParameterValue(Types.BINARY, patient.phiEnvelope());
+            row[9] = Instant.now().atOffset(ZoneOffset.UTC);
+            args.add(row);
+        }
+
+        List<UUID> created = new ArrayList<>(patients.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            int[] counts = jdbcTemplate.batchUpdate(INSERT_SQL, args);
+            for (int i = 0; i < counts.length; i++) {
+                // 0 rows: the MRN conflicted with an active patient; any other count means the row was inserted
+                if (counts[i] != 0) {
+                    created.add(insertable.get(i).id());
+                }
+            }
+            patientService.patientsImported(created.size());
+        });
+
+        for (int i = 0, next = 0; i < patients.size(); i++) {
+            if (next < created.size() && created.get(next).equals(patients.get(i).id())) {
+                next++;
+            } else {
+                progress.reject(patients.get(i).line(), Map.of("medicalRecordNumber", DUPLICATE_MRN));
+            }
+        }
+        progress.imported += created.size();
+
+        auditService.logEvent("PATIENTS_IMPORTED", "PATIENT", null, performedBy, ipAddress,
+                "Imported lines " + patients.getFirst().line() + "-" + patients.getLast().line()
+                        + ": " + created.size() + " created, " + (patients.size() - created.size())
+                        + " duplicate MRNs — patient IDs: "
+                        + created.stream().map(UUID::toString).collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * The encrypted column values of one row, in {@link Patient#getPhiFields()} order.
+     */
+    private record SealedPatient(long line, UUID id, byte[][] columns, byte[] phiEnvelope, String mrnBlindIndex) {
+    }
+
+    private final class Progress {
+
+        private final List<PatientImportReport.RowError> errors = new ArrayList<>();
+        private long rows;
+        private long imported;
+        private long rejected;
+
+        void reject(long line, Map<String, String> rowErrors) {
+            rejected++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new PatientImportReport.RowError(line, rowErrors));
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.harak.pms.patient;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Background maintenance for the patient module:
+ * - Backfill the MRN blind index for rows created before it existed (on startup); active patients
+ *   whose MRN duplicates another active patient's are reported and left unindexed
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PatientMaintenanceTask {
+
+    private final PatientService patientService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMrnBlindIndexes() {
+        long total = 0;
+        List<UUID> duplicates = new ArrayList<>();
+        try {
+            UUID afterId = new UUID(0, 0);
+            PatientService.MrnBackfillBatch batch;
+            while ((batch = patientService.backfillMrnBlindIndexes(afterId)).lastId() != null) {
+                total += batch.indexed();
+                duplicates.addAll(batch.duplicates());
+                afterId = batch.lastId();
+            }
+        } catch (Exception e) {
+            // Leave the remaining rows for the next startup rather than failing the application
+            log.error("MRN blind index backfill stopped after {} patients: {}", total, e.getMessage(), e);
+            return;
+        }
+        if (total > 0) {
+            log.info("Backfilled MRN blind index for {} patients", total);
+        }
+        if (!duplicates.isEmpty()) {
+            // Until resolved, MRN lookups and duplicate checks also decrypt the MRNs of these patients
+            log.warn("MRN blind index not backfilled for {} active patients whose MRN belongs to another active patient"
+                    + " — merge or delete the duplicates: {}", duplicates.size(), duplicates);
+        }
+    }
+}
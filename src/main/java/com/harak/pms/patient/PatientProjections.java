@@ -0,0 +1,126 @@
+package com.harak.pms.patient;
+
+import com.harak.pms.encryption.PhiRowEnvelopeListener;
+import com.harak.pms.encryption.SealedPhi;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Projection queries for sparse fieldsets (see {@link PatientFields}): they select the unencrypted
+ * columns and only the PHI columns behind the selected fields, instead of whole {@link Patient} rows.
+ *
+ * <p>Each row is returned as a detached, partially populated {@link Patient} whose unselected PHI
+ * fields are {@code null}, so {@link com.harak.pms.encryption.PhiBatchDecryptor#revealAll} and
+ * {@link PatientResponse#from} decrypt nothing else. These instances are never managed by the
+ * persistence context and must not be saved. In row envelope mode the envelope is selected too
+ * and opened once per row, whatever the fields.
+ */
+@Component
+@RequiredArgsConstructor
+class PatientProjections {
+
+    // Unencrypted, indexed columns only (see PatientController#sort)
+    private static final Set<String> SORTABLE = Set.of("createdAt", "id");
+
+    private final EntityManager entityManager;
+    private final PhiRowEnvelopeListener phiRowEnvelopeListener;
+
+    /**
+     * Returns the active patient with the given ID.
+     */
+    Optional<Patient> findActiveById(PatientFields fields, UUID id) {
+        return query(fields, " AND p.id = :id", Sort.unsorted())
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst()
+                .map(row -> toPatient(fields.phi(), row));
+    }
+
+    /**
+     * Returns up to {@code limit} active patients from {@code offset} on, in the given order.
+     */
+    List<Patient> findActive(PatientFields fields, Sort sort, long offset, int limit) {
+        List<PatientFields.Field> phi = fields.phi();
+        return query(fields, "", sort)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(row -> toPatient(phi, row))
+                .toList();
+    }
+
+    /**
+     * Returns up to {@code limit} active patients that follow the cursor position, in the cursor's
+     * direction — the same index range scan as the full-row keyset queries of {@link PatientRepository}.
+     */
+    List<Patient> findActiveAfter(PatientFields fields, PatientCursor cursor, int limit) {
+        Sort sort = Sort.by(cursor.direction(), "createdAt", "id");
+        if (cursor.isStart()) {
+            return findActive(fields, sort, 0, limit);
+        }
+        String after = cursor.direction().isAscending()
+                ? " AND (p.createdAt, p.id) > (:createdAt, :id)"
+                : " AND (p.createdAt, p.id) < (:createdAt, :id)";
+        List<PatientFields.Field> phi = fields.phi();
+        return query(fields, after, sort)
+                .setParameter("createdAt", cursor.createdAt())
+                .setParameter("id", cursor.id())
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(row -> toPatient(phi, row))
+                .toList();
+    }
+
+    private TypedQuery<Object[]> query(PatientFields fields, String condition, Sort sort) {
+        StringBuilder jpql = new StringBuilder("SELECT p.id, p.createdAt, p.updatedAt, p.version");
+        List<PatientFields.Field> phi = fields.phi();
+        if (!phi.isEmpty()) {
+            jpql.append(", p.phiEnvelope");
+            for (PatientFields.Field field : phi) {
+                jpql.append(", p.").append(field.phiAttribute());
+            }
+        }
+        jpql.append(" FROM Patient p WHERE p.deleted = false").append(condition);
+
+        String separator = " ORDER BY ";
+        for (Sort.Order order : sort) {
+            if (!SORTABLE.contains(order.getProperty())) {
+                throw new IllegalArgumentException("Patients can only be sorted by createdAt or id");
+            }
+            jpql.append(separator).append("p.").append(order.getProperty())
+                    .append(order.isAscending() ? " ASC" : " DESC");
+            separator = ", ";
+        }
+        return entityManager.createQuery(jpql.toString(), Object[].class);
+    }
+
+    // Columns: id, createdAt, updatedAt, version, then phiEnvelope and the selected PHI fields, if any
+    private Patient toPatient(List<PatientFields.Field> phi, Object[] row) {
+        Patient patient = Patient.builder()
+                .id((UUID) row[0])
+                .createdAt((Instant) row[1])
+                .updatedAt((Instant) row[2])
+                .version((Long) row[3])
+                .build();
+        if (!phi.isEmpty()) {
+            patient.setPhiEnvelope((byte[]) row[4]);
+            SealedPhi[] values = new SealedPhi[patient.getPhiFields().length];
+            for (int i = 0; i < phi.size(); i++) {
+                values[phi.get(i).phiIndex()] = (SealedPhi) row[5 + i];
+            }
+            patient.setPhiFields(values);
+        }
+        // Binds row references to the envelope and attaches PHI metrics, as on a regular load
+        phiRowEnvelopeListener.bind(patient);
+        return patient;
+    }
+}
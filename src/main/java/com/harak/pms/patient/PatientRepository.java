@@ -1,12 +1,19 @@
 package com.harak.pms.patient;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Repository
@@ -16,6 +23,46 @@ public interface PatientRepository extends JpaRepository<Patient, UUID> {
 
     Page<Patient> findAllByDeletedFalse(Pageable pageable);
 
-    List<Patient> findAllByDeletedFalse();
-}
+    // Reads one row more than the page size instead of running a COUNT query
+    Slice<Patient> findSliceByDeletedFalse(Pageable pageable);
+
+    long countByDeletedFalse();
+
+    // Keyset pagination over (created_at, id), served by idx_patients_active_created_at_id (V13).
+    // The row-value comparison lets PostgreSQL start the index scan at the cursor instead of filtering.
+
+    List<Patient> findByDeletedFalse(Sort sort, Limit limit);
+
+    @Query("SELECT p FROM Patient p WHERE p.deleted = false AND (p.createdAt, p.id) < (:createdAt, :id)"
+            + " ORDER BY p.createdAt DESC, p.id DESC")
+    List<Patient> findActiveBefore(Instant createdAt, UUID id, Limit limit);
+
+    @Query("SELECT p FROM Patient p WHERE p.deleted = false AND (p.createdAt, p.id) > (:createdAt, :id)"
+            + " ORDER BY p.createdAt ASC, p.id ASC")
+    List<Patient> findActiveAfter(Instant createdAt, UUID id, Limit limit);
+
+    Optional<Patient> findByMrnBlindIndexAndDeletedFalse(String mrnBlindIndex);
+
+    boolean existsByMrnBlindIndexAndDeletedFalse(String mrnBlindIndex);
 
+    boolean existsByIdAndDeletedFalse(UUID id);
+
+    // Reads only the version column, to answer If-None-Match without loading the PHI columns
+    @Query("SELECT p.version FROM Patient p WHERE p.id = :id AND p.deleted = false")
+    Optional<Long> findActiveVersion(UUID id);
+
+    List<Patient> findAllByIdInAndDeletedFalse(Collection<UUID> ids);
+
+    /**
+     * Returns the next batch of patients (including soft-deleted ones) after the given ID whose MRN
+     * blind index has not been computed yet. Used by the startup backfill in {@link PatientMaintenanceTask}.
+     */
+    List<Patient> findTop500ByMrnBlindIndexIsNullAndIdGreaterThanOrderByIdAsc(UUID id);
+
+    boolean existsByMrnBlindIndexIsNullAndDeletedFalse();
+
+    List<Patient> findAllByMrnBlindIndexIsNullAndDeletedFalse();
+
+    @Query("SELECT p.mrnBlindIndex FROM Patient p WHERE p.deleted = false AND p.mrnBlindIndex IN :mrnBlindIndexes")
+    Set<String> findActiveMrnBlindIndexes(Collection<String> mrnBlindIndexes);
+}
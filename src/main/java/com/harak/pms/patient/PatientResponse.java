@@ -12,7 +12,8 @@ public record PatientResponse(
         String dateOfBirth,
         String medicalRecordNumber,
         Instant createdAt,
-        Instant updatedAt
+        Instant updatedAt,
+        long version
 ) {
 
     /**
@@ -29,7 +30,8 @@ public record PatientResponse(
                 patient.getDateOfBirth(),
                 patient.getMedicalRecordNumber(),
                 patient.getCreatedAt(),
-                patient.getUpdatedAt()
+                patient.getUpdatedAt(),
+                patient.getVersion()
         );
     }
 
@@ -1,15 +1,32 @@
 package com.harak.pms.patient;
 
+import com.harak.pms.common.ApproximateCounter;
+import com.harak.pms.common.ApproximateCounts;
+import com.harak.pms.common.VersionMismatchException;
+import com.harak.pms.encryption.BlindIndexer;
+import com.harak.pms.encryption.PhiBatchDecryptor;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -17,6 +34,19 @@ import java.util.UUID;
 public class PatientService {
 
     private final PatientRepository patientRepository;
+    private final PatientCache patientCache;
+    private final PatientProjections patientProjections;
+    private final PhiBatchDecryptor phiBatchDecryptor;
+    private final BlindIndexer blindIndexer;
+    private final ApproximateCounts approximateCounts;
+
+    // Single key: the number of active patients
+    private ApproximateCounter<Boolean> activePatientCount;
+
+    @PostConstruct
+    public void init() {
+        activePatientCount = approximateCounts.create("patients");
+    }
 
     @Transactional
     public Patient createPatient(CreatePatientRequest request) {
@@ -32,13 +62,22 @@ public class PatientService {
                 .email(request.email())
                 .dateOfBirth(request.dateOfBirth())
                 .medicalRecordNumber(request.medicalRecordNumber())
+                .mrnBlindIndex(blindIndexer.index(request.medicalRecordNumber()))
                 .build();
 
         Patient saved = patientRepository.save(patient);
+        activePatientCount.add(Boolean.TRUE, 1);
         log.info("Patient created with ID: {}", saved.getId());
         return saved;
     }
 
+    /**
+     * Accounts for patients inserted by {@link PatientImportService} in the current transaction.
+     */
+    void patientsImported(long count) {
+        activePatientCount.add(Boolean.TRUE, count);
+    }
+
     @Transactional(readOnly = true)
     public Patient getPatientById(UUID id) {
         return patientRepository.findByIdAndDeletedFalse(id)
@@ -46,14 +85,109 @@ public class PatientService {
     }
 
     /**
-     * Looks up a patient by MRN. Because MRN is encrypted with AES-GCM (non-deterministic),
-     * we must load all active patients and compare the decrypted values in memory.
+     * Returns an active patient as its response DTO, from {@link PatientCache} when possible.
+     * A hit costs no database round trip and no decryption; there is deliberately no
+     * transaction around the lookup.
+     *
+     * @throws PatientNotFoundException if no active patient exists with the given ID.
+     */
+    public PatientResponse getPatientResponse(UUID id) {
+        return patientCache.get(id, key -> PatientResponse.from(patientRepository.findByIdAndDeletedFalse(key)
+                .orElseThrow(() -> new PatientNotFoundException("Patient not found with ID: " + key))));
+    }
+
+    /**
+     * Returns the selected fields of an active patient. A cached patient is trimmed to the
+     * fields; otherwise only the selected PHI columns are read and decrypted, and the partial
+     * result is not cached.
+     *
+     * @throws PatientNotFoundException if no active patient exists with the given ID.
+     */
+    @Transactional(readOnly = true)
+    PatientResponse getPatientResponse(UUID id, PatientFields fields) {
+        if (fields.isAll()) {
+            return getPatientResponse(id);
+        }
+        PatientResponse cached = patientCache.getIfPresent(id);
+        if (cached != null) {
+            return fields.apply(cached);
+        }
+        Patient patient = patientProjections.findActiveById(fields, id)
+                .orElseThrow(() -> new PatientNotFoundException("Patient not found with ID: " + id));
+        return fields.apply(PatientResponse.from(patient));
+    }
+
+    /**
+     * Returns the version of an active patient, for answering {@code If-None-Match}, by a query
+     * that reads the version column only; nothing is decrypted.
+     *
+     * <p>The version is always read from the database rather than from {@link PatientCache}: a
+     * patient changed by another instance can stay cached here until the TTL expires, and a
+     * {@code 304} based on it would confirm the stale copy to the client. A cached patient at
+     * another version is evicted, so that the read that follows loads the current one.
+     *
+     * @throws PatientNotFoundException if no active patient exists with the given ID.
+     */
+    public long getPatientVersion(UUID id) {
+        long version = patientRepository.findActiveVersion(id)
+                .orElseThrow(() -> new PatientNotFoundException("Patient not found with ID: " + id));
+        PatientResponse cached = patientCache.getIfPresent(id);
+        if (cached != null && cached.version() != version) {
+            patientCache.invalidate(id);
+        }
+        return version;
+    }
+
+    /**
+     * Looks up a set of patients at once, e.g. for a ward dashboard. Cached patients are served
+     * from {@link PatientCache}; all others are read with a single {@code IN} query and decrypted
+     * in one pass by {@link PhiBatchDecryptor}, without being cached (see {@link PatientCache#getAll}).
+     *
+     * @param ids the patient IDs; duplicates are ignored.
+     * @return the active patients in request order, and the IDs that matched none.
+     */
+    public PatientBatchResponse getPatientResponses(List<UUID> ids) {
+        Map<UUID, PatientResponse> found = patientCache.getAll(ids, missing -> {
+            List<Patient> patients = patientRepository.findAllByIdInAndDeletedFalse(missing);
+            phiBatchDecryptor.revealAll(patients);
+            return patients.stream().collect(Collectors.toMap(Patient::getId, PatientResponse::from));
+        });
+        List<PatientResponse> patients = new ArrayList<>(found.size());
+        List<UUID> notFound = new ArrayList<>();
+        for (UUID id : new LinkedHashSet<>(ids)) {
+            PatientResponse patient = found.get(id);
+            if (patient != null) {
+                patients.add(patient);
+            } else {
+                notFound.add(id);
+            }
+        }
+        return new PatientBatchResponse(patients, notFound);
+    }
+
+    /**
+     * Verifies that an active patient exists, for application-layer referential integrity in
+     * other modules. Answered from {@link PatientCache} when the patient is cached, otherwise by
+     * a primary-key existence query that loads and decrypts nothing.
+     *
+     * @throws PatientNotFoundException if no active patient exists with the given ID.
+     */
+    public void requireActivePatient(UUID id) {
+        if (!patientCache.contains(id) && !patientRepository.existsByIdAndDeletedFalse(id)) {
+            throw new PatientNotFoundException("Patient not found with ID: " + id);
+        }
+    }
+
+    /**
+     * Looks up a patient by MRN. MRN is encrypted with AES-GCM (non-deterministic), so the
+     * lookup goes through the indexed {@code mrn_blind_index} column instead of the ciphertext,
+     * falling back to the patients that have no blind index yet (see {@link #findUnindexed}).
      */
     @Transactional(readOnly = true)
     public Patient getPatientByMedicalRecordNumber(String mrn) {
-        return patientRepository.findAllByDeletedFalse().stream()
-                .filter(p -> mrn.equals(p.getMedicalRecordNumber()))
-                .findFirst()
+        String mrnBlindIndex = blindIndexer.index(mrn);
+        return patientRepository.findByMrnBlindIndexAndDeletedFalse(mrnBlindIndex)
+                .or(() -> findUnindexed(mrnBlindIndex))
                 .orElseThrow(() -> new PatientNotFoundException("Patient not found with MRN: " + mrn));
     }
 
@@ -62,9 +196,91 @@ public class PatientService {
         return patientRepository.findAllByDeletedFalse(pageable);
     }
 
+    /**
+     * Returns one page of active patients with only the selected fields loaded (see
+     * {@link PatientProjections}). The total is counted only when the page does not tell it.
+     */
+    @Transactional(readOnly = true)
+    Page<Patient> getAllPatients(Pageable pageable, PatientFields fields) {
+        if (fields.isAll()) {
+            return getAllPatients(pageable);
+        }
+        List<Patient> patients = patientProjections.findActive(fields, pageable.getSort(),
+                pageable.getOffset(), pageable.getPageSize());
+        return PageableExecutionUtils.getPage(patients, pageable, patientRepository::countByDeletedFalse);
+    }
+
+    /**
+     * Returns one page of active patients without counting them (see {@link Slice}).
+     */
+    @Transactional(readOnly = true)
+    public Slice<Patient> getPatientSlice(Pageable pageable) {
+        return patientRepository.findSliceByDeletedFalse(pageable);
+    }
+
+    /**
+     * Returns one page of active patients with only the selected fields loaded, without
+     * counting them: one extra row tells whether another page follows.
+     */
+    @Transactional(readOnly = true)
+    Slice<Patient> getPatientSlice(Pageable pageable, PatientFields fields) {
+        if (fields.isAll()) {
+            return getPatientSlice(pageable);
+        }
+        List<Patient> patients = patientProjections.findActive(fields, pageable.getSort(),
+                pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = patients.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? patients.subList(0, pageable.getPageSize()) : patients, pageable, hasNext);
+    }
+
+    /**
+     * Returns the approximate number of active patients, maintained incrementally and
+     * re-counted periodically (see {@link ApproximateCounter}).
+     */
+    @Transactional(readOnly = true)
+    public long getApproximatePatientCount() {
+        return activePatientCount.get(Boolean.TRUE, key -> patientRepository.countByDeletedFalse());
+    }
+
+    /**
+     * Returns up to {@code limit} active patients that follow the cursor position, in the
+     * cursor's direction, with only the selected fields loaded. Each call is one index range
+     * scan, whatever the position.
+     */
+    @Transactional(readOnly = true)
+    List<Patient> getPatientsAfter(PatientCursor cursor, int limit, PatientFields fields) {
+        if (!fields.isAll()) {
+            return patientProjections.findActiveAfter(fields, cursor, limit);
+        }
+        if (cursor.isStart()) {
+            return patientRepository.findByDeletedFalse(
+                    Sort.by(cursor.direction(), "createdAt", "id"), Limit.of(limit));
+        }
+        return cursor.direction().isAscending()
+                ? patientRepository.findActiveAfter(cursor.createdAt(), cursor.id(), Limit.of(limit))
+                : patientRepository.findActiveBefore(cursor.createdAt(), cursor.id(), Limit.of(limit));
+    }
+
+    /**
+     * Applies the non-null fields of the request to an active patient.
+     *
+     * <p>With {@code expectedVersions} (from {@code If-Match}), the update is refused unless the
+     * patient is still at one of those versions. Either way, the {@code @Version} column makes
+     * Hibernate refuse the update if another transaction changed the patient after it was loaded
+     * here.
+     *
+     * @param expectedVersions the versions the client accepts, or {@code null} for an unconditional update.
+     * @throws PatientNotFoundException if no active patient exists with the given ID.
+     * @throws VersionMismatchException if the patient is not at one of the expected versions.
+     */
     @Transactional
-    public Patient updatePatient(UUID id, UpdatePatientRequest request) {
+    public Patient updatePatient(UUID id, UpdatePatientRequest request, Set<Long> expectedVersions) {
         Patient patient = getPatientById(id);
+        if (expectedVersions != null && !expectedVersions.contains(patient.getVersion())) {
+            throw new VersionMismatchException("Patient " + id + " has been modified (current version "
+                    + patient.getVersion() + ")");
+        }
+        patientCache.invalidate(id);
 
         List<String> updatedFields = new ArrayList<>();
 
@@ -94,6 +310,17 @@ public class PatientService {
         return saved;
     }
 
+    /**
+     * Returns the normalized names of the response fields selected by a {@code fields} request
+     * parameter, comma-separated in response order, for audit logging. Unlike the raw parameter,
+     * this records exactly the fields that were disclosed.
+     *
+     * @throws IllegalArgumentException if {@code fields} names an unknown field.
+     */
+    public String getSelectedFieldNames(String fields) {
+        return PatientFields.parse(fields).names();
+    }
+
     /**
      * Returns a list of field names that were updated, useful for audit logging.
      */
@@ -110,19 +337,102 @@ public class PatientService {
     @Transactional
     public void deletePatient(UUID id) {
         Patient patient = getPatientById(id);
+        patientCache.invalidate(id);
         patient.setDeleted(true);
         patientRepository.save(patient);
+        activePatientCount.add(Boolean.TRUE, -1);
         log.info("Patient soft-deleted with ID: {}", id);
     }
 
     /**
-     * Checks if a patient with the given MRN already exists.
+     * Computes the MRN blind index for up to one batch of patients after {@code afterId} that do
+     * not have one yet.
+     *
+     * <p>Each call runs in its own transaction so the backfill in {@link PatientMaintenanceTask}
+     * commits incrementally and never holds locks on the whole table. An active patient whose MRN
+     * already belongs to another active patient (a duplicate created before V8 enforced
+     * uniqueness) would violate {@code idx_patients_mrn_blind_index_active}; it is left without a
+     * blind index and reported instead, so the rest of the backfill still completes.
+     *
+     * @param afterId the last patient ID of the previous batch; the nil UUID to start.
+     * @return the batch's last patient ID ({@code null} once the backfill is complete), the
+     *         number of patients indexed and the IDs of the duplicates left unindexed.
+     */
+    @Transactional
+    public MrnBackfillBatch backfillMrnBlindIndexes(UUID afterId) {
+        List<Patient> batch = patientRepository.findTop500ByMrnBlindIndexIsNullAndIdGreaterThanOrderByIdAsc(afterId);
+        if (batch.isEmpty()) {
+            return new MrnBackfillBatch(null, 0, List.of());
+        }
+        List<String> indexes = batch.stream()
+                .map(patient -> blindIndexer.index(patient.getMedicalRecordNumber()))
+                .toList();
+        Set<String> taken = new HashSet<>(patientRepository.findActiveMrnBlindIndexes(indexes));
+
+        int indexed = 0;
+        List<UUID> duplicates = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Patient patient = batch.get(i);
+            String mrnBlindIndex = indexes.get(i);
+            // Also catches two unindexed patients of this batch sharing an MRN
+            if (!patient.isDeleted() && !taken.add(mrnBlindIndex)) {
+                duplicates.add(patient.getId());
+                continue;
+            }
+            patient.setMrnBlindIndex(mrnBlindIndex);
+            indexed++;
+        }
+        patientRepository.saveAll(batch);
+        return new MrnBackfillBatch(batch.getLast().getId(), indexed, duplicates);
+    }
+
+    /**
+     * Returns the MRN blind indexes of the active patients that do not have one stored yet, for
+     * duplicate checks that cannot rely on {@code idx_patients_mrn_blind_index_active}. Empty
+     * once the backfill is complete, at the cost of a single existence query.
+     */
+    @Transactional(readOnly = true)
+    Set<String> unindexedMrnBlindIndexes() {
+        if (!patientRepository.existsByMrnBlindIndexIsNullAndDeletedFalse()) {
+            return Set.of();
+        }
+        return patientRepository.findAllByMrnBlindIndexIsNullAndDeletedFalse().stream()
+                .map(patient -> blindIndexer.index(patient.getMedicalRecordNumber()))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Checks if an active patient with the given MRN already exists.
      * Since MRN is encrypted with AES-GCM (random IV), we cannot query by encrypted value.
-     * Instead, we load all active patients and compare decrypted MRNs in memory.
+     * Instead, we query the MRN blind index, which is backed by a unique partial index, and
+     * the patients that have no blind index yet.
      */
     private boolean existsByMedicalRecordNumber(String mrn) {
-        return patientRepository.findAllByDeletedFalse().stream()
-                .anyMatch(p -> mrn.equals(p.getMedicalRecordNumber()));
+        String mrnBlindIndex = blindIndexer.index(mrn);
+        return patientRepository.existsByMrnBlindIndexAndDeletedFalse(mrnBlindIndex)
+                || findUnindexed(mrnBlindIndex).isPresent();
+    }
+
+    // Active patients the startup backfill has not indexed yet (or could not, as duplicates) are
+    // invisible to the blind index and to its unique index, so while any exist they are found by
+    // decrypting their MRNs. After the backfill this is a single existence query.
+    private Optional<Patient> findUnindexed(String mrnBlindIndex) {
+        if (!patientRepository.existsByMrnBlindIndexIsNullAndDeletedFalse()) {
+            return Optional.empty();
+        }
+        return patientRepository.findAllByMrnBlindIndexIsNullAndDeletedFalse().stream()
+                .filter(patient -> mrnBlindIndex.equals(blindIndexer.index(patient.getMedicalRecordNumber())))
+                .findFirst();
+    }
+
+    /**
+     * One batch of the MRN blind index backfill.
+     *
+     * @param lastId     the last patient ID of the batch, or {@code null} if there were none left.
+     * @param indexed    the number of patients whose blind index was stored.
+     * @param duplicates the active patients left unindexed because their MRN belongs to another active patient.
+     */
+    public record MrnBackfillBatch(UUID lastId, int indexed, List<UUID> duplicates) {
     }
 }
 
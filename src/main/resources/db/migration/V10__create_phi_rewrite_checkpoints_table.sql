@@ -0,0 +1,17 @@
+-- Progress of the online PHI rewrite jobs (e.g. key rotation), one row per job and table.
+-- The jobs walk each table in primary key order; last_id is the keyset cursor to resume from
+-- after a restart. target_key_id records the key the pass is re-encrypting to, so a pass for a
+-- previous primary key is restarted from the beginning when the key changes again.
+CREATE TABLE phi_rewrite_checkpoints
+(
+    id             UUID PRIMARY KEY,
+    job            VARCHAR(50)  NOT NULL,
+    table_name     VARCHAR(100) NOT NULL,
+    target_key_id  INTEGER      NOT NULL,
+    last_id        UUID,
+    rows_scanned   BIGINT       NOT NULL DEFAULT 0,
+    rows_rewritten BIGINT       NOT NULL DEFAULT 0,
+    completed      BOOLEAN      NOT NULL DEFAULT FALSE,
+    updated_at     TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uq_phi_rewrite_checkpoints_job_table UNIQUE (job, table_name)
+);
@@ -0,0 +1,11 @@
+-- Optional row-level envelope encryption (phi.row-envelope.enabled, see PhiRowEncryptor).
+-- phi_envelope holds all PHI fields of the row encrypted under a per-row data key, which is
+-- wrapped by the master key; the per-field PHI columns of such a row hold 3-byte references into
+-- the envelope. NULL for rows stored with per-field ciphertext, which remain fully supported.
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS phi_envelope BYTEA;
+ALTER TABLE clinical_records ADD COLUMN IF NOT EXISTS phi_envelope BYTEA;
+
+-- The UNIQUE constraint on the MRN ciphertext never enforced anything (AES-GCM uses a random IV,
+-- so equal MRNs never produce equal ciphertext) and would reject the identical row references of
+-- envelope rows. MRN uniqueness is enforced by idx_patients_mrn_blind_index_active (V8).
+ALTER TABLE patients DROP CONSTRAINT IF EXISTS patients_medical_record_number_key;
@@ -0,0 +1,22 @@
+-- CLINICAL ATTACHMENTS TABLE (scanned documents, ECGs, imaging reports)
+-- HIPAA §164.312(a)(2)(iv): the file content is stored outside the database in the attachment
+-- file store, encrypted in authenticated chunks by PhiStreamEncryptor; storage_key names the file.
+-- The original file name may itself identify the patient and is encrypted like any PHI column.
+-- No FK constraints to preserve Spring Modulith module boundaries (see V7).
+
+CREATE TABLE IF NOT EXISTS clinical_attachments
+(
+    id                  UUID PRIMARY KEY,
+    clinical_record_id  UUID         NOT NULL,
+    patient_id          UUID         NOT NULL,
+    file_name           BYTEA        NOT NULL,
+    content_type        VARCHAR(255) NOT NULL,
+    size_bytes          BIGINT       NOT NULL,
+    storage_key         VARCHAR(64)  NOT NULL UNIQUE,
+    phi_envelope        BYTEA,
+    deleted             BOOLEAN      NOT NULL DEFAULT FALSE,
+    created_at          TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Attachments are always listed and fetched through their clinical record
+CREATE INDEX IF NOT EXISTS idx_clinical_attachments_clinical_record_id ON clinical_attachments (clinical_record_id);
@@ -0,0 +1,7 @@
+-- Keyset (cursor) pagination of active patients: GET /api/patients?cursor=...
+-- Each page is a range scan of this index starting at the (created_at, id) of the previous page's
+-- last row, so deep pages cost the same as the first one and no count(*) is needed. The index
+-- also serves offset pages sorted by createdAt. Sorting on PHI columns is not offered: they hold
+-- ciphertext, whose order is meaningless.
+
+CREATE INDEX IF NOT EXISTS idx_patients_active_created_at_id ON patients (created_at, id) WHERE deleted = false;
@@ -0,0 +1,7 @@
+-- Most recent active clinical records of a patient: GET /api/patients/{id}/chart-summary and the
+-- default (createdAt desc) order of GET /api/clinical-records/patient/{patientId}.
+-- The first N rows of a patient are read straight off the end of this index, without sorting all
+-- of the patient's records.
+
+CREATE INDEX IF NOT EXISTS idx_clinical_records_active_patient_created_at
+    ON clinical_records (patient_id, created_at, id) WHERE deleted = false;
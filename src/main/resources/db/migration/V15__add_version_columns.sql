@@ -0,0 +1,8 @@
+-- Optimistic locking and entity tags for patients and clinical records.
+-- Hibernate increments the version on every update and refuses an update whose row was changed
+-- since it was read. The version is also the ETag of GET /api/patients/{id} and
+-- GET /api/clinical-records/{id}, so If-None-Match is answered without reading any PHI.
+-- A constant default makes ADD COLUMN a metadata-only change: existing rows are not rewritten.
+
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE clinical_records ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,16 @@
+-- Idempotency-Key support for POST /api/patients and POST /api/clinical-records.
+-- One row per (user, endpoint, key), identified by a SHA-256 digest; the client's key is not stored.
+-- request_fingerprint is a keyed HMAC of the request body, so reusing a key with a different body is
+-- detected without storing PHI. response_snapshot holds the AES-GCM encrypted status, ETag and body
+-- of the first successful response, and is NULL while that request is still in progress.
+-- Rows are purged once expires_at has passed.
+
+CREATE TABLE idempotency_keys
+(
+    key_hash            VARCHAR(64) PRIMARY KEY,
+    request_fingerprint VARCHAR(64) NOT NULL,
+    response_snapshot   BYTEA,
+    expires_at          TIMESTAMP   NOT NULL
+);
+
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
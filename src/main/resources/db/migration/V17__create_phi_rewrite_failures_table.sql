@@ -0,0 +1,16 @@
+-- Rows an online PHI rewrite job (e.g. key rotation) could not process, one row per job, table
+-- and row. The job records the row and moves its keyset cursor past it, so a single value that
+-- cannot be decrypted does not stall the pass; the recorded rows are retried after a restart and
+-- cleared when a pass towards a new key starts. error names the column and the failure, never PHI.
+ALTER TABLE phi_rewrite_checkpoints
+    ADD COLUMN rows_failed BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE phi_rewrite_failures
+(
+    job        VARCHAR(50)  NOT NULL,
+    table_name VARCHAR(100) NOT NULL,
+    row_id     UUID         NOT NULL,
+    error      VARCHAR(500) NOT NULL,
+    failed_at  TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (job, table_name, row_id)
+);
@@ -0,0 +1,10 @@
+-- Blind index for the encrypted medical_record_number column.
+-- HIPAA §164.312(a)(2)(iv): MRN remains AES-256-GCM encrypted; mrn_blind_index holds a keyed
+-- HMAC-SHA256 digest computed by BlindIndexer so that lookups and uniqueness checks can use an
+-- index instead of decrypting every patient. Existing rows are populated at startup by
+-- PatientMaintenanceTask, so the column is nullable until the backfill has run.
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS mrn_blind_index VARCHAR(64);
+
+-- MRN uniqueness applies to active patients only, matching the soft-delete semantics of PatientService
+CREATE UNIQUE INDEX IF NOT EXISTS idx_patients_mrn_blind_index_active
+    ON patients (mrn_blind_index) WHERE deleted = FALSE;
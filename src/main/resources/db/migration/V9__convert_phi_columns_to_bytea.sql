@@ -0,0 +1,28 @@
+-- Store PHI ciphertext as binary (BYTEA) instead of Base64 text in VARCHAR(255).
+-- HIPAA §164.312(a)(2)(iv): PHI remains AES-256-GCM encrypted. Binary storage removes the 33%
+-- Base64 overhead and the VARCHAR(255) limit on clinical text.
+-- Existing values are copied byte-for-byte (UTF-8), so they remain readable by StringEncryptor
+-- as legacy text. PhiBinaryConversionTask then converts them to the binary format online in
+-- small batches, without decrypting them.
+--
+-- DOWNTIME: ALTER COLUMN ... TYPE rewrites each table in full under an ACCESS EXCLUSIVE lock,
+-- which blocks all reads and writes of patients and clinical_records until the statement commits.
+-- The lock is held for roughly the time of a full table copy plus its index rebuilds (expect
+-- minutes per few million rows), and Flyway runs before the application accepts requests. Run
+-- this migration in a maintenance window: stop all application instances, deploy, and let the
+-- first instance apply it before the others start.
+
+ALTER TABLE patients
+    ALTER COLUMN first_name TYPE BYTEA USING convert_to(first_name, 'UTF8'),
+    ALTER COLUMN last_name TYPE BYTEA USING convert_to(last_name, 'UTF8'),
+    ALTER COLUMN ssn TYPE BYTEA USING convert_to(ssn, 'UTF8'),
+    ALTER COLUMN email TYPE BYTEA USING convert_to(email, 'UTF8'),
+    ALTER COLUMN date_of_birth TYPE BYTEA USING convert_to(date_of_birth, 'UTF8'),
+    ALTER COLUMN medical_record_number TYPE BYTEA USING convert_to(medical_record_number, 'UTF8');
+
+ALTER TABLE clinical_records
+    ALTER COLUMN diagnosis TYPE BYTEA USING convert_to(diagnosis, 'UTF8'),
+    ALTER COLUMN treatment_plan TYPE BYTEA USING convert_to(treatment_plan, 'UTF8'),
+    ALTER COLUMN notes TYPE BYTEA USING convert_to(notes, 'UTF8'),
+    ALTER COLUMN medications TYPE BYTEA USING convert_to(medications, 'UTF8'),
+    ALTER COLUMN visit_date TYPE BYTEA USING convert_to(visit_date, 'UTF8');
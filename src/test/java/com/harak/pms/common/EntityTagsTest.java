@@ -0,0 +1,53 @@
+package com.harak.pms.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityTagsTest {
+
+    @Test
+    void quotesTheVersion() {
+        assertThat(EntityTags.of(3)).isEqualTo("\"3\"");
+    }
+
+    @Test
+    void matchesTheCurrentVersion() {
+        assertThat(EntityTags.matches("\"3\"", 3)).isTrue();
+        assertThat(EntityTags.matches("\"2\"", 3)).isFalse();
+        assertThat(EntityTags.matches("\"30\"", 3)).isFalse();
+    }
+
+    @Test
+    void matchesWeakTags() {
+        assertThat(EntityTags.matches("W/\"3\"", 3)).isTrue();
+        assertThat(EntityTags.matches("W/\"4\"", 3)).isFalse();
+    }
+
+    @Test
+    void matchesAnyTagInAList() {
+        assertThat(EntityTags.matches("\"1\", W/\"3\", \"5\"", 3)).isTrue();
+        assertThat(EntityTags.matches("\"1\",\"3\"", 3)).isTrue();
+        assertThat(EntityTags.matches("\"1\", \"2\"", 3)).isFalse();
+    }
+
+    @Test
+    void matchesAnyVersionForAWildcard() {
+        assertThat(EntityTags.matches("*", 3)).isTrue();
+        assertThat(EntityTags.matches("*", 0)).isTrue();
+    }
+
+    @Test
+    void acceptsAnyVersionWithoutAnIfMatchHeader() {
+        assertThat(EntityTags.acceptedVersions(null)).isNull();
+        assertThat(EntityTags.acceptedVersions("*")).isNull();
+    }
+
+    @Test
+    void acceptsOnlyStrongVersionTags() {
+        assertThat(EntityTags.acceptedVersions("\"3\"")).containsExactly(3L);
+        assertThat(EntityTags.acceptedVersions("\"1\", \"3\"")).containsExactlyInAnyOrder(1L, 3L);
+        assertThat(EntityTags.acceptedVersions("W/\"3\"")).isEmpty();
+        assertThat(EntityTags.acceptedVersions("\"abc\"")).isEmpty();
+    }
+}
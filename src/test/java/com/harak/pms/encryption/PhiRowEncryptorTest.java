@@ -0,0 +1,85 @@
+package com.harak.pms.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PhiRowEncryptorTest {
+
+    private static final String[] ROW = {"Jane", "Doe", "123-45-6789", null, "", "MRN-0001"};
+
+    private final StringEncryptor stringEncryptor = PhiTestFixtures.stringEncryptor();
+    private final PhiRowEncryptor encryptor = PhiTestFixtures.rowEncryptor(stringEncryptor);
+
+    @Test
+    void roundTripsFieldsIncludingNulls() {
+        byte[] envelope = encryptor.seal(ROW, null);
+
+        assertThat(PhiEnvelope.version(envelope)).isEqualTo(PhiEnvelope.VERSION_ROW);
+        assertThat(PhiEnvelope.isCompressed(envelope)).isFalse();
+        assertThat(encryptor.open(envelope)).containsExactly(ROW);
+    }
+
+    @Test
+    void compressesLargeRows() {
+        String[] row = {"Jane", PhiTestFixtures.clinicalText(4096), null};
+
+        byte[] envelope = encryptor.seal(row, null);
+
+        assertThat(PhiEnvelope.isCompressed(envelope)).isTrue();
+        assertThat(PhiEnvelope.version(envelope)).isEqualTo(PhiEnvelope.VERSION_ROW);
+        assertThat(encryptor.open(envelope)).containsExactly(row);
+    }
+
+    @Test
+    void reusesTheDataKeyOfThePreviousEnvelope() {
+        byte[] previous = encryptor.seal(ROW, null);
+
+        byte[] envelope = encryptor.seal(new String[]{"Janet"}, previous);
+
+        assertThat(Arrays.copyOfRange(envelope, 2, PhiEnvelope.ROW_HEADER_LENGTH))
+                .isEqualTo(Arrays.copyOfRange(previous, 2, PhiEnvelope.ROW_HEADER_LENGTH));
+        assertThat(encryptor.open(envelope)).containsExactly("Janet");
+    }
+
+    @Test
+    void rejectsTamperedRows() {
+        byte[] envelope = encryptor.seal(ROW, null);
+
+        for (int i = PhiEnvelope.V2_HEADER_LENGTH; i < envelope.length; i += 5) {
+            byte[] tampered = envelope.clone();
+            tampered[i] ^= 0x01;
+            // A fresh encryptor, so that a tampered wrapped key is not masked by the data key cache
+            PhiRowEncryptor reader = PhiTestFixtures.rowEncryptor(stringEncryptor);
+            assertThatThrownBy(() -> reader.open(tampered)).isInstanceOf(RuntimeException.class);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedRows() {
+        byte[] envelope = encryptor.seal(ROW, null);
+
+        byte[] truncated = Arrays.copyOf(envelope, envelope.length - 1);
+
+        assertThatThrownBy(() -> encryptor.open(truncated)).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> encryptor.open(Arrays.copyOf(envelope, PhiEnvelope.ROW_HEADER_LENGTH)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void staysReadableAfterTheDataKeyIsRewrapped() {
+        byte[] envelope = encryptor.seal(ROW, null);
+        StringEncryptor rotated = PhiTestFixtures.rotatedStringEncryptor();
+
+        byte[] rewrapped = rotated.reencrypt(envelope);
+
+        assertThat(rewrapped[2]).isEqualTo((byte) 2);
+        assertThat(Arrays.copyOfRange(rewrapped, PhiEnvelope.ROW_HEADER_LENGTH, rewrapped.length))
+                .isEqualTo(Arrays.copyOfRange(envelope, PhiEnvelope.ROW_HEADER_LENGTH, envelope.length));
+        assertThat(PhiTestFixtures.rowEncryptor(rotated).open(rewrapped)).containsExactly(ROW);
+        assertThat(rotated.reencrypt(rewrapped)).isNull();
+    }
+}
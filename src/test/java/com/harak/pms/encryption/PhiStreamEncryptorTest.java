@@ -0,0 +1,164 @@
+package com.harak.pms.encryption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PhiStreamEncryptorTest {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final int SEALED_CHUNK_SIZE = CHUNK_SIZE + PhiEnvelope.TAG_LENGTH;
+
+    private final StringEncryptor stringEncryptor = PhiTestFixtures.stringEncryptor();
+    private final PhiStreamEncryptor encryptor = PhiTestFixtures.streamEncryptor(stringEncryptor);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void roundTripsAcrossChunks() throws IOException {
+        for (int size : new int[]{0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 3 * CHUNK_SIZE, 5 * CHUNK_SIZE + 17}) {
+            byte[] plaintext = content(size);
+
+            Path file = write(plaintext);
+
+            long chunks = Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            assertThat(Files.size(file)).isEqualTo(PhiEnvelope.STREAM_HEADER_LENGTH + chunks * PhiEnvelope.TAG_LENGTH + size);
+            assertThat(read(file)).as("%d bytes", size).isEqualTo(plaintext);
+        }
+    }
+
+    @Test
+    void rejectsTamperedChunks() throws IOException {
+        Path file = write(content(3 * CHUNK_SIZE + 100));
+        long offset = PhiEnvelope.STREAM_HEADER_LENGTH + SEALED_CHUNK_SIZE + 10;
+        flip(file, offset);
+
+        try (InputStream in = encryptor.open(file)) {
+            assertThat(in.readNBytes(CHUNK_SIZE)).isEqualTo(Arrays.copyOf(content(3 * CHUNK_SIZE + 100), CHUNK_SIZE));
+            assertThatThrownBy(in::readAllBytes).isInstanceOf(IOException.class).hasMessageContaining("chunk 1");
+        }
+    }
+
+    @Test
+    void rejectsTamperedHeaders() throws IOException {
+        Path file = write(content(100));
+        // The nonce prefix is authenticated as associated data of every chunk
+        flip(file, PhiEnvelope.STREAM_HEADER_LENGTH - 1);
+
+        try (InputStream in = encryptor.open(file)) {
+            assertThatThrownBy(in::readAllBytes).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void rejectsTruncationAtAChunkBoundary() throws IOException {
+        Path file = write(content(3 * CHUNK_SIZE + 100));
+        truncate(file, PhiEnvelope.STREAM_HEADER_LENGTH + 2L * SEALED_CHUNK_SIZE);
+
+        try (InputStream in = encryptor.open(file)) {
+            assertThatThrownBy(in::readAllBytes).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    void rejectsTruncationWithinATag() throws IOException {
+        Path file = write(content(3 * CHUNK_SIZE + 100));
+        truncate(file, PhiEnvelope.STREAM_HEADER_LENGTH + 3L * SEALED_CHUNK_SIZE + PhiEnvelope.TAG_LENGTH - 1);
+
+        assertThatThrownBy(() -> encryptor.open(file)).isInstanceOf(IOException.class)
+                .hasMessage("PHI stream is truncated");
+    }
+
+    @Test
+    void rejectsReorderedChunks() throws IOException {
+        Path file = write(content(3 * CHUNK_SIZE + 100));
+        byte[] bytes = Files.readAllBytes(file);
+        int first = PhiEnvelope.STREAM_HEADER_LENGTH;
+        byte[] chunk = Arrays.copyOfRange(bytes, first, first + SEALED_CHUNK_SIZE);
+        System.arraycopy(bytes, first + SEALED_CHUNK_SIZE, bytes, first, SEALED_CHUNK_SIZE);
+        System.arraycopy(chunk, 0, bytes, first + SEALED_CHUNK_SIZE, SEALED_CHUNK_SIZE);
+        Files.write(file, bytes);
+
+        try (InputStream in = encryptor.open(file)) {
+            assertThatThrownBy(in::readAllBytes).isInstanceOf(IOException.class).hasMessageContaining("chunk 0");
+        }
+    }
+
+    @Test
+    void rejectsFilesThatAreNotStreams() throws IOException {
+        Path file = directory.resolve("plain");
+        Files.write(file, content(200));
+
+        assertThatThrownBy(() -> encryptor.open(file)).isInstanceOf(IOException.class)
+                .hasMessageContaining("Not a PHI stream");
+        assertThatThrownBy(() -> encryptor.rewrapDataKey(file)).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void staysReadableAfterTheDataKeyIsRewrapped() throws IOException {
+        byte[] plaintext = content(2 * CHUNK_SIZE + 5);
+        Path file = write(plaintext);
+        byte[] before = Files.readAllBytes(file);
+        PhiStreamEncryptor rotated = PhiTestFixtures.streamEncryptor(PhiTestFixtures.rotatedStringEncryptor());
+
+        assertThat(encryptor.rewrapDataKey(file)).isFalse();
+        assertThat(rotated.rewrapDataKey(file)).isTrue();
+        assertThat(rotated.rewrapDataKey(file)).isFalse();
+
+        byte[] after = Files.readAllBytes(file);
+        assertThat(after[2]).isEqualTo((byte) 2);
+        assertThat(Arrays.copyOfRange(after, PhiEnvelope.ROW_HEADER_LENGTH, after.length))
+                .isEqualTo(Arrays.copyOfRange(before, PhiEnvelope.ROW_HEADER_LENGTH, before.length));
+        assertThat(read(rotated, file)).isEqualTo(plaintext);
+    }
+
+    private Path write(byte[] plaintext) throws IOException {
+        Path file = Files.createTempFile(directory, "phi", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            assertThat(encryptor.encrypt(new ByteArrayInputStream(plaintext), channel)).isEqualTo(plaintext.length);
+        }
+        return file;
+    }
+
+    private byte[] read(Path file) throws IOException {
+        return read(encryptor, file);
+    }
+
+    private static byte[] read(PhiStreamEncryptor encryptor, Path file) throws IOException {
+        try (InputStream in = encryptor.open(file)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void flip(Path file, long offset) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) offset] ^= 0x01;
+        Files.write(file, bytes);
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31 + i / 7);
+        }
+        return content;
+    }
+}
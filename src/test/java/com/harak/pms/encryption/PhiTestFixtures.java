@@ -0,0 +1,98 @@
+package com.harak.pms.encryption;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Encryption components wired by hand for unit tests, with the same defaults as
+ * {@code application.yml} and fixed, test-only keys.
+ */
+final class PhiTestFixtures {
+
+    static final byte[] KEY_1 = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] KEY_2 = "test-only-key-2-not-for-phi!!!!!".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String CLINICAL_PROSE = "Patient presents with intermittent chest pain radiating to the left arm. "
+            + "Vitals stable, BP 128/82, HR 76. ECG shows normal sinus rhythm without acute ST changes. "
+            + "Continue aspirin 81 mg daily and atorvastatin 40 mg at bedtime; follow up in two weeks. ";
+
+    private PhiTestFixtures() {
+        // Utility class — prevent instantiation
+    }
+
+    /**
+     * Returns an encryptor whose primary key is {@link #KEY_1} (ID 1), which is also the legacy key.
+     */
+    static StringEncryptor stringEncryptor() {
+        return stringEncryptor(1, KEY_1, "", -1);
+    }
+
+    /**
+     * Returns an encryptor after rotation: primary key {@link #KEY_2} (ID 2), with {@link #KEY_1}
+     * (ID 1) retained for decryption and as the legacy key.
+     */
+    static StringEncryptor rotatedStringEncryptor() {
+        return stringEncryptor(2, KEY_2, "1:" + encode(KEY_1), 1);
+    }
+
+    static StringEncryptor stringEncryptor(int keyId, byte[] key, String decryptionKeys, int legacyKeyId) {
+        StringEncryptor encryptor = new StringEncryptor(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(encryptor, "encodedKey", encode(key));
+        ReflectionTestUtils.setField(encryptor, "encryptionKeyId", keyId);
+        ReflectionTestUtils.setField(encryptor, "decryptionKeys", decryptionKeys);
+        ReflectionTestUtils.setField(encryptor, "configuredLegacyKeyId", legacyKeyId);
+        ReflectionTestUtils.setField(encryptor, "compressionEnabled", true);
+        ReflectionTestUtils.setField(encryptor, "compressionMinSize", 512);
+        encryptor.init();
+        return encryptor;
+    }
+
+    static PhiRowEncryptor rowEncryptor(StringEncryptor stringEncryptor) {
+        PhiRowEncryptor encryptor = new PhiRowEncryptor(stringEncryptor, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(encryptor, "enabled", true);
+        ReflectionTestUtils.setField(encryptor, "dataKeyCacheSize", 10_000L);
+        ReflectionTestUtils.setField(encryptor, "dataKeyCacheExpiry", Duration.ofMinutes(5));
+        encryptor.init();
+        return encryptor;
+    }
+
+    // The smallest chunk size allowed, so that small test files span several chunks
+    static PhiStreamEncryptor streamEncryptor(StringEncryptor stringEncryptor) {
+        PhiStreamEncryptor encryptor = new PhiStreamEncryptor(stringEncryptor);
+        ReflectionTestUtils.setField(encryptor, "chunkSize", DataSize.ofKilobytes(1));
+        encryptor.init();
+        return encryptor;
+    }
+
+    static PhiMetrics metrics() {
+        PhiMetrics metrics = new PhiMetrics(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(metrics, "enabled", true);
+        return metrics;
+    }
+
+    static PhiValueCache valueCache(StringEncryptor stringEncryptor, boolean enabled) {
+        PhiValueCache cache = new PhiValueCache(stringEncryptor, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", enabled);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(cache, "maxResidentSize", DataSize.ofMegabytes(4));
+        ReflectionTestUtils.setField(cache, "maxValueSize", DataSize.ofKilobytes(1));
+        cache.init();
+        return cache;
+    }
+
+    /**
+     * Returns ASCII clinical prose of exactly {@code length} characters.
+     */
+    static String clinicalText(int length) {
+        return CLINICAL_PROSE.repeat(length / CLINICAL_PROSE.length() + 1).substring(0, length);
+    }
+
+    private static String encode(byte[] key) {
+        return Base64.getEncoder().encodeToString(key);
+    }
+}
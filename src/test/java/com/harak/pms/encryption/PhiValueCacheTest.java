@@ -0,0 +1,63 @@
+package com.harak.pms.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PhiValueCacheTest {
+
+    private final StringEncryptor stringEncryptor = PhiTestFixtures.stringEncryptor();
+    private final PhiMetrics.Field field = PhiTestFixtures.metrics().field("Patient", "firstName");
+
+    @Test
+    void timesOnlyActualDecryptions() {
+        PhiValueCache cache = PhiTestFixtures.valueCache(stringEncryptor, true);
+        byte[] ciphertext = stringEncryptor.encryptToBytes("Jane");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.decrypt(ciphertext, field)).isEqualTo("Jane");
+        }
+
+        assertThat(field.decrypt().timer().count()).isEqualTo(1);
+        assertThat(field.decrypt().bytes().totalAmount()).isEqualTo(ciphertext.length);
+        assertThat(field.cacheHits().count()).isEqualTo(2);
+    }
+
+    @Test
+    void timesEveryDecryptionWhenDisabled() {
+        PhiValueCache cache = PhiTestFixtures.valueCache(stringEncryptor, false);
+        byte[] ciphertext = stringEncryptor.encryptToBytes("Jane");
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.decrypt(ciphertext, field)).isEqualTo("Jane");
+        }
+
+        assertThat(field.decrypt().timer().count()).isEqualTo(3);
+        assertThat(field.cacheHits().count()).isZero();
+    }
+
+    @Test
+    void doesNotCacheLongValues() {
+        PhiValueCache cache = PhiTestFixtures.valueCache(stringEncryptor, true);
+        byte[] ciphertext = stringEncryptor.encryptToBytes(PhiTestFixtures.clinicalText(2048));
+
+        cache.decrypt(ciphertext, field);
+        cache.decrypt(ciphertext, field);
+
+        assertThat(field.decrypt().timer().count()).isEqualTo(2);
+        assertThat(field.cacheHits().count()).isZero();
+    }
+
+    @Test
+    void countsFailedDecryptions() {
+        PhiValueCache cache = PhiTestFixtures.valueCache(stringEncryptor, true);
+        byte[] tampered = stringEncryptor.encryptToBytes("Jane");
+        tampered[tampered.length - 1] ^= 0x01;
+
+        assertThatThrownBy(() -> cache.decrypt(tampered, field)).isInstanceOf(RuntimeException.class);
+
+        assertThat(field.decrypt().failures().count()).isEqualTo(1);
+        assertThat(field.decrypt().timer().count()).isZero();
+    }
+}
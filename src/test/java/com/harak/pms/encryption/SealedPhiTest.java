@@ -0,0 +1,81 @@
+package com.harak.pms.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SealedPhiTest {
+
+    private final StringEncryptor retired = PhiTestFixtures.stringEncryptor();
+    private final StringEncryptor encryptor = PhiTestFixtures.rotatedStringEncryptor();
+    private final PhiValueCache decryptor = PhiTestFixtures.valueCache(encryptor, false);
+
+    @Test
+    void writesBackCurrentCiphertextUnchanged() {
+        byte[] stored = encryptor.encryptToBytes("Jane");
+
+        SealedPhi value = SealedPhi.fromCiphertext(stored, decryptor);
+
+        assertThat(value.toCiphertext(encryptor)).isSameAs(stored);
+        assertThat(value.isRevealed()).isFalse();
+    }
+
+    @Test
+    void reencryptsLegacyPlaintextWhenWrittenBack() {
+        byte[] stored = "Jane".getBytes(StandardCharsets.UTF_8);
+
+        byte[] written = SealedPhi.fromCiphertext(stored, decryptor).toCiphertext(encryptor);
+
+        assertPrimary(written, "Jane");
+    }
+
+    @Test
+    void reencryptsCiphertextUnderARetiredKeyWhenWrittenBack() {
+        byte[] stored = retired.encryptToBytes("Jane");
+
+        SealedPhi value = SealedPhi.fromCiphertext(stored, decryptor);
+        byte[] written = value.toCiphertext(encryptor);
+
+        assertThat(stored[2]).isEqualTo((byte) 1);
+        assertPrimary(written, "Jane");
+        assertThat(value.toCiphertext(encryptor)).isSameAs(written);
+        assertThat(value.reveal()).isEqualTo("Jane");
+    }
+
+    @Test
+    void reencryptsLegacyTextCiphertextWhenWrittenBack() {
+        byte[] stored = retired.encrypt("Jane").getBytes(StandardCharsets.ISO_8859_1);
+
+        byte[] written = SealedPhi.fromCiphertext(stored, decryptor).toCiphertext(encryptor);
+
+        assertPrimary(written, "Jane");
+    }
+
+    @Test
+    void encryptsAssignedPlaintextOnce() {
+        SealedPhi value = SealedPhi.of("Jane");
+
+        byte[] written = value.toCiphertext(encryptor);
+
+        assertPrimary(written, "Jane");
+        assertThat(value.toCiphertext(encryptor)).isSameAs(written);
+    }
+
+    @Test
+    void writesBackRowReferencesUnchanged() {
+        SealedPhi value = SealedPhi.rowReference(2, null);
+
+        byte[] written = value.toCiphertext(encryptor);
+
+        assertThat(written).containsExactly(PhiEnvelope.MAGIC, (byte) PhiEnvelope.VERSION_ROW_REFERENCE, (byte) 2);
+    }
+
+    private void assertPrimary(byte[] written, String plaintext) {
+        assertThat(PhiEnvelope.version(written)).isEqualTo(PhiEnvelope.VERSION_2);
+        assertThat(written[2]).isEqualTo((byte) encryptor.primaryKeyId());
+        assertThat(encryptor.isCurrent(written)).isTrue();
+        assertThat(encryptor.decrypt(written)).isEqualTo(plaintext);
+    }
+}
@@ -0,0 +1,234 @@
+package com.harak.pms.encryption;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StringEncryptorTest {
+
+    private static final String SSN = "123-45-6789";
+
+    private final StringEncryptor encryptor = PhiTestFixtures.stringEncryptor();
+
+    @Test
+    void roundTripsV2Bytes() {
+        byte[] sealed = encryptor.encryptToBytes(SSN);
+
+        assertThat(PhiEnvelope.version(sealed)).isEqualTo(PhiEnvelope.VERSION_2);
+        assertThat(sealed[2]).isEqualTo((byte) 1);
+        assertThat(encryptor.decrypt(sealed)).isEqualTo(SSN);
+        assertThat(encryptor.encryptToBytes(SSN)).isNotEqualTo(sealed);
+    }
+
+    @Test
+    void roundTripsV2Text() {
+        String sealed = encryptor.encrypt(SSN);
+
+        assertThat(PhiEnvelope.hasV2TextPrefix(sealed)).isTrue();
+        assertThat(encryptor.decrypt(sealed)).isEqualTo(SSN);
+    }
+
+    @Test
+    void roundTripsEmptyAndNonAsciiValues() {
+        assertThat(encryptor.decrypt(encryptor.encryptToBytes(""))).isEmpty();
+        assertThat(encryptor.decrypt(encryptor.encryptToBytes("Zoë Ångström 李"))).isEqualTo("Zoë Ångström 李");
+        assertThat(encryptor.encryptToBytes(null)).isNull();
+        assertThat(encryptor.decrypt((byte[]) null)).isNull();
+    }
+
+    @Test
+    void compressesLongValuesOnly() {
+        String notes = PhiTestFixtures.clinicalText(4096);
+
+        byte[] compressed = encryptor.encryptToBytes(notes);
+        byte[] small = encryptor.encryptToBytes(PhiTestFixtures.clinicalText(511));
+
+        assertThat(PhiEnvelope.isCompressed(compressed)).isTrue();
+        assertThat(PhiEnvelope.version(compressed)).isEqualTo(PhiEnvelope.VERSION_2);
+        assertThat(compressed.length).isLessThan(notes.length());
+        assertThat(encryptor.decrypt(compressed)).isEqualTo(notes);
+        assertThat(PhiEnvelope.isCompressed(small)).isFalse();
+    }
+
+    @Test
+    void neverCompressesTheTextForm() {
+        String notes = PhiTestFixtures.clinicalText(4096);
+
+        String sealed = encryptor.encrypt(notes);
+
+        assertThat(PhiEnvelope.isCompressed(Base64.getDecoder().decode(sealed))).isFalse();
+        assertThat(encryptor.decrypt(sealed)).isEqualTo(notes);
+    }
+
+    @Test
+    void rejectsTamperedV2Values() {
+        byte[] sealed = encryptor.encryptToBytes(SSN);
+        byte[] compressed = encryptor.encryptToBytes(PhiTestFixtures.clinicalText(4096));
+
+        for (byte[] value : new byte[][]{sealed, compressed}) {
+            for (int i = PhiEnvelope.V2_HEADER_LENGTH; i < value.length; i += 7) {
+                byte[] tampered = value.clone();
+                tampered[i] ^= 0x01;
+                assertThatThrownBy(() -> encryptor.decrypt(tampered)).isInstanceOf(RuntimeException.class);
+            }
+        }
+    }
+
+    @Test
+    void rejectsTruncatedV2Values() {
+        byte[] sealed = encryptor.encryptToBytes(SSN);
+
+        byte[] truncated = Arrays.copyOf(sealed, sealed.length - 1);
+
+        assertThatThrownBy(() -> encryptor.decrypt(truncated)).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void decryptsV1Values() throws GeneralSecurityException {
+        byte[] sealed = v1(SSN);
+
+        assertThat(PhiEnvelope.version(sealed)).isEqualTo(PhiEnvelope.VERSION_1);
+        assertThat(encryptor.decrypt(sealed)).isEqualTo(SSN);
+    }
+
+    @Test
+    void rejectsTamperedAndTruncatedV1Values() throws GeneralSecurityException {
+        byte[] sealed = v1(SSN);
+        byte[] tampered = sealed.clone();
+        tampered[tampered.length - 1] ^= 0x01;
+        byte[] truncated = Arrays.copyOf(sealed, sealed.length - 1);
+
+        assertThatThrownBy(() -> encryptor.decrypt(tampered)).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> encryptor.decrypt(truncated)).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void decryptsV0TextAndBytes() throws GeneralSecurityException {
+        String sealed = v0(SSN);
+
+        assertThat(encryptor.decrypt(sealed)).isEqualTo(SSN);
+        assertThat(encryptor.decrypt(sealed.getBytes(StandardCharsets.ISO_8859_1))).isEqualTo(SSN);
+        assertThat(encryptor.isLegacyPlaintext(sealed.getBytes(StandardCharsets.ISO_8859_1))).isFalse();
+    }
+
+    @Test
+    void convertsV0ToBinaryWithoutChangingTheCiphertext() throws GeneralSecurityException {
+        String sealed = v0(SSN);
+
+        byte[] converted = encryptor.convertLegacyCiphertext(sealed.getBytes(StandardCharsets.ISO_8859_1));
+
+        assertThat(PhiEnvelope.version(converted)).isEqualTo(PhiEnvelope.VERSION_2);
+        assertThat(Arrays.copyOfRange(converted, PhiEnvelope.V2_HEADER_LENGTH, converted.length))
+                .isEqualTo(Base64.getDecoder().decode(sealed));
+        assertThat(encryptor.decrypt(converted)).isEqualTo(SSN);
+        assertThat(encryptor.convertLegacyCiphertext(converted)).isNull();
+    }
+
+    // A v0 value that fails authentication cannot be told apart from Base64-shaped plaintext
+    @Test
+    void treatsTamperedV0AsPlaintext() throws GeneralSecurityException {
+        char[] chars = v0(SSN).toCharArray();
+        chars[20] = chars[20] == 'A' ? 'B' : 'A';
+        String tampered = new String(chars);
+
+        assertThat(encryptor.decrypt(tampered)).isEqualTo(tampered);
+        assertThat(encryptor.isLegacyPlaintext(tampered.getBytes(StandardCharsets.ISO_8859_1))).isTrue();
+        assertThat(encryptor.convertLegacyCiphertext(tampered.getBytes(StandardCharsets.ISO_8859_1))).isNull();
+    }
+
+    @Test
+    void keepsBase64ShapedPlaintext() {
+        String plaintext = "HypertensionControlledOnLisinoprilTenMgDaily";
+        byte[] stored = plaintext.getBytes(StandardCharsets.UTF_8);
+
+        assertThat(PhiEnvelope.isBase64Ciphertext(plaintext)).isTrue();
+        assertThat(encryptor.decrypt(plaintext)).isEqualTo(plaintext);
+        assertThat(encryptor.decrypt(stored)).isEqualTo(plaintext);
+        assertThat(encryptor.isLegacyPlaintext(stored)).isTrue();
+        assertThat(encryptor.convertLegacyCiphertext(stored)).isNull();
+        assertThat(encryptor.reencrypt(stored)).isNull();
+        assertThat(encryptor.decrypt(encryptor.encryptLegacyPlaintext(stored))).isEqualTo(plaintext);
+    }
+
+    @Test
+    void keepsPlainLegacyText() {
+        byte[] stored = "Jane".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(encryptor.decrypt(stored)).isEqualTo("Jane");
+        assertThat(encryptor.isLegacyPlaintext(stored)).isTrue();
+        assertThat(encryptor.decrypt(encryptor.encryptLegacyPlaintext(stored))).isEqualTo("Jane");
+        assertThat(encryptor.encryptLegacyPlaintext(encryptor.encryptToBytes("Jane"))).isNull();
+    }
+
+    @Test
+    void reencryptsUnderTheNewPrimaryKey() throws GeneralSecurityException {
+        StringEncryptor rotated = PhiTestFixtures.rotatedStringEncryptor();
+        byte[] sealed = encryptor.encryptToBytes(SSN);
+        byte[] legacy = v0(SSN).getBytes(StandardCharsets.ISO_8859_1);
+
+        byte[] reencrypted = rotated.reencrypt(sealed);
+
+        assertThat(rotated.decrypt(sealed)).isEqualTo(SSN);
+        assertThat(reencrypted[2]).isEqualTo((byte) 2);
+        assertThat(rotated.decrypt(reencrypted)).isEqualTo(SSN);
+        assertThat(rotated.reencrypt(reencrypted)).isNull();
+        assertThat(rotated.decrypt(rotated.reencrypt(legacy))).isEqualTo(SSN);
+        assertThat(rotated.decrypt(rotated.reencrypt(v1(SSN)))).isEqualTo(SSN);
+    }
+
+    @Test
+    void rejectsUnknownKeyIds() {
+        StringEncryptor other = PhiTestFixtures.stringEncryptor(2, PhiTestFixtures.KEY_2, "", -1);
+
+        byte[] sealed = encryptor.encryptToBytes(SSN);
+
+        assertThatThrownBy(() -> other.decrypt(sealed)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void leavesRowReferencesToTheirEntity() {
+        byte[] reference = {PhiEnvelope.MAGIC, PhiEnvelope.VERSION_ROW_REFERENCE, 0};
+
+        assertThat(PhiEnvelope.version(reference)).isEqualTo(PhiEnvelope.VERSION_ROW_REFERENCE);
+        assertThatThrownBy(() -> encryptor.decrypt(reference)).isInstanceOf(IllegalStateException.class);
+        assertThat(encryptor.reencrypt(reference)).isNull();
+        assertThat(encryptor.isLegacyPlaintext(reference)).isFalse();
+    }
+
+    // Base64(IV + ciphertext + tag) under the legacy key
+    private static String v0(String plaintext) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(sealLegacy(plaintext));
+    }
+
+    // MAGIC, VERSION_1, then IV + ciphertext + tag under the legacy key
+    private static byte[] v1(String plaintext) throws GeneralSecurityException {
+        byte[] sealed = sealLegacy(plaintext);
+        byte[] envelope = new byte[PhiEnvelope.V1_HEADER_LENGTH + sealed.length];
+        envelope[0] = PhiEnvelope.MAGIC;
+        envelope[1] = PhiEnvelope.VERSION_1;
+        System.arraycopy(sealed, 0, envelope, PhiEnvelope.V1_HEADER_LENGTH, sealed.length);
+        return envelope;
+    }
+
+    private static byte[] sealLegacy(String plaintext) throws GeneralSecurityException {
+        byte[] iv = new byte[PhiEnvelope.IV_LENGTH];
+        PhiRandom.nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(PhiTestFixtures.KEY_1, "AES"),
+                new GCMParameterSpec(PhiEnvelope.TAG_LENGTH * 8, iv));
+        byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        byte[] sealed = new byte[iv.length + ciphertext.length];
+        System.arraycopy(iv, 0, sealed, 0, iv.length);
+        System.arraycopy(ciphertext, 0, sealed, iv.length, ciphertext.length);
+        return sealed;
+    }
+}
@@ -0,0 +1,259 @@
+package com.harak.pms.idempotency;
+
+import com.harak.pms.encryption.BlindIndexer;
+import com.harak.pms.encryption.StringEncryptor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IdempotencyServiceTest {
+
+    private static final UUID ID = UUID.fromString("0b7e2f44-3c1d-4a8e-9f21-6d5c4b3a2910");
+
+    private final FakeJdbcTemplate jdbcTemplate = new FakeJdbcTemplate();
+    private StringEncryptor stringEncryptor;
+    private IdempotencyService service;
+    private String keyHash;
+    private String fingerprint;
+
+    @BeforeEach
+    void setUp() {
+        stringEncryptor = stringEncryptor(1, "0123456789abcdef0123456789abcdef");
+        service = service(stringEncryptor);
+        keyHash = service.keyHash("doctor", "POST /api/patients", "key-1");
+        fingerprint = service.fingerprint(new Created(null, "Jane"));
+    }
+
+    @Test
+    void scopesKeysToUserAndEndpoint() {
+        assertThat(service.keyHash("doctor", "POST /api/patients", "key-1")).isEqualTo(keyHash);
+        assertThat(service.keyHash("nurse", "POST /api/patients", "key-1")).isNotEqualTo(keyHash);
+        assertThat(service.keyHash("doctor", "POST /api/clinical-records", "key-1")).isNotEqualTo(keyHash);
+        assertThat(service.fingerprint(new Created(null, "Janet"))).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    void claimsANewKey() {
+        assertThat(service.begin(keyHash, fingerprint, Created.class)).isEmpty();
+
+        assertThat(jdbcTemplate.fingerprint).isEqualTo(fingerprint);
+        assertThat(jdbcTemplate.snapshot).isNull();
+    }
+
+    @Test
+    void rejectsARetryWhileTheRequestIsInProgress() {
+        service.begin(keyHash, fingerprint, Created.class);
+
+        assertThatThrownBy(() -> service.begin(keyHash, fingerprint, Created.class))
+                .isInstanceOf(IdempotentRequestInProgressException.class);
+    }
+
+    @Test
+    void rejectsAKeyReusedForAnotherRequest() {
+        service.begin(keyHash, fingerprint, Created.class);
+        service.complete(keyHash, created());
+
+        assertThatThrownBy(() -> service.begin(keyHash, service.fingerprint(new Created(null, "Janet")), Created.class))
+                .isInstanceOf(IdempotencyKeyReusedException.class);
+    }
+
+    @Test
+    void replaysTheStoredResponse() {
+        service.begin(keyHash, fingerprint, Created.class);
+        service.complete(keyHash, created());
+
+        Optional<IdempotencyService.Replay> replay = service.begin(keyHash, fingerprint, Created.class);
+
+        assertThat(replay).isPresent();
+        ResponseEntity<Object> response = replay.get().response();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"0\"");
+        assertThat(response.getHeaders().getFirst(IdempotencyAspect.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(response.getBody()).isEqualTo(new Created(ID, "Jane"));
+        assertThat(replay.get().resourceId()).isEqualTo(ID);
+    }
+
+    @Test
+    void storesTheResponseEncrypted() {
+        service.begin(keyHash, fingerprint, Created.class);
+        service.complete(keyHash, created());
+
+        assertThat(new String(jdbcTemplate.snapshot, StandardCharsets.ISO_8859_1)).doesNotContain("Jane");
+    }
+
+    @Test
+    void releasesAKeyWhoseRequestFailed() {
+        service.begin(keyHash, fingerprint, Created.class);
+
+        service.release(keyHash);
+
+        assertThat(jdbcTemplate.present).isFalse();
+        assertThat(service.begin(keyHash, fingerprint, Created.class)).isEmpty();
+    }
+
+    @Test
+    void takesOverAnExpiredKey() {
+        service.begin(keyHash, fingerprint, Created.class);
+        service.complete(keyHash, created());
+        jdbcTemplate.expired = true;
+        String other = service.fingerprint(new Created(null, "Janet"));
+
+        assertThat(service.begin(keyHash, other, Created.class)).isEmpty();
+
+        assertThat(jdbcTemplate.fingerprint).isEqualTo(other);
+        assertThat(jdbcTemplate.snapshot).isNull();
+        assertThat(jdbcTemplate.expired).isFalse();
+    }
+
+    @Test
+    void waitsForAConcurrentClaim() {
+        jdbcTemplate.concurrentFingerprint = fingerprint;
+
+        assertThatThrownBy(() -> service.begin(keyHash, fingerprint, Created.class))
+                .isInstanceOf(IdempotentRequestInProgressException.class);
+        assertThat(jdbcTemplate.statements).containsExactly("SELECT", "INSERT", "SELECT");
+    }
+
+    // A response stored under a master key that has since been retired
+    @Test
+    void discardsAResponseThatCannotBeReplayed() {
+        service.begin(keyHash, fingerprint, Created.class);
+        service.complete(keyHash, created());
+        IdempotencyService rotated = service(stringEncryptor(2, "test-only-key-2-not-for-phi!!!!!"));
+
+        assertThat(rotated.begin(keyHash, fingerprint, Created.class)).isEmpty();
+
+        assertThat(jdbcTemplate.statements).containsSubsequence("SELECT", "DELETE", "SELECT", "INSERT");
+        assertThat(jdbcTemplate.present).isTrue();
+        assertThat(jdbcTemplate.snapshot).isNull();
+    }
+
+    private static ResponseEntity<Created> created() {
+        return ResponseEntity.status(HttpStatus.CREATED).eTag("\"0\"").body(new Created(ID, "Jane"));
+    }
+
+    private IdempotencyService service(StringEncryptor encryptor) {
+        BlindIndexer blindIndexer = new BlindIndexer();
+        ReflectionTestUtils.setField(blindIndexer, "encodedKey", encode("fedcba9876543210fedcba9876543210"));
+        blindIndexer.init();
+        IdempotencyService idempotencyService = new IdempotencyService(jdbcTemplate, encryptor, blindIndexer,
+                JsonMapper.builder().build());
+        ReflectionTestUtils.setField(idempotencyService, "ttl", Duration.ofHours(24));
+        ReflectionTestUtils.setField(idempotencyService, "lease", Duration.ofSeconds(60));
+        return idempotencyService;
+    }
+
+    private static StringEncryptor stringEncryptor(int keyId, String key) {
+        StringEncryptor encryptor = new StringEncryptor(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(encryptor, "encodedKey", encode(key));
+        ReflectionTestUtils.setField(encryptor, "encryptionKeyId", keyId);
+        ReflectionTestUtils.setField(encryptor, "decryptionKeys", "");
+        ReflectionTestUtils.setField(encryptor, "configuredLegacyKeyId", -1);
+        ReflectionTestUtils.setField(encryptor, "compressionEnabled", true);
+        ReflectionTestUtils.setField(encryptor, "compressionMinSize", 512);
+        encryptor.init();
+        return encryptor;
+    }
+
+    private static String encode(String key) {
+        return Base64.getEncoder().encodeToString(key.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    record Created(UUID id, String name) {
+    }
+
+    /**
+     * Holds the single {@code idempotency_keys} row of a test in memory, applying each statement
+     * of {@link IdempotencyService} the way PostgreSQL would.
+     */
+    private static final class FakeJdbcTemplate extends JdbcTemplate {
+
+        private final List<String> statements = new ArrayList<>();
+        private boolean present;
+        private String fingerprint;
+        private byte[] snapshot;
+        private boolean expired;
+        // Claimed by another request between the SELECT and the INSERT of the next claim
+        private String concurrentFingerprint;
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            statements.add("SELECT");
+            if (!present) {
+                return List.of();
+            }
+            try {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(fingerprint);
+                when(rs.getBytes(2)).thenReturn(snapshot);
+                when(rs.getBoolean(3)).thenReturn(expired);
+                return List.of(rowMapper.mapRow(rs, 0));
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            statements.add(sql.substring(0, sql.indexOf(' ')));
+            if (sql.startsWith("INSERT")) {
+                if (concurrentFingerprint != null) {
+                    store(concurrentFingerprint, null);
+                    concurrentFingerprint = null;
+                    return 0;
+                }
+                return present ? 0 : store((String) args[1], null);
+            }
+            if (sql.contains("SET request_fingerprint")) {
+                return present && expired ? store((String) args[0], null) : 0;
+            }
+            if (sql.contains("SET response_snapshot")) {
+                return present ? store(fingerprint, (byte[]) args[0]) : 0;
+            }
+            if (sql.contains("response_snapshot IS NULL")) {
+                return delete(snapshot == null);
+            }
+            if (sql.contains("response_snapshot IS NOT NULL")) {
+                return delete(snapshot != null);
+            }
+            throw new IllegalArgumentException("Unexpected statement: " + sql);
+        }
+
+        private int store(String fingerprint, byte[] snapshot) {
+            this.present = true;
+            this.fingerprint = fingerprint;
+            this.snapshot = snapshot;
+            this.expired = false;
+            return 1;
+        }
+
+        private int delete(boolean matches) {
+            if (!present || !matches) {
+                return 0;
+            }
+            present = false;
+            return 1;
+        }
+    }
+}
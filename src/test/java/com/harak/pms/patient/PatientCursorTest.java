@@ -0,0 +1,68 @@
+package com.harak.pms.patient;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PatientCursorTest {
+
+    private static final Instant CREATED_AT = Instant.parse("2024-03-01T12:34:56.123456789Z");
+    private static final UUID ID = UUID.fromString("0b7e2f44-3c1d-4a8e-9f21-6d5c4b3a2910");
+
+    @Test
+    void roundTripsBothDirections() {
+        for (Sort.Direction direction : Sort.Direction.values()) {
+            PatientCursor cursor = new PatientCursor(CREATED_AT, ID, direction);
+
+            String token = cursor.encode();
+
+            assertThat(token).matches("[A-Za-z0-9_-]+");
+            assertThat(PatientCursor.decode(token)).isEqualTo(cursor);
+        }
+    }
+
+    @Test
+    void startsWithoutAPosition() {
+        assertThat(PatientCursor.start(Sort.Direction.DESC).isStart()).isTrue();
+        assertThat(new PatientCursor(CREATED_AT, ID, Sort.Direction.DESC).isStart()).isFalse();
+    }
+
+    @Test
+    void rejectsMalformedTokens() {
+        String token = new PatientCursor(CREATED_AT, ID, Sort.Direction.ASC).encode();
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        byte[] otherVersion = bytes.clone();
+        otherVersion[0] = 2;
+
+        assertInvalid("");
+        assertInvalid("not a cursor!");
+        assertInvalid("AAAA");
+        assertInvalid(token.substring(0, token.length() - 4));
+        assertInvalid(token + "AAAA");
+        assertInvalid(encode(otherVersion));
+    }
+
+    @Test
+    void rejectsOutOfRangeTimestamps() {
+        ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder()
+                .decode(new PatientCursor(CREATED_AT, ID, Sort.Direction.ASC).encode()));
+        buffer.putLong(2, Long.MAX_VALUE);
+
+        assertInvalid(encode(buffer.array()));
+    }
+
+    private static String encode(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static void assertInvalid(String token) {
+        assertThatThrownBy(() -> PatientCursor.decode(token)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,156 @@
+package com.harak.pms.patient;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PatientImportParserTest {
+
+    private static final int MAX_ROW_LENGTH = 200;
+
+    @Test
+    void readsCsvColumnsByHeaderName() throws IOException {
+        List<PatientImportParser.Row> rows = csv("""
+                medicalRecordNumber,lastName,firstName
+                MRN-1,Doe,Jane
+                MRN-2,Roe,Richard
+                """);
+
+        assertThat(rows).extracting(PatientImportParser.Row::line).containsExactly(2L, 3L);
+        assertThat(rows.getFirst().request())
+                .isEqualTo(new CreatePatientRequest("Jane", "Doe", null, null, null, "MRN-1"));
+        assertThat(rows.get(1).error()).isNull();
+    }
+
+    @Test
+    void readsQuotedCsvValues() throws IOException {
+        List<PatientImportParser.Row> rows = csv("""
+                firstName,lastName,medicalRecordNumber
+                "Mary, Jr.","O""Brien",MRN-1
+                """);
+
+        assertThat(rows.getFirst().request().firstName()).isEqualTo("Mary, Jr.");
+        assertThat(rows.getFirst().request().lastName()).isEqualTo("O\"Brien");
+    }
+
+    @Test
+    void readsQuotedCsvValuesAcrossLines() throws IOException {
+        List<PatientImportParser.Row> rows = csv("""
+                firstName,lastName,medicalRecordNumber
+                "Anne
+                Marie",Doe,MRN-1
+                Bob,Roe,MRN-2
+                """);
+
+        assertThat(rows).extracting(PatientImportParser.Row::line).containsExactly(2L, 4L);
+        assertThat(rows.getFirst().request().firstName()).isEqualTo("Anne\nMarie");
+        assertThat(rows.get(1).request().firstName()).isEqualTo("Bob");
+    }
+
+    @Test
+    void readsCrlfBomAndBlankLines() throws IOException {
+        List<PatientImportParser.Row> rows = csv("\uFEFFfirstName,medicalRecordNumber\r\n\r\n\"Jane\",MRN-1\r\nBob,MRN-2");
+
+        assertThat(rows).extracting(PatientImportParser.Row::line).containsExactly(3L, 4L);
+        assertThat(rows).extracting(row -> row.request().firstName()).containsExactly("Jane", "Bob");
+        assertThat(rows).extracting(row -> row.request().medicalRecordNumber()).containsExactly("MRN-1", "MRN-2");
+    }
+
+    @Test
+    void readsEmptyCsvValuesAsAbsent() throws IOException {
+        List<PatientImportParser.Row> rows = csv("""
+                firstName,email,medicalRecordNumber
+                Jane,,MRN-1
+                ,"",MRN-2
+                """);
+
+        assertThat(rows.getFirst().request().email()).isNull();
+        assertThat(rows.get(1).request().firstName()).isNull();
+        assertThat(rows.get(1).request().email()).isNull();
+    }
+
+    @Test
+    void rejectsCsvRowsWithTheWrongNumberOfColumns() throws IOException {
+        List<PatientImportParser.Row> rows = csv("""
+                firstName,medicalRecordNumber
+                Jane
+                Jane,MRN-1,extra
+                Bob,MRN-2
+                """);
+
+        assertThat(rows).extracting(PatientImportParser.Row::error).containsExactly(
+                "Row has 1 columns, expected 2", "Row has 3 columns, expected 2", null);
+        assertThat(rows.get(2).request().firstName()).isEqualTo("Bob");
+    }
+
+    @Test
+    void rejectsOverlongCsvRowsWithoutEchoingThem() throws IOException {
+        List<PatientImportParser.Row> rows = csv("firstName,medicalRecordNumber\n"
+                + "x".repeat(MAX_ROW_LENGTH + 1) + ",MRN-1\nBob,MRN-2\n");
+
+        assertThat(rows.getFirst().error()).isEqualTo("Row exceeds " + MAX_ROW_LENGTH + " characters");
+        assertThat(rows.getFirst().request()).isNull();
+        assertThat(rows.get(1).request().firstName()).isEqualTo("Bob");
+    }
+
+    @Test
+    void rejectsBadCsvHeaders() {
+        assertThatThrownBy(() -> csv("firstName,diagnosis\nJane,flu\n"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Unknown CSV column");
+        assertThatThrownBy(() -> csv("firstName,firstName\nJane,Janet\n"))
+                .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("Duplicate CSV column");
+    }
+
+    @Test
+    void readsAnEmptyCsvBody() throws IOException {
+        assertThat(csv("")).isEmpty();
+        assertThat(csv("firstName,medicalRecordNumber\n")).isEmpty();
+    }
+
+    @Test
+    void readsNdjsonRowsAndRejectsMalformedOnes() throws IOException {
+        List<PatientImportParser.Row> rows = read(MediaType.APPLICATION_NDJSON, """
+                {"firstName":"Jane","medicalRecordNumber":"MRN-1"}
+
+                {"firstName":
+                null
+                {"firstName":"Bob","medicalRecordNumber":"MRN-2"}
+                """);
+
+        assertThat(rows).extracting(PatientImportParser.Row::line).containsExactly(1L, 3L, 4L, 5L);
+        assertThat(rows.getFirst().request().firstName()).isEqualTo("Jane");
+        assertThat(rows.get(1).error()).isEqualTo("Malformed JSON");
+        assertThat(rows.get(2).error()).isEqualTo("Malformed JSON");
+        assertThat(rows.get(3).request().medicalRecordNumber()).isEqualTo("MRN-2");
+    }
+
+    @Test
+    void rejectsOtherMediaTypes() {
+        assertThatThrownBy(() -> read(MediaType.APPLICATION_JSON, "[]"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<PatientImportParser.Row> csv(String body) throws IOException {
+        return read(PatientImportParser.CSV, body);
+    }
+
+    private static List<PatientImportParser.Row> read(MediaType contentType, String body) throws IOException {
+        PatientImportParser parser = PatientImportParser.open(contentType,
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), JsonMapper.builder().build(),
+                MAX_ROW_LENGTH);
+        List<PatientImportParser.Row> rows = new ArrayList<>();
+        for (PatientImportParser.Row row; (row = parser.next()) != null; ) {
+            rows.add(row);
+        }
+        return rows;
+    }
+}